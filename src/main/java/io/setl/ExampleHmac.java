@@ -0,0 +1,117 @@
+package io.setl;
+
+import static io.setl.ExampleSigning.loadKeyStore;
+import static io.setl.ExampleSigning.parse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.Map;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import io.setl.xml.IsoSignerVerifier;
+import io.setl.xml.SigningKey;
+import io.setl.xml.XMLSignatureMethod;
+
+/**
+ * A simple command line application that compares the signing and validation throughput of an HMAC with a shared secret key against an RSA signature with
+ * a certificate, for the same message.
+ *
+ * @author agent on 18/10/2026.
+ */
+public class ExampleHmac {
+
+  /** Name of the shared secret key. */
+  private static final String KEY_NAME = "hop-1";
+
+  /** Number of operations timed for each signature method. */
+  private static final int OPERATIONS = 500;
+
+  /** Number of operations performed before timing starts. */
+  private static final int WARM_UP = 200;
+
+
+  /** An operation which signs a header. */
+  private interface Signer {
+
+    void sign(Node header, Node document) throws Exception;
+
+  }
+
+
+  private static String loadText(String resource) throws IOException {
+    try (InputStream inputStream = ExampleHmac.class.getClassLoader().getResourceAsStream(resource)) {
+      return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+
+  public static void main(String[] args) throws Exception {
+    String appHdrText = loadText("examples/sign1/apphdr.xml");
+    String documentText = loadText("examples/sign1/document.xml");
+    KeyStore keyStore = loadKeyStore("examples/keystore.jks");
+    SigningKey signingKey = new SigningKey(
+        (PrivateKey) keyStore.getKey("example", "password".toCharArray()),
+        (X509Certificate) keyStore.getCertificate("example"),
+        XMLSignatureMethod.RSA_SHA256
+    );
+    byte[] secret = new byte[32];
+    new SecureRandom().nextBytes(secret);
+    SecretKey secretKey = new SecretKeySpec(secret, "HmacSHA256");
+
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    isoSignerVerifier.setSecretKeyResolver(Map.of(KEY_NAME, secretKey)::get);
+
+    System.out.printf("%-16s %12s %12s%n", "Method", "Sign/s", "Validate/s");
+    run(isoSignerVerifier, appHdrText, documentText, "RSA_SHA256", (header, document) -> isoSignerVerifier.sign(header, document, signingKey));
+    run(isoSignerVerifier, appHdrText, documentText, "HMAC_SHA256",
+        (header, document) -> isoSignerVerifier.sign(header, document, secretKey, KEY_NAME, XMLSignatureMethod.HMAC_SHA256)
+    );
+  }
+
+
+  private static void run(IsoSignerVerifier isoSignerVerifier, String appHdrText, String documentText, String name, Signer signer) throws Exception {
+    Document document = parse(documentText);
+
+    // Warm up
+    for (int i = 0; i < WARM_UP; i++) {
+      Document appHdr = parse(appHdrText);
+      signer.sign(appHdr.getDocumentElement(), document.getDocumentElement());
+      isoSignerVerifier.validate(appHdr.getDocumentElement(), document.getDocumentElement());
+    }
+
+    // Parsing is excluded from the timings, so the headers are parsed in advance.
+    Document[] appHdrs = new Document[OPERATIONS];
+    for (int i = 0; i < OPERATIONS; i++) {
+      appHdrs[i] = parse(appHdrText);
+    }
+
+    long start = System.nanoTime();
+    for (Document appHdr : appHdrs) {
+      signer.sign(appHdr.getDocumentElement(), document.getDocumentElement());
+    }
+    long signNanos = System.nanoTime() - start;
+
+    int failures = 0;
+    start = System.nanoTime();
+    for (Document appHdr : appHdrs) {
+      if (!isoSignerVerifier.validate(appHdr.getDocumentElement(), document.getDocumentElement())) {
+        failures++;
+      }
+    }
+    long validateNanos = System.nanoTime() - start;
+
+    System.out.printf("%-16s %12.1f %12.1f%s%n", name, OPERATIONS / (signNanos / 1e9), OPERATIONS / (validateNanos / 1e9),
+        (failures > 0) ? "   Failures: " + failures : ""
+    );
+  }
+
+}
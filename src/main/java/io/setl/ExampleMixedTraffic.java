@@ -0,0 +1,225 @@
+package io.setl;
+
+import static io.setl.ExampleSigning.loadKeyStore;
+import static io.setl.ExampleSigning.parse;
+import static io.setl.ExampleSigning.xmlToString;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.w3c.dom.Document;
+
+import io.setl.xml.IsoSignerVerifier;
+import io.setl.xml.SigningKey;
+import io.setl.xml.XMLSignatureMethod;
+import io.setl.xml.batch.BatchVerifier;
+import io.setl.xml.batch.Lane;
+
+/**
+ * A simple command line application that replays a batch of mixed traffic, in which bursts of very large messages are followed by many small ones, through a
+ * single lane batch verifier and through one with separate lanes for small and large messages. It reports the latency of each kind of message, measured from
+ * when the batch reader consumed the end of the message to when its result was delivered.
+ *
+ * @author agent on 18/10/2026.
+ */
+public class ExampleMixedTraffic {
+
+  /** Number of credit transfers in a large message. */
+  private static final int LARGE_TRANSFERS = 4000;
+
+  /** Number of large messages in each burst. */
+  private static final int LARGE_PER_ROUND = 3;
+
+  /** Size threshold between small and large messages, in characters. */
+  private static final long LARGE_THRESHOLD = 64 * 1024;
+
+  /** Maximum number of messages in memory at once. */
+  private static final int MAX_IN_FLIGHT = 32;
+
+  /** Number of rounds of large and small messages. */
+  private static final int ROUNDS = 5;
+
+  /** Number of small messages after each burst of large ones. */
+  private static final int SMALL_PER_ROUND = 30;
+
+  /** Number of worker threads, in total. */
+  private static final int THREADS = 4;
+
+
+  /**
+   * A stream over the batch which records the time at which the reader consumed the end of each message.
+   */
+  private static class TimedInputStream extends ByteArrayInputStream {
+
+    /** Offset of the end of each message in the batch. */
+    private final int[] ends;
+
+    /** Time the end of each message was consumed. */
+    private final long[] readTimes;
+
+    /** The number of messages whose end has been consumed. */
+    private int consumed;
+
+
+    TimedInputStream(byte[] batch, int[] ends) {
+      super(batch);
+      this.ends = ends;
+      readTimes = new long[ends.length];
+    }
+
+
+    @Override
+    public synchronized int read() {
+      int b = super.read();
+      recordProgress();
+      return b;
+    }
+
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) {
+      int n = super.read(b, off, len);
+      recordProgress();
+      return n;
+    }
+
+
+    private void recordProgress() {
+      long now = System.nanoTime();
+      while (consumed < ends.length && ends[consumed] <= pos) {
+        readTimes[consumed++] = now;
+      }
+    }
+
+  }
+
+
+  private static String loadText(String resource) throws IOException {
+    try (InputStream inputStream = ExampleMixedTraffic.class.getClassLoader().getResourceAsStream(resource)) {
+      return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+
+  public static void main(String[] args) throws Exception {
+    String appHdrText = loadText("examples/sign1/apphdr.xml");
+    String smallText = loadText("examples/sign1/document.xml");
+    String transfer = smallText.replaceFirst("(?s).*(<pacs:CdtTrfTxInf>.*</pacs:CdtTrfTxInf>).*", "$1");
+    String largeText = smallText.replace(transfer, transfer.repeat(LARGE_TRANSFERS));
+
+    KeyStore keyStore = loadKeyStore("examples/keystore.jks");
+    SigningKey signingKey = new SigningKey(
+        (PrivateKey) keyStore.getKey("example", "password".toCharArray()),
+        (X509Certificate) keyStore.getCertificate("example"),
+        XMLSignatureMethod.RSA_SHA256
+    );
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    String small = signedPair(isoSignerVerifier, signingKey, appHdrText, smallText);
+    String large = signedPair(isoSignerVerifier, signingKey, appHdrText, largeText);
+
+    // Build the batch, recording the end of each message and whether it is large.
+    StringBuilder batch = new StringBuilder("<Batch>");
+    ArrayList<Integer> ends = new ArrayList<>();
+    ArrayList<Boolean> isLarge = new ArrayList<>();
+    for (int round = 0; round < ROUNDS; round++) {
+      for (int i = 0; i < LARGE_PER_ROUND + SMALL_PER_ROUND; i++) {
+        boolean largeMessage = i < LARGE_PER_ROUND;
+        batch.append(largeMessage ? large : small);
+        ends.add(batch.length());
+        isLarge.add(largeMessage);
+      }
+    }
+    batch.append("</Batch>");
+    byte[] batchBytes = batch.toString().getBytes(StandardCharsets.UTF_8);
+    int[] endOffsets = ends.stream().mapToInt(Integer::intValue).toArray();
+
+    System.out.printf("Batch of %d messages: %d large of %d characters, and %d small of %d characters%n", ends.size(), ROUNDS * LARGE_PER_ROUND,
+        large.length(), ROUNDS * SMALL_PER_ROUND, small.length()
+    );
+    System.out.printf("%-12s %10s %10s %10s %10s %10s%n", "Lanes", "Small p50", "Small p99", "Large p50", "Large max", "Total");
+
+    for (int repeat = 0; repeat < 2; repeat++) {
+      // The first repeat warms up the JVM and is not reported.
+      boolean report = repeat > 0;
+      try (BatchVerifier single = new BatchVerifier(isoSignerVerifier, THREADS, MAX_IN_FLIGHT)) {
+        replay("single", single, batchBytes, endOffsets, isLarge, report);
+      }
+      List<Lane> lanes = List.of(
+          new Lane("small", LARGE_THRESHOLD, THREADS / 2, MAX_IN_FLIGHT / 2),
+          new Lane("large", Long.MAX_VALUE, THREADS / 2, 1)
+      );
+      try (BatchVerifier laned = new BatchVerifier(isoSignerVerifier, lanes, true, MAX_IN_FLIGHT)) {
+        replay("small+large", laned, batchBytes, endOffsets, isLarge, report);
+      }
+    }
+  }
+
+
+  private static long percentile(long[] sorted, double fraction) {
+    return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+  }
+
+
+  private static void replay(String name, BatchVerifier batchVerifier, byte[] batch, int[] ends, List<Boolean> isLarge, boolean report) throws Exception {
+    TimedInputStream inputStream = new TimedInputStream(batch, ends);
+    long[] doneTimes = new long[ends.length];
+    AtomicInteger failures = new AtomicInteger();
+    long start = System.nanoTime();
+    batchVerifier.verify(inputStream, result -> {
+      doneTimes[(int) result.getIndex()] = System.nanoTime();
+      if (!result.isValid()) {
+        failures.incrementAndGet();
+      }
+    });
+    long total = System.nanoTime() - start;
+    if (!report) {
+      return;
+    }
+
+    long[] smallLatency = new long[ends.length];
+    long[] largeLatency = new long[ends.length];
+    int smallCount = 0;
+    int largeCount = 0;
+    for (int i = 0; i < ends.length; i++) {
+      long latency = doneTimes[i] - inputStream.readTimes[i];
+      if (isLarge.get(i)) {
+        largeLatency[largeCount++] = latency;
+      } else {
+        smallLatency[smallCount++] = latency;
+      }
+    }
+    smallLatency = Arrays.copyOf(smallLatency, smallCount);
+    largeLatency = Arrays.copyOf(largeLatency, largeCount);
+    Arrays.sort(smallLatency);
+    Arrays.sort(largeLatency);
+
+    System.out.printf("%-12s %8.1fms %8.1fms %8.1fms %8.1fms %8.1fms%s%n", name,
+        percentile(smallLatency, 0.5) / 1e6, percentile(smallLatency, 0.99) / 1e6,
+        percentile(largeLatency, 0.5) / 1e6, largeLatency[largeCount - 1] / 1e6,
+        total / 1e6, (failures.get() > 0) ? "   Failures: " + failures.get() : ""
+    );
+  }
+
+
+  private static String signedPair(IsoSignerVerifier isoSignerVerifier, SigningKey signingKey, String appHdrText, String documentText) throws Exception {
+    Document appHdr = parse(appHdrText);
+    Document document = parse(documentText);
+    isoSignerVerifier.sign(appHdr.getDocumentElement(), document.getDocumentElement(), signingKey);
+    return stripDeclaration(xmlToString(appHdr.getDocumentElement())) + stripDeclaration(xmlToString(document.getDocumentElement()));
+  }
+
+
+  private static String stripDeclaration(String xml) {
+    return xml.replaceFirst("^<\\?xml[^>]*\\?>", "");
+  }
+
+}
@@ -0,0 +1,130 @@
+package io.setl;
+
+import static io.setl.ExampleSigning.loadKeyStore;
+import static io.setl.ExampleSigning.parse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.w3c.dom.Document;
+
+import io.setl.xml.IsoSignerVerifier;
+import io.setl.xml.ProviderConfiguration;
+import io.setl.xml.SigningKey;
+import io.setl.xml.XMLSignatureMethod;
+
+/**
+ * A simple command line application that compares the signing and validation throughput of different security provider configurations.
+ *
+ * <p>Each command line argument is a properties file which is read with {@link ProviderConfiguration#fromProperties(Properties)}. With no arguments, the
+ * default configuration is compared with a configuration for each installed provider of RSA signatures.</p>
+ *
+ * <p>This is a plain timing loop with a warm-up, not a JMH benchmark, as the build has no JMH dependency. Its figures are good enough to rank providers, but
+ * not to measure small differences.</p>
+ *
+ * @author agent on 18/10/2026.
+ */
+public class ExampleProviders {
+
+  /** Number of operations timed for each configuration. */
+  private static final int OPERATIONS = 500;
+
+  /** Number of operations performed before timing starts. */
+  private static final int WARM_UP = 200;
+
+
+  private static Map<String, ProviderConfiguration> configurations(String[] args) throws Exception {
+    LinkedHashMap<String, ProviderConfiguration> configurations = new LinkedHashMap<>();
+    if (args.length > 0) {
+      for (String arg : args) {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(Path.of(arg), StandardCharsets.UTF_8)) {
+          properties.load(reader);
+        }
+        configurations.put(arg, ProviderConfiguration.fromProperties(properties));
+      }
+      return configurations;
+    }
+
+    configurations.put("default", ProviderConfiguration.DEFAULT);
+    for (Provider provider : Security.getProviders("Signature.SHA256withRSA")) {
+      Properties properties = new Properties();
+      properties.setProperty(ProviderConfiguration.PROPERTY_SIGNATURE, provider.getName());
+      if (provider.getService("MessageDigest", "SHA-256") != null) {
+        properties.setProperty(ProviderConfiguration.PROPERTY_DIGEST, provider.getName());
+      }
+      configurations.put(provider.getName(), ProviderConfiguration.fromProperties(properties));
+    }
+    return configurations;
+  }
+
+
+  private static String loadText(String resource) throws IOException {
+    try (InputStream inputStream = ExampleProviders.class.getClassLoader().getResourceAsStream(resource)) {
+      return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+
+  public static void main(String[] args) throws Exception {
+    String appHdrText = loadText("examples/sign1/apphdr.xml");
+    String documentText = loadText("examples/sign1/document.xml");
+    KeyStore keyStore = loadKeyStore("examples/keystore.jks");
+    SigningKey signingKey = new SigningKey(
+        (PrivateKey) keyStore.getKey("example", "password".toCharArray()),
+        (X509Certificate) keyStore.getCertificate("example"),
+        XMLSignatureMethod.RSA_SHA256
+    );
+
+    System.out.printf("%-24s %12s %12s%n", "Configuration", "Sign/s", "Validate/s");
+    for (Map.Entry<String, ProviderConfiguration> entry : configurations(args).entrySet()) {
+      IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier(entry.getValue());
+      Document document = parse(documentText);
+
+      // Warm up
+      for (int i = 0; i < WARM_UP; i++) {
+        Document appHdr = parse(appHdrText);
+        isoSignerVerifier.sign(appHdr.getDocumentElement(), document.getDocumentElement(), signingKey);
+        isoSignerVerifier.validate(appHdr.getDocumentElement(), document.getDocumentElement());
+      }
+
+      // Parsing is excluded from the timings, so the headers are parsed in advance.
+      Document[] appHdrs = new Document[OPERATIONS];
+      for (int i = 0; i < OPERATIONS; i++) {
+        appHdrs[i] = parse(appHdrText);
+      }
+
+      long start = System.nanoTime();
+      for (Document appHdr : appHdrs) {
+        isoSignerVerifier.sign(appHdr.getDocumentElement(), document.getDocumentElement(), signingKey);
+      }
+      long signNanos = System.nanoTime() - start;
+
+      int failures = 0;
+      start = System.nanoTime();
+      for (Document appHdr : appHdrs) {
+        if (!isoSignerVerifier.validate(appHdr.getDocumentElement(), document.getDocumentElement())) {
+          failures++;
+        }
+      }
+      long validateNanos = System.nanoTime() - start;
+
+      System.out.printf("%-24s %12.1f %12.1f%s%n", entry.getKey(), OPERATIONS / (signNanos / 1e9), OPERATIONS / (validateNanos / 1e9),
+          (failures > 0) ? "   Failures: " + failures : ""
+      );
+    }
+  }
+
+}
@@ -0,0 +1,146 @@
+package io.setl.xml;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.xml.crypto.dsig.XMLSignatureException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * The supported versions of the ISO-20022 business application header. Each version has its own namespace, and its own X-Path prefix so that the X-Paths for
+ * different versions never collide in the expression cache.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public enum AppHdrVersion {
+  /** Version head.001.001.01. */
+  HEAD_001_001_01(Constants.NS_ISO_HEAD_01, "head01"),
+
+  /** Version head.001.001.02. */
+  HEAD_001_001_02(Constants.NS_ISO_HEAD_02, "head02"),
+
+  /** Version head.001.001.03. This uses the "head" prefix, as it was the only version originally supported. */
+  HEAD_001_001_03(Constants.NS_ISO_HEAD, "head"),
+
+  /** Version head.001.001.04. */
+  HEAD_001_001_04(Constants.NS_ISO_HEAD_04, "head04");
+
+  /** Index of versions by namespace. */
+  private static final Map<String, AppHdrVersion> BY_NAMESPACE;
+
+
+  /**
+   * Get the version of the header with the specified namespace.
+   *
+   * @param namespace the namespace
+   *
+   * @return the version, or null if the namespace is not a supported AppHdr namespace
+   */
+  public static AppHdrVersion forNamespace(String namespace) {
+    return (namespace != null) ? BY_NAMESPACE.get(namespace) : null;
+  }
+
+
+  /**
+   * Get the version of an AppHdr from its root element's namespace.
+   *
+   * @param appHdr the AppHdr root node, or the document that contains it
+   *
+   * @return the version
+   *
+   * @throws XMLSignatureException if the AppHdr's namespace is not supported
+   */
+  public static AppHdrVersion of(Node appHdr) throws XMLSignatureException {
+    Node root = (appHdr.getNodeType() == Node.DOCUMENT_NODE) ? ((Document) appHdr).getDocumentElement() : appHdr;
+    AppHdrVersion version = forNamespace(root.getNamespaceURI());
+    if (version == null) {
+      throw new XMLSignatureException("Unsupported AppHdr namespace: " + root.getNamespaceURI());
+    }
+    return version;
+  }
+
+
+  static {
+    HashMap<String, AppHdrVersion> map = new HashMap<>();
+    for (AppHdrVersion version : values()) {
+      map.put(version.namespace, version);
+    }
+    BY_NAMESPACE = Map.copyOf(map);
+  }
+
+  /** X-Path to locate the key name within the "Signature" node of the signature envelope. */
+  private final String keyNamePath;
+
+  /** The namespace of this version. */
+  private final String namespace;
+
+  /** The prefix used for this version's namespace in X-Paths. */
+  private final String prefix;
+
+  /** X-Path to locate the "Sgntr" signature envelope within the business header. */
+  private final String signatureEnvelopePath;
+
+  /** X-Path to locate the "Signature" node within the signature envelope of the business header. */
+  private final String signatureNodePath;
+
+  /** X-Path to locate the X.509 certificate within the "Signature" node of the signature envelope. */
+  private final String x509NodePath;
+
+
+  AppHdrVersion(String namespace, String prefix) {
+    this.namespace = namespace;
+    this.prefix = prefix;
+    signatureEnvelopePath = path(Constants.ISO_SIGNATURE_NODE);
+    signatureNodePath = signatureEnvelopePath + "/sign:Signature";
+    x509NodePath = signatureNodePath + "/sign:KeyInfo/sign:X509Data/sign:X509Certificate";
+    keyNamePath = signatureNodePath + "/sign:KeyInfo/sign:KeyName";
+  }
+
+
+  public String getKeyNamePath() {
+    return keyNamePath;
+  }
+
+
+  public String getNamespace() {
+    return namespace;
+  }
+
+
+  public String getPrefix() {
+    return prefix;
+  }
+
+
+  public String getSignatureEnvelopePath() {
+    return signatureEnvelopePath;
+  }
+
+
+  public String getSignatureNodePath() {
+    return signatureNodePath;
+  }
+
+
+  public String getX509NodePath() {
+    return x509NodePath;
+  }
+
+
+  /**
+   * Create an absolute X-Path to an element within this version of the AppHdr.
+   *
+   * @param steps the local names of the elements below the AppHdr, all of which must be in the AppHdr namespace
+   *
+   * @return the X-Path
+   */
+  public String path(String... steps) {
+    StringBuilder builder = new StringBuilder("/").append(prefix).append(":AppHdr");
+    for (String step : steps) {
+      builder.append('/').append(prefix).append(':').append(step);
+    }
+    return builder.toString();
+  }
+
+}
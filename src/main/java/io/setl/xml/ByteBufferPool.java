@@ -0,0 +1,72 @@
+package io.setl.xml;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A bounded pool of fixed-size direct byte buffers. Buffers are allocated when the pool is empty and discarded when the pool is full, so the pool never holds
+ * more than its capacity.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class ByteBufferPool {
+
+  /** Size of the buffers in the shared pool. */
+  static final int BUFFER_SIZE = 64 * 1024;
+
+  /** The pool shared by all canonicalization sinks. */
+  static final ByteBufferPool SHARED = new ByteBufferPool(BUFFER_SIZE, 4 * Runtime.getRuntime().availableProcessors());
+
+  /** The size of each buffer. */
+  private final int bufferSize;
+
+  /** The idle buffers. */
+  private final BlockingQueue<ByteBuffer> idle;
+
+
+  /**
+   * New instance.
+   *
+   * @param bufferSize the size of each buffer
+   * @param capacity   the maximum number of idle buffers to retain
+   */
+  ByteBufferPool(int bufferSize, int capacity) {
+    this.bufferSize = bufferSize;
+    idle = new LinkedBlockingQueue<>(capacity);
+  }
+
+
+  /**
+   * Acquire a cleared buffer from the pool.
+   *
+   * @return the buffer
+   */
+  ByteBuffer acquire() {
+    ByteBuffer buffer = idle.poll();
+    return (buffer != null) ? buffer : ByteBuffer.allocateDirect(bufferSize);
+  }
+
+
+  /**
+   * Get the number of idle buffers held by the pool.
+   *
+   * @return the number of idle buffers
+   */
+  int idleCount() {
+    return idle.size();
+  }
+
+
+  /**
+   * Return a buffer to the pool.
+   *
+   * @param buffer the buffer
+   */
+  void release(ByteBuffer buffer) {
+    buffer.clear();
+    // If the pool is full, the buffer is simply discarded.
+    idle.offer(buffer);
+  }
+
+}
@@ -0,0 +1,206 @@
+package io.setl.xml;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.TreeMap;
+import javax.xml.XMLConstants;
+
+/**
+ * Exclusive XML canonicalization, without comments and with no inclusive namespace prefixes, performed directly on a {@link CompactTree}.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class CompactCanonicalizer {
+
+  /** Order of attributes in canonical form: by namespace URI, then local name. Un-namespaced attributes come first. */
+  private static final Comparator<String[]> ATTRIBUTE_ORDER = Comparator.<String[], String>comparing(a -> a[0]).thenComparing(a -> a[1]);
+
+
+  /**
+   * Canonicalize an element and its descendants.
+   *
+   * @param tree     the tree
+   * @param node     the element to canonicalize
+   * @param excluded an element which is omitted along with its descendants, as for the enveloped signature transform, or NONE
+   * @param output   the stream which receives the UTF-8 canonical form
+   */
+  static void canonicalize(CompactTree tree, int node, int excluded, OutputStream output) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+    new CompactCanonicalizer(tree, excluded, writer).write(node);
+    writer.flush();
+  }
+
+
+  private static void writeEscaped(Writer writer, String text, boolean attribute) throws IOException {
+    for (int i = 0; i < text.length(); i++) {
+      char ch = text.charAt(i);
+      switch (ch) {
+        case '&':
+          writer.write("&amp;");
+          break;
+        case '<':
+          writer.write("&lt;");
+          break;
+        case '>':
+          writer.write(attribute ? ">" : "&gt;");
+          break;
+        case '"':
+          writer.write(attribute ? "&quot;" : "\"");
+          break;
+        case '\r':
+          writer.write("&#xD;");
+          break;
+        case '\n':
+          writer.write(attribute ? "&#xA;" : "\n");
+          break;
+        case '\t':
+          writer.write(attribute ? "&#x9;" : "\t");
+          break;
+        default:
+          writer.write(ch);
+          break;
+      }
+    }
+  }
+
+
+  /** The element to omit. */
+  private final int excluded;
+
+  /** Namespace declarations rendered by output ancestors, as prefix and URI pairs. */
+  private final ArrayList<String[]> rendered = new ArrayList<>();
+
+  /** The tree. */
+  private final CompactTree tree;
+
+  /** The output. */
+  private final Writer writer;
+
+
+  private CompactCanonicalizer(CompactTree tree, int excluded, Writer writer) {
+    this.tree = tree;
+    this.excluded = excluded;
+    this.writer = writer;
+  }
+
+
+  /**
+   * Find the URI most recently rendered for a prefix by an output ancestor.
+   *
+   * @param prefix the prefix
+   *
+   * @return the URI, or null if the prefix has not been rendered
+   */
+  private String renderedUri(String prefix) {
+    for (int i = rendered.size() - 1; i >= 0; i--) {
+      String[] ns = rendered.get(i);
+      if (ns[0].equals(prefix)) {
+        return ns[1];
+      }
+    }
+    return null;
+  }
+
+
+  private void write(int node) throws IOException {
+    if (node == excluded) {
+      return;
+    }
+    switch (tree.getKind(node)) {
+      case CompactTree.TEXT:
+        writeEscaped(writer, tree.getText(node), false);
+        return;
+      case CompactTree.PROCESSING_INSTRUCTION:
+        writer.write("<?");
+        writer.write(tree.getLocalName(node));
+        String data = tree.getNamespace(node);
+        if (data != null && !data.isEmpty()) {
+          writer.write(' ');
+          writer.write(data);
+        }
+        writer.write("?>");
+        return;
+      default:
+        writeElement(node);
+    }
+  }
+
+
+  private void writeElement(int node) throws IOException {
+    String prefix = nonNull(tree.getPrefix(node));
+    String qName = prefix.isEmpty() ? tree.getLocalName(node) : prefix + ":" + tree.getLocalName(node);
+
+    // Find the visibly utilized namespaces, ordered by prefix. The default namespace has the empty prefix and so sorts first.
+    TreeMap<String, String> utilized = new TreeMap<>();
+    utilized.put(prefix, nonNull(tree.getNamespace(node)));
+    int attributeCount = tree.getAttributeCount(node);
+    String[][] attributes = new String[attributeCount][];
+    for (int i = 0; i < attributeCount; i++) {
+      String attrPrefix = nonNull(tree.getAttributePrefix(node, i));
+      String attrNamespace = nonNull(tree.getAttributeNamespace(node, i));
+      String attrLocal = tree.getAttributeLocalName(node, i);
+      if (!attrPrefix.isEmpty() && !XMLConstants.XML_NS_PREFIX.equals(attrPrefix)) {
+        utilized.put(attrPrefix, attrNamespace);
+      }
+      attributes[i] = new String[]{attrNamespace, attrLocal, attrPrefix.isEmpty() ? attrLocal : attrPrefix + ":" + attrLocal, tree.getAttributeValue(node, i)};
+    }
+    Arrays.sort(attributes, ATTRIBUTE_ORDER);
+
+    int renderedSize = rendered.size();
+    writer.write('<');
+    writer.write(qName);
+    for (var entry : utilized.entrySet()) {
+      String nsPrefix = entry.getKey();
+      String uri = entry.getValue();
+      String current = renderedUri(nsPrefix);
+      boolean render;
+      if (nsPrefix.isEmpty() && uri.isEmpty()) {
+        // xmlns="" is only needed to undo a non-empty default namespace rendered by an ancestor
+        render = current != null && !current.isEmpty();
+      } else {
+        render = !uri.equals(current);
+      }
+      if (render) {
+        rendered.add(new String[]{nsPrefix, uri});
+        writer.write(nsPrefix.isEmpty() ? " xmlns=\"" : " xmlns:" + nsPrefix + "=\"");
+        writeEscaped(writer, uri, true);
+        writer.write('"');
+      }
+    }
+    for (String[] attribute : attributes) {
+      writer.write(' ');
+      writer.write(attribute[2]);
+      writer.write("=\"");
+      writeEscaped(writer, attribute[3], true);
+      writer.write('"');
+    }
+    writer.write('>');
+
+    int child = tree.getFirstChild(node);
+    while (child != CompactTree.NONE) {
+      write(child);
+      child = tree.getNextSibling(child);
+    }
+
+    writer.write("</");
+    writer.write(qName);
+    writer.write('>');
+
+    while (rendered.size() > renderedSize) {
+      rendered.remove(rendered.size() - 1);
+    }
+  }
+
+
+  private static String nonNull(String value) {
+    return (value != null) ? value : "";
+  }
+
+}
@@ -0,0 +1,391 @@
+package io.setl.xml;
+
+import static javax.xml.crypto.dsig.CanonicalizationMethod.EXCLUSIVE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.DSAKey;
+import java.security.interfaces.ECKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import javax.crypto.Mac;
+import javax.xml.crypto.dsig.DigestMethod;
+import javax.xml.crypto.dsig.Transform;
+import javax.xml.crypto.dsig.XMLSignatureException;
+import javax.xml.crypto.dsig.dom.DOMValidateContext;
+
+import org.w3c.dom.Node;
+
+import io.setl.xml.IsoSignerVerifier.OperationState;
+import io.setl.xml.metrics.Outcome;
+
+/**
+ * Signing and verification of an AppHdr held as a {@link CompactTree}. The signature has the same three references as one created by the JSR-105
+ * implementation, but the AppHdr is canonicalized, located and updated without a DOM. The Document is still a DOM.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class CompactSignerVerifier {
+
+  /** Maximum number of references allowed in a signature, matching the JDK's secure validation policy. */
+  private static final int MAX_REFERENCES = 30;
+
+  /** Prefix used for XML Signature elements. */
+  private static final String SIGN = "sign";
+
+  /** Transforms required on the Document and KeyInfo references. */
+  private static final List<String> TRANSFORMS_EXCLUSIVE = List.of(EXCLUSIVE);
+
+  /** Transforms required on the AppHdr reference. */
+  private static final List<String> TRANSFORMS_ENVELOPED = List.of(Transform.ENVELOPED, EXCLUSIVE);
+
+
+  private static int appendReference(CompactTree tree, int signedInfo, String uri, List<String> transforms) {
+    int reference = tree.appendElement(signedInfo, SIGN, Constants.NS_SIGNATURE, "Reference", new String[0],
+        (uri != null) ? new String[]{"URI", uri} : new String[0]
+    );
+    int transformsNode = tree.appendElement(reference, SIGN, Constants.NS_SIGNATURE, "Transforms", new String[0], new String[0]);
+    for (String transform : transforms) {
+      tree.appendElement(transformsNode, SIGN, Constants.NS_SIGNATURE, "Transform", new String[0], new String[]{"Algorithm", transform});
+    }
+    tree.appendElement(reference, SIGN, Constants.NS_SIGNATURE, "DigestMethod", new String[0], new String[]{"Algorithm", DigestMethod.SHA256});
+    int digestValue = tree.appendElement(reference, SIGN, Constants.NS_SIGNATURE, "DigestValue", new String[0], new String[0]);
+    return tree.appendText(digestValue, "");
+  }
+
+
+  private static byte[] canonicalize(CompactTree tree, int node) throws XMLSignatureException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try {
+      CompactCanonicalizer.canonicalize(tree, node, CompactTree.NONE, output);
+    } catch (IOException e) {
+      throw new XMLSignatureException("Canonicalization failed", e);
+    }
+    return output.toByteArray();
+  }
+
+
+  /**
+   * Digest the Document for its reference.
+   *
+   * @param factories    the JSR-105 factories
+   * @param document     the document
+   * @param context      a validation context for the document
+   * @param digestMethod the digest method
+   *
+   * @return the digest value
+   */
+  private static byte[] digestDocument(SignatureFactories factories, Node document, DOMValidateContext context, String digestMethod)
+      throws XMLSignatureException {
+    try {
+      Transform c14n = ReferenceDigester.newExclusiveC14n(factories.xmlSignatureFactory.getProvider(), document, context);
+      IsoUriDereferencer dereferencer = new IsoUriDereferencer(factories.keyInfoFactory.getURIDereferencer(), null, document);
+      return ReferenceDigester.digest(c14n, dereferencer, null, context, digestMethod, factories.configuration.getDigestProvider());
+    } catch (NoSuchAlgorithmException | InvalidAlgorithmParameterException e) {
+      throw new XMLSignatureException(e);
+    }
+  }
+
+
+  private static int requireChild(CompactTree tree, int node, String localName) throws XMLSignatureException {
+    int child = tree.findChild(node, Constants.NS_SIGNATURE, localName);
+    if (child == CompactTree.NONE) {
+      throw new XMLSignatureException("The \"" + localName + "\" element was not found.");
+    }
+    return child;
+  }
+
+
+  private static boolean hasElementChild(CompactTree tree, int node) {
+    for (int child = tree.getFirstChild(node); child != CompactTree.NONE; child = tree.getNextSibling(child)) {
+      if (tree.getKind(child) == CompactTree.ELEMENT) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+  /**
+   * Find the AppHdr's signature envelope, creating it if necessary, and remove any existing signatures from it.
+   *
+   * @param tree    the AppHdr
+   * @param version the AppHdr version
+   *
+   * @return the envelope
+   */
+  private static int makeSignatureEnvelope(CompactTree tree, AppHdrVersion version) {
+    String namespace = version.getNamespace();
+    int sgntr = tree.findChild(0, namespace, Constants.ISO_SIGNATURE_NODE);
+    if (sgntr != CompactTree.NONE) {
+      int signature;
+      while ((signature = tree.findChild(sgntr, Constants.NS_SIGNATURE, "Signature")) != CompactTree.NONE) {
+        tree.remove(signature);
+      }
+      return sgntr;
+    }
+
+    // The Sgntr node is near the end of the header. The only thing that comes after it are "Rltd" nodes.
+    int before = CompactTree.NONE;
+    for (int child = tree.getFirstChild(0); child != CompactTree.NONE; child = tree.getNextSibling(child)) {
+      if (tree.getKind(child) != CompactTree.ELEMENT) {
+        continue;
+      }
+      if ("Rltd".equals(tree.getLocalName(child))) {
+        if (before == CompactTree.NONE) {
+          before = child;
+        }
+      } else {
+        before = CompactTree.NONE;
+      }
+    }
+    return tree.insertElement(0, before, tree.getPrefix(0), namespace, Constants.ISO_SIGNATURE_NODE);
+  }
+
+
+  /**
+   * Sign an AppHdr and Document pair.
+   *
+   * @param factories   the JSR-105 factories
+   * @param header      the AppHdr, which is updated with the signature
+   * @param document    the Document
+   * @param method      the signature method
+   * @param key         the private key, or the secret key for an HMAC method
+   * @param certificate the certificate to include in the KeyInfo, or null if the key is a secret key
+   * @param keyName     the key name to include in the KeyInfo if the key is a secret key
+   * @param state       the operation state, which receives the reference digests
+   */
+  static void sign(
+      SignatureFactories factories, CompactTree header, Node document, XMLSignatureMethod method, Key key, X509Certificate certificate, String keyName,
+      OperationState state
+  ) throws GeneralSecurityException, XMLSignatureException {
+    AppHdrVersion version = version(header);
+    Provider signatureProvider = factories.configuration.getSignatureProvider(method);
+    Provider digestProvider = factories.configuration.getDigestProvider();
+
+    int sgntr = makeSignatureEnvelope(header, version);
+    int signature = header.appendElement(sgntr, SIGN, Constants.NS_SIGNATURE, "Signature", new String[]{SIGN, Constants.NS_SIGNATURE}, new String[0]);
+    int signedInfo = header.appendElement(signature, SIGN, Constants.NS_SIGNATURE, "SignedInfo", new String[0], new String[0]);
+    header.appendElement(signedInfo, SIGN, Constants.NS_SIGNATURE, "CanonicalizationMethod", new String[0], new String[]{"Algorithm", EXCLUSIVE});
+    header.appendElement(signedInfo, SIGN, Constants.NS_SIGNATURE, "SignatureMethod", new String[0], new String[]{"Algorithm", method.getUri()});
+
+    String keyInfoId = "KeyInfo-" + UUID.randomUUID();
+    int keyInfoDigest = appendReference(header, signedInfo, "#" + keyInfoId, TRANSFORMS_EXCLUSIVE);
+    int appHdrDigest = appendReference(header, signedInfo, "", TRANSFORMS_ENVELOPED);
+    int documentDigest = appendReference(header, signedInfo, null, TRANSFORMS_EXCLUSIVE);
+
+    int signatureValue = header.appendElement(signature, SIGN, Constants.NS_SIGNATURE, "SignatureValue", new String[0], new String[0]);
+    int signatureText = header.appendText(signatureValue, "");
+    int keyInfo = header.appendElement(signature, SIGN, Constants.NS_SIGNATURE, "KeyInfo", new String[0], new String[]{"Id", keyInfoId});
+    if (certificate != null) {
+      int x509Data = header.appendElement(keyInfo, SIGN, Constants.NS_SIGNATURE, "X509Data", new String[0], new String[0]);
+      int x509Certificate = header.appendElement(x509Data, SIGN, Constants.NS_SIGNATURE, "X509Certificate", new String[0], new String[0]);
+      header.appendText(x509Certificate, Base64.getEncoder().encodeToString(certificate.getEncoded()));
+    } else {
+      int keyNameNode = header.appendElement(keyInfo, SIGN, Constants.NS_SIGNATURE, "KeyName", new String[0], new String[0]);
+      header.appendText(keyNameNode, keyName);
+    }
+
+    // Calculate the reference digests
+    Base64.Encoder encoder = Base64.getEncoder();
+    state.digests.add(ReferenceDigester.digest(header, keyInfo, CompactTree.NONE, DigestMethod.SHA256, digestProvider));
+    state.digests.add(ReferenceDigester.digest(header, 0, signature, DigestMethod.SHA256, digestProvider));
+    DOMValidateContext context = new DOMValidateContext(key, document);
+    state.digests.add(digestDocument(factories, document, context, DigestMethod.SHA256));
+    header.setText(keyInfoDigest, encoder.encodeToString(state.digests.get(0)));
+    header.setText(appHdrDigest, encoder.encodeToString(state.digests.get(1)));
+    header.setText(documentDigest, encoder.encodeToString(state.digests.get(2)));
+
+    // Sign the canonical SignedInfo
+    byte[] value;
+    if (SignatureAlgorithms.isHmac(method)) {
+      Mac mac = SignatureAlgorithms.newMac(method, signatureProvider);
+      mac.init(key);
+      value = mac.doFinal(canonicalize(header, signedInfo));
+    } else {
+      Signature signer = SignatureAlgorithms.newSignature(method, signatureProvider);
+      PrivateKey privateKey = (PrivateKey) key;
+      signer.initSign(privateKey);
+      signer.update(canonicalize(header, signedInfo));
+      value = signer.sign();
+      if (SignatureAlgorithms.isDsa(method)) {
+        int bits = (privateKey instanceof ECKey)
+            ? ((ECKey) privateKey).getParams().getOrder().bitLength()
+            : ((DSAKey) privateKey).getParams().getQ().bitLength();
+        value = SignatureAlgorithms.toConcatenated(value, (bits + 7) / 8);
+      }
+    }
+    header.setText(signatureText, encoder.encodeToString(value));
+  }
+
+
+  private static List<String> transforms(CompactTree tree, int reference) throws XMLSignatureException {
+    ArrayList<String> algorithms = new ArrayList<>();
+    int transforms = tree.findChild(reference, Constants.NS_SIGNATURE, "Transforms");
+    if (transforms == CompactTree.NONE) {
+      return algorithms;
+    }
+    for (int child = tree.getFirstChild(transforms); child != CompactTree.NONE; child = tree.getNextSibling(child)) {
+      if (tree.getKind(child) == CompactTree.ELEMENT) {
+        if (hasElementChild(tree, child)) {
+          throw new XMLSignatureException("Transform parameters are not supported");
+        }
+        algorithms.add(tree.getAttribute(child, "Algorithm"));
+      }
+    }
+    return algorithms;
+  }
+
+
+  /**
+   * Validate the signature of an AppHdr and Document pair.
+   *
+   * @param factories the JSR-105 factories
+   * @param header    the AppHdr
+   * @param document  the Document
+   * @param resolver  the resolver for secret keys named in the KeyInfo, or null if HMAC signatures are not accepted
+   * @param state     the operation state, which receives the certificate, reference digests and outcome
+   */
+  static void validate(SignatureFactories factories, CompactTree header, Node document, SecretKeyResolver resolver, OperationState state)
+      throws GeneralSecurityException, XMLSignatureException {
+    AppHdrVersion version = version(header);
+    int sgntr = header.findChild(0, version.getNamespace(), Constants.ISO_SIGNATURE_NODE);
+    if (sgntr == CompactTree.NONE) {
+      throw new XMLSignatureException("The \"" + Constants.ISO_SIGNATURE_NODE + "\" element was not found.");
+    }
+    int signature = requireChild(header, sgntr, "Signature");
+    int signedInfo = requireChild(header, signature, "SignedInfo");
+
+    int c14nMethod = requireChild(header, signedInfo, "CanonicalizationMethod");
+    if (!EXCLUSIVE.equals(header.getAttribute(c14nMethod, "Algorithm")) || hasElementChild(header, c14nMethod)) {
+      throw new XMLSignatureException("Unsupported canonicalization method: " + header.getAttribute(c14nMethod, "Algorithm"));
+    }
+    XMLSignatureMethod method = XMLSignatureMethod.forUri(header.getAttribute(requireChild(header, signedInfo, "SignatureMethod"), "Algorithm"));
+    state.method = method;
+    if (method == null || SignatureAlgorithms.DISALLOWED.contains(method)) {
+      throw new XMLSignatureException("Unsupported or insecure signature method");
+    }
+
+    int keyInfo = requireChild(header, signature, "KeyInfo");
+    int x509Node = header.findPath(keyInfo, Constants.NS_SIGNATURE, "X509Data", "X509Certificate");
+    int keyNameNode = header.findChild(keyInfo, Constants.NS_SIGNATURE, "KeyName");
+    boolean isSecret = x509Node == CompactTree.NONE && keyNameNode != CompactTree.NONE;
+    IsoSignerVerifier.checkKeyType(method, isSecret);
+    Key key;
+    if (isSecret) {
+      key = IsoSignerVerifier.resolveSecretKey(resolver, header.getTextContent(keyNameNode));
+    } else {
+      if (x509Node == CompactTree.NONE) {
+        throw new XMLSignatureException("The \"X509Certificate\" element was not found.");
+      }
+      X509Certificate x509Certificate = IsoSignerVerifier.decodeCertificate(factories.certificateFactory, header.getTextContent(x509Node));
+      state.certificate = x509Certificate;
+      key = x509Certificate.getPublicKey();
+      SignatureAlgorithms.checkKeySize((PublicKey) key);
+    }
+
+    // Check the references
+    Base64.Decoder decoder = Base64.getMimeDecoder();
+    int referenceCount = 0;
+    for (int reference = header.getFirstChild(signedInfo); reference != CompactTree.NONE; reference = header.getNextSibling(reference)) {
+      if (header.getKind(reference) != CompactTree.ELEMENT || !"Reference".equals(header.getLocalName(reference))) {
+        continue;
+      }
+      if (++referenceCount > MAX_REFERENCES) {
+        throw new XMLSignatureException("Too many references");
+      }
+      String uri = header.getAttribute(reference, "URI");
+      List<String> transforms = transforms(header, reference);
+      String digestMethod = header.getAttribute(requireChild(header, reference, "DigestMethod"), "Algorithm");
+      if (DigestMethod.SHA1.equals(digestMethod)) {
+        throw new XMLSignatureException("Insecure digest method: " + digestMethod);
+      }
+      byte[] expected;
+      try {
+        expected = decoder.decode(header.getTextContent(requireChild(header, reference, "DigestValue")));
+      } catch (IllegalArgumentException e) {
+        throw new XMLSignatureException("Invalid digest value", e);
+      }
+      state.digests.add(expected);
+
+      byte[] actual;
+      if (uri == null && transforms.equals(TRANSFORMS_EXCLUSIVE)) {
+        DOMValidateContext context = new DOMValidateContext(key, document);
+        actual = digestDocument(factories, document, context, digestMethod);
+      } else if (uri != null && uri.isEmpty() && transforms.equals(TRANSFORMS_ENVELOPED)) {
+        actual = ReferenceDigester.digest(header, 0, signature, digestMethod, factories.configuration.getDigestProvider());
+      } else if (uri != null && uri.startsWith("#") && transforms.equals(TRANSFORMS_EXCLUSIVE)) {
+        int target = header.findById(uri.substring(1));
+        if (target == CompactTree.NONE) {
+          throw new XMLSignatureException("Cannot resolve reference: " + uri);
+        }
+        actual = ReferenceDigester.digest(header, target, CompactTree.NONE, digestMethod, factories.configuration.getDigestProvider());
+      } else {
+        throw new XMLSignatureException("Unsupported reference: URI=" + uri + ", transforms=" + transforms);
+      }
+
+      if (!MessageDigest.isEqual(expected, actual)) {
+        state.outcome = Outcome.INVALID_REFERENCE;
+        return;
+      }
+    }
+    if (referenceCount == 0) {
+      throw new XMLSignatureException("Signature has no references");
+    }
+
+    // Check the signature value
+    byte[] value;
+    try {
+      value = decoder.decode(header.getTextContent(requireChild(header, signature, "SignatureValue")));
+    } catch (IllegalArgumentException e) {
+      throw new XMLSignatureException("Invalid signature value", e);
+    }
+    boolean isValid;
+    if (SignatureAlgorithms.isHmac(method)) {
+      Mac mac = SignatureAlgorithms.newMac(method, factories.configuration.getSignatureProvider(method));
+      mac.init(key);
+      isValid = MessageDigest.isEqual(mac.doFinal(canonicalize(header, signedInfo)), value);
+    } else {
+      if (SignatureAlgorithms.isDsa(method)) {
+        value = SignatureAlgorithms.toDer(value);
+      }
+      Signature verifier = SignatureAlgorithms.newSignature(method, factories.configuration.getSignatureProvider(method));
+      verifier.initVerify((PublicKey) key);
+      verifier.update(canonicalize(header, signedInfo));
+      try {
+        isValid = verifier.verify(value);
+      } catch (SignatureException e) {
+        throw new XMLSignatureException("Invalid signature value", e);
+      }
+    }
+    state.outcome = isValid ? Outcome.VALID : Outcome.INVALID_SIGNATURE;
+  }
+
+
+  private static AppHdrVersion version(CompactTree header) throws XMLSignatureException {
+    AppHdrVersion version = AppHdrVersion.forNamespace(header.getNamespace(0));
+    if (version == null || !"AppHdr".equals(header.getLocalName(0))) {
+      throw new XMLSignatureException("Not a supported AppHdr: {" + header.getNamespace(0) + "}" + header.getLocalName(0));
+    }
+    return version;
+  }
+
+
+  private CompactSignerVerifier() {
+    // do nothing
+  }
+
+}
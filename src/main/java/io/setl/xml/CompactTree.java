@@ -0,0 +1,948 @@
+package io.setl.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import javax.xml.XMLConstants;
+import javax.xml.crypto.dsig.XMLSignatureException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * A compact tree representation of a small XML element, intended for the ISO-20022 AppHdr. All the nodes are held in a single integer array, all the
+ * attributes and namespace declarations in two more, and all the names and text in a single character buffer. While parsing, each distinct name and
+ * namespace is stored in the buffer only once.
+ *
+ * <p>Nodes are identified by their index. The root element is always node zero. Comments are discarded as they play no part in a signature. DTDs are not processed, so a reference to an entity declared in one is rejected.</p>
+ *
+ * <p>Instances are not thread-safe.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class CompactTree {
+
+  /** Node kind of an element. */
+  public static final int ELEMENT = 1;
+
+  /** Value used for a missing node or string. */
+  public static final int NONE = -1;
+
+  /** Node kind of a processing instruction. */
+  public static final int PROCESSING_INSTRUCTION = 3;
+
+  /** Node kind of text. */
+  public static final int TEXT = 2;
+
+  /** Attribute field: local name. */
+  private static final int A_LOCAL = 1;
+
+  /** Attribute field: namespace. */
+  private static final int A_NAMESPACE = 2;
+
+  /** Attribute field: prefix. */
+  private static final int A_PREFIX = 0;
+
+  /** Number of fields in an attribute. */
+  private static final int A_STRIDE = 4;
+
+  /** Attribute field: value. */
+  private static final int A_VALUE = 3;
+
+  /** Namespace declaration field: prefix. */
+  private static final int D_PREFIX = 0;
+
+  /** Number of fields in a namespace declaration. */
+  private static final int D_STRIDE = 2;
+
+  /** Namespace declaration field: URI. */
+  private static final int D_URI = 1;
+
+  /** Node field: number of attributes. */
+  private static final int N_ATTR_COUNT = 9;
+
+  /** Node field: index of first attribute. */
+  private static final int N_ATTR_START = 8;
+
+  /** Node field: number of namespace declarations. */
+  private static final int N_DECL_COUNT = 11;
+
+  /** Node field: index of first namespace declaration. */
+  private static final int N_DECL_START = 10;
+
+  /** Node field: first child. */
+  private static final int N_FIRST_CHILD = 2;
+
+  /** Node field: kind. */
+  private static final int N_KIND = 0;
+
+  /** Node field: last child. */
+  private static final int N_LAST_CHILD = 3;
+
+  /** Node field: local name for elements, target for processing instructions, content for text. */
+  private static final int N_NAME = 6;
+
+  /** Node field: namespace for elements, data for processing instructions. */
+  private static final int N_NAMESPACE = 7;
+
+  /** Node field: next sibling. */
+  private static final int N_NEXT_SIBLING = 4;
+
+  /** Node field: parent. */
+  private static final int N_PARENT = 1;
+
+  /** Node field: prefix for elements. */
+  private static final int N_PREFIX = 5;
+
+  /** Number of fields in a node. */
+  private static final int N_STRIDE = 12;
+
+  /** Factory for stream readers. */
+  private static final XMLInputFactory INPUT_FACTORY;
+
+
+  static {
+    XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+    inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+    inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    INPUT_FACTORY = inputFactory;
+  }
+
+
+  /**
+   * Parse a compact tree from a stream containing a single XML document.
+   *
+   * @param inputStream the stream
+   *
+   * @return the tree of the document element
+   */
+  public static CompactTree parse(InputStream inputStream) throws XMLStreamException {
+    XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(inputStream);
+    try {
+      reader.nextTag();
+      return parse(reader);
+    } finally {
+      reader.close();
+    }
+  }
+
+
+  /**
+   * Parse a compact tree from text containing a single XML document.
+   *
+   * @param xml the text
+   *
+   * @return the tree of the document element
+   */
+  public static CompactTree parse(String xml) throws XMLStreamException {
+    XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(new StringReader(xml));
+    try {
+      reader.nextTag();
+      return parse(reader);
+    } finally {
+      reader.close();
+    }
+  }
+
+
+  /**
+   * Parse a compact tree from the element at the reader's current position. On return, the reader is positioned on the element's end tag.
+   *
+   * @param reader the reader, positioned on a start tag
+   *
+   * @return the tree of the element
+   */
+  public static CompactTree parse(XMLStreamReader reader) throws XMLStreamException {
+    if (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+      throw new XMLStreamException("Reader is not positioned on a start tag", reader.getLocation());
+    }
+    CompactTree tree = new CompactTree();
+    int current = tree.startElement(NONE, reader);
+    while (current != NONE) {
+      switch (reader.next()) {
+        case XMLStreamConstants.START_ELEMENT:
+          current = tree.startElement(current, reader);
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          current = tree.getParent(current);
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          tree.appendText(current, reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+          break;
+        case XMLStreamConstants.PROCESSING_INSTRUCTION:
+          tree.appendProcessingInstruction(current, reader.getPITarget(), reader.getPIData());
+          break;
+        default:
+          // Comments are discarded, and other events cannot occur within an element.
+          break;
+      }
+    }
+
+    // The name index is only needed while parsing. Names added later are not shared.
+    tree.names = null;
+    return tree;
+  }
+
+
+  /** Attribute data. */
+  private int[] attributes = new int[16 * A_STRIDE];
+
+  /** Number of attributes. */
+  private int attributeCount = 0;
+
+  /** The character buffer holding all names and text. */
+  private char[] chars = new char[1024];
+
+  /** Number of characters in use. */
+  private int charCount = 0;
+
+  /** Namespace declaration data. */
+  private int[] declarations = new int[8 * D_STRIDE];
+
+  /** Number of namespace declarations. */
+  private int declarationCount = 0;
+
+  /** Index of names and namespaces already in the character buffer, so that they are only stored once. Discarded when parsing is complete. */
+  private HashMap<String, Integer> names = new HashMap<>();
+
+  /** Number of nodes. */
+  private int nodeCount = 0;
+
+  /** Node data. */
+  private int[] nodes = new int[64 * N_STRIDE];
+
+  /** Number of strings. */
+  private int stringCount = 0;
+
+  /** Start and length of each string in the character buffer. */
+  private int[] strings = new int[128 * 2];
+
+
+  private CompactTree() {
+    // Instances are created by parsing.
+  }
+
+
+  private int addAttribute(String prefix, String namespace, String localName, String value) {
+    if (attributeCount * A_STRIDE == attributes.length) {
+      attributes = Arrays.copyOf(attributes, attributes.length * 2);
+    }
+    int offset = attributeCount * A_STRIDE;
+    attributes[offset + A_PREFIX] = name(prefix);
+    attributes[offset + A_NAMESPACE] = name(namespace);
+    attributes[offset + A_LOCAL] = name(localName);
+    attributes[offset + A_VALUE] = text(value);
+    return attributeCount++;
+  }
+
+
+  private int addDeclaration(String prefix, String uri) {
+    if (declarationCount * D_STRIDE == declarations.length) {
+      declarations = Arrays.copyOf(declarations, declarations.length * 2);
+    }
+    int offset = declarationCount * D_STRIDE;
+    declarations[offset + D_PREFIX] = name(prefix);
+    declarations[offset + D_URI] = name(uri);
+    return declarationCount++;
+  }
+
+
+  private int addNode(int parent, int kind) {
+    if (nodeCount * N_STRIDE == nodes.length) {
+      nodes = Arrays.copyOf(nodes, nodes.length * 2);
+    }
+    int node = nodeCount++;
+    int offset = node * N_STRIDE;
+    Arrays.fill(nodes, offset, offset + N_STRIDE, NONE);
+    nodes[offset + N_KIND] = kind;
+    nodes[offset + N_ATTR_COUNT] = 0;
+    nodes[offset + N_DECL_COUNT] = 0;
+    if (parent != NONE) {
+      link(parent, node);
+    }
+    return node;
+  }
+
+
+  private int addString(char[] source, int start, int length) {
+    if (charCount + length > chars.length) {
+      chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+    }
+    System.arraycopy(source, start, chars, charCount, length);
+    if (stringCount * 2 == strings.length) {
+      strings = Arrays.copyOf(strings, strings.length * 2);
+    }
+    strings[stringCount * 2] = charCount;
+    strings[stringCount * 2 + 1] = length;
+    charCount += length;
+    return stringCount++;
+  }
+
+
+  /**
+   * Append a new element as the last child of an existing element.
+   *
+   * @param parent       the parent element
+   * @param prefix       the new element's prefix, or null
+   * @param namespace    the new element's namespace, or null
+   * @param localName    the new element's local name
+   * @param declarations the new element's namespace declarations, as prefix and URI pairs
+   * @param attributes   the new element's un-namespaced attributes, as name and value pairs
+   *
+   * @return the new element
+   */
+  public int appendElement(int parent, String prefix, String namespace, String localName, String[] declarations, String[] attributes) {
+    int node = addNode(parent, ELEMENT);
+    setElementName(node, prefix, namespace, localName);
+    int offset = node * N_STRIDE;
+    nodes[offset + N_DECL_COUNT] = declarations.length / 2;
+    for (int i = 0; i < declarations.length; i += 2) {
+      int d = addDeclaration(declarations[i], declarations[i + 1]);
+      if (i == 0) {
+        nodes[offset + N_DECL_START] = d;
+      }
+    }
+    nodes[offset + N_ATTR_COUNT] = attributes.length / 2;
+    for (int i = 0; i < attributes.length; i += 2) {
+      int a = addAttribute(null, null, attributes[i], attributes[i + 1]);
+      if (i == 0) {
+        nodes[offset + N_ATTR_START] = a;
+      }
+    }
+    return node;
+  }
+
+
+  private void appendProcessingInstruction(int parent, String target, String data) {
+    int node = addNode(parent, PROCESSING_INSTRUCTION);
+    nodes[node * N_STRIDE + N_NAME] = name(target);
+    nodes[node * N_STRIDE + N_NAMESPACE] = text(data);
+  }
+
+
+  /**
+   * Append text as the last child of an element. If the element's last child is already text, a new text node is still created.
+   *
+   * @param parent the parent element
+   * @param text   the text
+   *
+   * @return the new text node
+   */
+  public int appendText(int parent, String text) {
+    int node = addNode(parent, TEXT);
+    nodes[node * N_STRIDE + N_NAME] = text(text);
+    return node;
+  }
+
+
+  private void appendText(int parent, char[] source, int start, int length) {
+    int node = addNode(parent, TEXT);
+    nodes[node * N_STRIDE + N_NAME] = addString(source, start, length);
+  }
+
+
+  /**
+   * Test if a string in the buffer is equal to a Java string.
+   *
+   * @param string the buffer string's index, or NONE
+   * @param value  the Java string, or null
+   *
+   * @return true if they are equal. NONE is equal to null and the empty string.
+   */
+  boolean equalsString(int string, String value) {
+    if (string == NONE) {
+      return value == null || value.isEmpty();
+    }
+    int length = strings[string * 2 + 1];
+    if (value == null || value.length() != length) {
+      return length == 0 && value == null;
+    }
+    int start = strings[string * 2];
+    for (int i = 0; i < length; i++) {
+      if (chars[start + i] != value.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  /**
+   * Find the first child element of a node with a specific namespace and local name.
+   *
+   * @param node      the node
+   * @param namespace the namespace
+   * @param localName the local name
+   *
+   * @return the child, or NONE
+   */
+  public int findChild(int node, String namespace, String localName) {
+    int child = getFirstChild(node);
+    while (child != NONE) {
+      if (getKind(child) == ELEMENT && equalsString(nodes[child * N_STRIDE + N_NAME], localName) && equalsString(
+          nodes[child * N_STRIDE + N_NAMESPACE], namespace)) {
+        return child;
+      }
+      child = getNextSibling(child);
+    }
+    return NONE;
+  }
+
+
+  /**
+   * Find an element by following a path of child elements in a single namespace.
+   *
+   * @param node       the node to start from
+   * @param namespace  the namespace of all the elements in the path
+   * @param localNames the local names of the elements in the path
+   *
+   * @return the element, or NONE
+   */
+  public int findPath(int node, String namespace, String... localNames) {
+    for (String localName : localNames) {
+      if (node == NONE) {
+        return NONE;
+      }
+      node = findChild(node, namespace, localName);
+    }
+    return node;
+  }
+
+
+  /**
+   * Find the element with an un-namespaced "Id" attribute with the given value. As with the JDK's secure validation policy, an ID which appears on more than
+   * one element is rejected, so that a reference cannot be redirected to an element the signer did not intend.
+   *
+   * @param id the ID
+   *
+   * @return the element, or NONE
+   *
+   * @throws XMLSignatureException if more than one element has the ID
+   */
+  public int findById(String id) throws XMLSignatureException {
+    int found = NONE;
+    for (int node = 0; node < nodeCount; node++) {
+      if (getKind(node) == ELEMENT && isAttached(node) && equalsString(findAttribute(node, "Id"), id)) {
+        if (found != NONE) {
+          throw new XMLSignatureException("Multiple elements with the ID \"" + id + "\"");
+        }
+        found = node;
+      }
+    }
+    return found;
+  }
+
+
+  /**
+   * Find the value of an un-namespaced attribute.
+   *
+   * @param node      the element
+   * @param localName the attribute's name
+   *
+   * @return the index of the attribute value's string, or NONE
+   */
+  private int findAttribute(int node, String localName) {
+    int start = nodes[node * N_STRIDE + N_ATTR_START];
+    int end = start + nodes[node * N_STRIDE + N_ATTR_COUNT];
+    for (int a = start; a < end; a++) {
+      if (attributes[a * A_STRIDE + A_NAMESPACE] == NONE && equalsString(attributes[a * A_STRIDE + A_LOCAL], localName)) {
+        return attributes[a * A_STRIDE + A_VALUE];
+      }
+    }
+    return NONE;
+  }
+
+
+  /**
+   * Get the value of an un-namespaced attribute.
+   *
+   * @param node      the element
+   * @param localName the attribute's name
+   *
+   * @return the value, or null if the attribute is not present
+   */
+  public String getAttribute(int node, String localName) {
+    int value = findAttribute(node, localName);
+    return (value != NONE) ? getString(value) : null;
+  }
+
+
+  /**
+   * Get the number of attributes on an element.
+   *
+   * @param node the element
+   *
+   * @return the number of attributes
+   */
+  public int getAttributeCount(int node) {
+    return nodes[node * N_STRIDE + N_ATTR_COUNT];
+  }
+
+
+  String getAttributeLocalName(int node, int index) {
+    return getString(attributes[(nodes[node * N_STRIDE + N_ATTR_START] + index) * A_STRIDE + A_LOCAL]);
+  }
+
+
+  String getAttributeNamespace(int node, int index) {
+    return getString(attributes[(nodes[node * N_STRIDE + N_ATTR_START] + index) * A_STRIDE + A_NAMESPACE]);
+  }
+
+
+  String getAttributePrefix(int node, int index) {
+    return getString(attributes[(nodes[node * N_STRIDE + N_ATTR_START] + index) * A_STRIDE + A_PREFIX]);
+  }
+
+
+  String getAttributeValue(int node, int index) {
+    return getString(attributes[(nodes[node * N_STRIDE + N_ATTR_START] + index) * A_STRIDE + A_VALUE]);
+  }
+
+
+  int getDeclarationCount(int node) {
+    return nodes[node * N_STRIDE + N_DECL_COUNT];
+  }
+
+
+  String getDeclarationPrefix(int node, int index) {
+    return getString(declarations[(nodes[node * N_STRIDE + N_DECL_START] + index) * D_STRIDE + D_PREFIX]);
+  }
+
+
+  String getDeclarationUri(int node, int index) {
+    return getString(declarations[(nodes[node * N_STRIDE + N_DECL_START] + index) * D_STRIDE + D_URI]);
+  }
+
+
+  public int getFirstChild(int node) {
+    return nodes[node * N_STRIDE + N_FIRST_CHILD];
+  }
+
+
+  public int getKind(int node) {
+    return nodes[node * N_STRIDE + N_KIND];
+  }
+
+
+  /**
+   * Get the local name of an element, or the target of a processing instruction.
+   *
+   * @param node the node
+   *
+   * @return the name
+   */
+  public String getLocalName(int node) {
+    return getString(nodes[node * N_STRIDE + N_NAME]);
+  }
+
+
+  /**
+   * Get the namespace of an element, or the data of a processing instruction.
+   *
+   * @param node the node
+   *
+   * @return the namespace or data, or null
+   */
+  public String getNamespace(int node) {
+    return getString(nodes[node * N_STRIDE + N_NAMESPACE]);
+  }
+
+
+  public int getNextSibling(int node) {
+    return nodes[node * N_STRIDE + N_NEXT_SIBLING];
+  }
+
+
+  public int getParent(int node) {
+    return nodes[node * N_STRIDE + N_PARENT];
+  }
+
+
+  /**
+   * Get the prefix of an element.
+   *
+   * @param node the element
+   *
+   * @return the prefix, or null
+   */
+  public String getPrefix(int node) {
+    return getString(nodes[node * N_STRIDE + N_PREFIX]);
+  }
+
+
+  private String getString(int string) {
+    if (string == NONE) {
+      return null;
+    }
+    return new String(chars, strings[string * 2], strings[string * 2 + 1]);
+  }
+
+
+  /**
+   * Get the content of a text node.
+   *
+   * @param node the text node
+   *
+   * @return the text
+   */
+  public String getText(int node) {
+    return getString(nodes[node * N_STRIDE + N_NAME]);
+  }
+
+
+  /**
+   * Get the concatenated text of all the descendants of a node.
+   *
+   * @param node the node
+   *
+   * @return the text
+   */
+  public String getTextContent(int node) {
+    if (getKind(node) == TEXT) {
+      return getText(node);
+    }
+    StringBuilder builder = new StringBuilder();
+    int child = getFirstChild(node);
+    while (child != NONE) {
+      if (getKind(child) != PROCESSING_INSTRUCTION) {
+        builder.append(getTextContent(child));
+      }
+      child = getNextSibling(child);
+    }
+    return builder.toString();
+  }
+
+
+  /**
+   * Insert an unattached node as a child of an element, before an existing child.
+   *
+   * @param parent the parent element
+   * @param node   the node to insert
+   * @param before the existing child, or NONE to append
+   */
+  private void insertBefore(int parent, int node, int before) {
+    if (before == NONE) {
+      link(parent, node);
+      return;
+    }
+    nodes[node * N_STRIDE + N_PARENT] = parent;
+    nodes[node * N_STRIDE + N_NEXT_SIBLING] = before;
+    int first = getFirstChild(parent);
+    if (first == before) {
+      nodes[parent * N_STRIDE + N_FIRST_CHILD] = node;
+      return;
+    }
+    int previous = first;
+    while (getNextSibling(previous) != before) {
+      previous = getNextSibling(previous);
+    }
+    nodes[previous * N_STRIDE + N_NEXT_SIBLING] = node;
+  }
+
+
+  /**
+   * Insert a new element as a child of an existing element, before an existing child.
+   *
+   * @param parent    the parent element
+   * @param before    the existing child, or NONE to append
+   * @param prefix    the new element's prefix, or null
+   * @param namespace the new element's namespace, or null
+   * @param localName the new element's local name
+   *
+   * @return the new element
+   */
+  public int insertElement(int parent, int before, String prefix, String namespace, String localName) {
+    int node = addNode(NONE, ELEMENT);
+    setElementName(node, prefix, namespace, localName);
+    insertBefore(parent, node, before);
+    return node;
+  }
+
+
+  /**
+   * Test if a node is part of the tree, rather than having been removed from it, or being below a node that has been removed.
+   *
+   * @param node the node
+   *
+   * @return true if the node is reachable from the root
+   */
+  private boolean isAttached(int node) {
+    while (node != 0) {
+      node = getParent(node);
+      if (node == NONE) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  private void link(int parent, int node) {
+    int offset = node * N_STRIDE;
+    nodes[offset + N_PARENT] = parent;
+    nodes[offset + N_NEXT_SIBLING] = NONE;
+    int parentOffset = parent * N_STRIDE;
+    int last = nodes[parentOffset + N_LAST_CHILD];
+    if (last == NONE || nodes[last * N_STRIDE + N_PARENT] != parent) {
+      // Recalculate the last child, as it may have been removed.
+      last = nodes[parentOffset + N_FIRST_CHILD];
+      while (last != NONE && getNextSibling(last) != NONE) {
+        last = getNextSibling(last);
+      }
+    }
+    if (last == NONE) {
+      nodes[parentOffset + N_FIRST_CHILD] = node;
+    } else {
+      nodes[last * N_STRIDE + N_NEXT_SIBLING] = node;
+    }
+    nodes[parentOffset + N_LAST_CHILD] = node;
+  }
+
+
+  private int name(String value) {
+    if (value == null || value.isEmpty()) {
+      return NONE;
+    }
+    if (names == null) {
+      return addString(value.toCharArray(), 0, value.length());
+    }
+    Integer index = names.get(value);
+    if (index == null) {
+      index = addString(value.toCharArray(), 0, value.length());
+      names.put(value, index);
+    }
+    return index;
+  }
+
+
+  /**
+   * Remove a node from its parent. The node's storage is not reclaimed.
+   *
+   * @param node the node to remove
+   */
+  public void remove(int node) {
+    int parent = getParent(node);
+    if (parent == NONE) {
+      throw new IllegalArgumentException("Cannot remove the root node");
+    }
+    int next = getNextSibling(node);
+    int first = getFirstChild(parent);
+    if (first == node) {
+      nodes[parent * N_STRIDE + N_FIRST_CHILD] = next;
+    } else {
+      int previous = first;
+      while (getNextSibling(previous) != node) {
+        previous = getNextSibling(previous);
+      }
+      nodes[previous * N_STRIDE + N_NEXT_SIBLING] = next;
+    }
+    if (nodes[parent * N_STRIDE + N_LAST_CHILD] == node) {
+      nodes[parent * N_STRIDE + N_LAST_CHILD] = NONE;
+    }
+    nodes[node * N_STRIDE + N_PARENT] = NONE;
+    nodes[node * N_STRIDE + N_NEXT_SIBLING] = NONE;
+  }
+
+
+  private void setElementName(int node, String prefix, String namespace, String localName) {
+    int offset = node * N_STRIDE;
+    nodes[offset + N_PREFIX] = name(prefix);
+    nodes[offset + N_NAMESPACE] = name(namespace);
+    nodes[offset + N_NAME] = name(localName);
+  }
+
+
+  /**
+   * Replace the content of a text node.
+   *
+   * @param node the text node
+   * @param text the new content
+   */
+  public void setText(int node, String text) {
+    nodes[node * N_STRIDE + N_NAME] = text(text);
+  }
+
+
+  private int startElement(int parent, XMLStreamReader reader) {
+    int node = addNode(parent, ELEMENT);
+    setElementName(node, reader.getPrefix(), reader.getNamespaceURI(), reader.getLocalName());
+    int offset = node * N_STRIDE;
+
+    int count = reader.getNamespaceCount();
+    nodes[offset + N_DECL_COUNT] = count;
+    for (int i = 0; i < count; i++) {
+      int d = addDeclaration(reader.getNamespacePrefix(i), reader.getNamespaceURI(i));
+      if (i == 0) {
+        nodes[offset + N_DECL_START] = d;
+      }
+    }
+
+    count = reader.getAttributeCount();
+    nodes[offset + N_ATTR_COUNT] = count;
+    for (int i = 0; i < count; i++) {
+      int a = addAttribute(reader.getAttributePrefix(i), reader.getAttributeNamespace(i), reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+      if (i == 0) {
+        nodes[offset + N_ATTR_START] = a;
+      }
+    }
+    return node;
+  }
+
+
+  private int text(String value) {
+    return (value != null) ? addString(value.toCharArray(), 0, value.length()) : NONE;
+  }
+
+
+  /**
+   * Write this tree as XML text. Namespace declarations are added wherever a prefix would otherwise be undeclared.
+   *
+   * @param writer the writer
+   */
+  public void write(Writer writer) throws IOException {
+    write(writer, 0, new ArrayList<>());
+  }
+
+
+  private void write(Writer writer, int node, ArrayList<String[]> scope) throws IOException {
+    switch (getKind(node)) {
+      case TEXT:
+        writeEscaped(writer, getText(node), false);
+        return;
+      case PROCESSING_INSTRUCTION:
+        writer.write("<?");
+        writer.write(getLocalName(node));
+        String data = getNamespace(node);
+        if (data != null && !data.isEmpty()) {
+          writer.write(' ');
+          writer.write(data);
+        }
+        writer.write("?>");
+        return;
+      default:
+        break;
+    }
+
+    int scopeSize = scope.size();
+    String qName = qualifiedName(getPrefix(node), getLocalName(node));
+    writer.write('<');
+    writer.write(qName);
+    for (int i = 0; i < getDeclarationCount(node); i++) {
+      writeDeclaration(writer, scope, getDeclarationPrefix(node, i), getDeclarationUri(node, i));
+    }
+    repairDeclaration(writer, scope, getPrefix(node), getNamespace(node));
+    for (int i = 0; i < getAttributeCount(node); i++) {
+      String prefix = getAttributePrefix(node, i);
+      if (prefix != null && !XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+        repairDeclaration(writer, scope, prefix, getAttributeNamespace(node, i));
+      }
+    }
+    for (int i = 0; i < getAttributeCount(node); i++) {
+      writer.write(' ');
+      writer.write(qualifiedName(getAttributePrefix(node, i), getAttributeLocalName(node, i)));
+      writer.write("=\"");
+      writeEscaped(writer, getAttributeValue(node, i), true);
+      writer.write('"');
+    }
+
+    int child = getFirstChild(node);
+    if (child == NONE) {
+      writer.write("/>");
+    } else {
+      writer.write('>');
+      while (child != NONE) {
+        write(writer, child, scope);
+        child = getNextSibling(child);
+      }
+      writer.write("</");
+      writer.write(qName);
+      writer.write('>');
+    }
+
+    while (scope.size() > scopeSize) {
+      scope.remove(scope.size() - 1);
+    }
+  }
+
+
+  private static String qualifiedName(String prefix, String localName) {
+    return (prefix == null || prefix.isEmpty()) ? localName : prefix + ":" + localName;
+  }
+
+
+  private static void repairDeclaration(Writer writer, ArrayList<String[]> scope, String prefix, String uri) throws IOException {
+    String p = (prefix != null) ? prefix : "";
+    String u = (uri != null) ? uri : "";
+    for (int i = scope.size() - 1; i >= 0; i--) {
+      String[] ns = scope.get(i);
+      if (ns[0].equals(p)) {
+        if (!ns[1].equals(u)) {
+          writeDeclaration(writer, scope, p, u);
+        }
+        return;
+      }
+    }
+    if (!u.isEmpty()) {
+      writeDeclaration(writer, scope, p, u);
+    }
+  }
+
+
+  private static void writeDeclaration(Writer writer, ArrayList<String[]> scope, String prefix, String uri) throws IOException {
+    String p = (prefix != null) ? prefix : "";
+    String u = (uri != null) ? uri : "";
+    scope.add(new String[]{p, u});
+    writer.write(p.isEmpty() ? " xmlns=\"" : " xmlns:" + p + "=\"");
+    writeEscaped(writer, u, true);
+    writer.write('"');
+  }
+
+
+  /**
+   * Write text with the characters that are significant to XML escaped.
+   *
+   * @param writer    the writer
+   * @param text      the text
+   * @param attribute true if the text is an attribute value
+   */
+  static void writeEscaped(Writer writer, String text, boolean attribute) throws IOException {
+    for (int i = 0; i < text.length(); i++) {
+      char ch = text.charAt(i);
+      switch (ch) {
+        case '&':
+          writer.write("&amp;");
+          break;
+        case '<':
+          writer.write("&lt;");
+          break;
+        case '>':
+          writer.write(attribute ? ">" : "&gt;");
+          break;
+        case '"':
+          writer.write(attribute ? "&quot;" : "\"");
+          break;
+        case '\r':
+          writer.write("&#13;");
+          break;
+        case '\n':
+          writer.write(attribute ? "&#10;" : "\n");
+          break;
+        case '\t':
+          writer.write(attribute ? "&#9;" : "\t");
+          break;
+        default:
+          writer.write(ch);
+          break;
+      }
+    }
+  }
+
+}
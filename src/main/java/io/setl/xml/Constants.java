@@ -13,6 +13,15 @@ public class Constants {
   /** Namespace for the ISO-20022 HEAD message. */
   public static final String NS_ISO_HEAD = "urn:iso:std:iso:20022:tech:xsd:head.001.001.03";
 
+  /** Namespace for version 1 of the ISO-20022 HEAD message. */
+  public static final String NS_ISO_HEAD_01 = "urn:iso:std:iso:20022:tech:xsd:head.001.001.01";
+
+  /** Namespace for version 2 of the ISO-20022 HEAD message. */
+  public static final String NS_ISO_HEAD_02 = "urn:iso:std:iso:20022:tech:xsd:head.001.001.02";
+
+  /** Namespace for version 4 of the ISO-20022 HEAD message. */
+  public static final String NS_ISO_HEAD_04 = "urn:iso:std:iso:20022:tech:xsd:head.001.001.04";
+
   /** Namespace for digital signatures. */
   public static final String NS_SIGNATURE = "http://www.w3.org/2000/09/xmldsig#";
 
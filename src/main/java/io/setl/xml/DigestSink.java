@@ -0,0 +1,91 @@
+package io.setl.xml;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+/**
+ * An output stream that feeds everything written to it into a message digest. Output is gathered into a pooled direct buffer, and the digest is updated each
+ * time the buffer fills, so digesting a canonicalized reference does not build up its output on the heap.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class DigestSink extends OutputStream {
+
+  /** The digest being updated. */
+  private final MessageDigest digest;
+
+  /** The pool the buffer came from. */
+  private final ByteBufferPool pool;
+
+  /** The buffer, or null if this sink is closed. */
+  private ByteBuffer buffer;
+
+
+  /**
+   * New instance.
+   *
+   * @param pool   the pool to acquire a buffer from
+   * @param digest the digest to update
+   */
+  DigestSink(ByteBufferPool pool, MessageDigest digest) {
+    this.pool = pool;
+    this.digest = digest;
+    buffer = pool.acquire();
+  }
+
+
+  /**
+   * Update the digest with the remaining output and return the buffer to the pool.
+   */
+  @Override
+  public void close() {
+    if (buffer != null) {
+      drain();
+      pool.release(buffer);
+      buffer = null;
+    }
+  }
+
+
+  /**
+   * Complete the digest. The sink is closed.
+   *
+   * @return the digest value
+   */
+  byte[] digest() {
+    close();
+    return digest.digest();
+  }
+
+
+  private void drain() {
+    buffer.flip();
+    digest.update(buffer);
+    buffer.clear();
+  }
+
+
+  @Override
+  public void write(int b) {
+    if (!buffer.hasRemaining()) {
+      drain();
+    }
+    buffer.put((byte) b);
+  }
+
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) {
+    while (length > 0) {
+      if (!buffer.hasRemaining()) {
+        drain();
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.put(bytes, offset, count);
+      offset += count;
+      length -= count;
+    }
+  }
+
+}
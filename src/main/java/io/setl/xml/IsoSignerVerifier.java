@@ -3,16 +3,29 @@ package io.setl.xml;
 import static javax.xml.crypto.dsig.CanonicalizationMethod.EXCLUSIVE;
 
 import java.io.ByteArrayInputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
+import java.security.Key;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.function.Consumer;
+import javax.crypto.SecretKey;
 import javax.xml.crypto.MarshalException;
+import javax.xml.crypto.XMLCryptoContext;
 import javax.xml.crypto.XMLStructure;
 import javax.xml.crypto.dsig.DigestMethod;
 import javax.xml.crypto.dsig.Reference;
@@ -25,7 +38,6 @@ import javax.xml.crypto.dsig.dom.DOMSignContext;
 import javax.xml.crypto.dsig.dom.DOMValidateContext;
 import javax.xml.crypto.dsig.keyinfo.KeyInfo;
 import javax.xml.crypto.dsig.keyinfo.KeyInfoFactory;
-import javax.xml.crypto.dsig.keyinfo.X509Data;
 import javax.xml.crypto.dsig.spec.C14NMethodParameterSpec;
 import javax.xml.crypto.dsig.spec.TransformParameterSpec;
 
@@ -33,48 +45,119 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import io.setl.xml.audit.AuditRecord;
+import io.setl.xml.audit.AuditSink;
+import io.setl.xml.metrics.MetricsRegistry;
+import io.setl.xml.metrics.Operation;
+import io.setl.xml.metrics.Outcome;
+
 /**
  * Signing and verification on the ISO-20022 AppHdr and ISO-20022 Document elements.
  *
+ * <p>Instances are thread-safe and are intended to be created once and shared. The JSR-105 factories, which are not guaranteed to be thread-safe, are
+ * borrowed from a pool for the duration of each call. The DOM nodes passed to a call must not be accessed by other threads while the call is in progress.</p>
+ *
  * @author Simon Greatrix on 27/05/2022.
  */
 public class IsoSignerVerifier {
 
-  /** X-Path to locate the "Sgntr" signature envelope within the business header. */
-  private static final String XPATH_SIGNATURE_ENV = "/head:AppHdr/head:Sgntr";
+  /**
+   * The state of a signing or validation, which is gathered as the operation progresses so that it is available however the operation ends.
+   */
+  static class OperationState {
+
+    /** The certificate, once it is known. */
+    X509Certificate certificate;
+
+    /** The digest values of the signature's references, once they are known. */
+    final List<byte[]> digests = new ArrayList<>();
+
+    /** The digest value of the Document reference, once it has been verified. */
+    byte[] documentDigest;
+
+    /** The URI of the digest method of the Document reference, once it has been verified. */
+    String documentDigestMethod;
+
+    /** The signature method, once it is known. */
+    XMLSignatureMethod method;
+
+    /** The outcome. Anything that fails before an outcome is determined is considered malformed. */
+    Outcome outcome = Outcome.MALFORMED;
+
+  }
+
+
 
-  /** X-Path to locate the "Signature" node within the signature envelope of the business header. */
-  private static final String XPATH_SIGNATURE_NODE = "/head:AppHdr/head:Sgntr/sign:Signature";
+  /** Logger for audit failures. */
+  private static final Logger log = System.getLogger(IsoSignerVerifier.class.getName());
 
-  /** X-Path to locate the X.509 certificate within the "Signature" node of the signature envelope. */
-  private static final String XPATH_X509_NODE = "/head:AppHdr/head:Sgntr/sign:Signature/sign:KeyInfo/sign:X509Data/sign:X509Certificate";
+  /** Pool of the factories needed by each operation. */
+  private final SignatureFactories.Pool factoryPool;
 
-  /** Factory for deserializing X.509 certificates. */
-  private static final CertificateFactory factory;
+  /** Sink which receives an audit record for every operation. */
+  private volatile AuditSink auditSink = AuditSink.NONE;
 
+  /** Registry which receives the metrics for every operation. */
+  private volatile MetricsRegistry metrics = MetricsRegistry.NONE;
 
-  static {
+  /** Resolver for the shared secret keys of HMAC signatures, or null if HMAC signatures are not accepted. */
+  private volatile SecretKeyResolver secretKeyResolver;
+
+  /**
+   * Get the BizMsgIdr of an AppHdr for the audit record. An AppHdr which is too malformed to sign or validate may not have one.
+   *
+   * @param header the AppHdr
+   *
+   * @return the BizMsgIdr, or null
+   */
+  private static String bizMsgIdr(Node header) {
     try {
-      factory = CertificateFactory.getInstance("X.509");
-    } catch (CertificateException e) {
-      // Support for X.509 certificates is required.
-      throw new ExceptionInInitializerError(e);
+      Node node = XPathUtil.findNode(AppHdrVersion.of(header).path("BizMsgIdr"), header);
+      return (node != null) ? node.getTextContent() : null;
+    } catch (XMLSignatureException e) {
+      return null;
     }
   }
 
-  /** XML Signature factory for performing siging and validation. */
-  private final XMLSignatureFactory xmlSignatureFactory = XMLSignatureFactory.getInstance("DOM");
 
-  /** Generate KeyInfo elements. */
-  private final KeyInfoFactory keyInfoFactory = xmlSignatureFactory.getKeyInfoFactory();
+  /**
+   * Get the BizMsgIdr of an AppHdr for the audit record. An AppHdr which is too malformed to sign or validate may not have one.
+   *
+   * @param header the AppHdr
+   *
+   * @return the BizMsgIdr, or null
+   */
+  private static String bizMsgIdr(CompactTree header) {
+    AppHdrVersion version = AppHdrVersion.forNamespace(header.getNamespace(0));
+    if (version == null) {
+      return null;
+    }
+    int node = header.findChild(0, version.getNamespace(), "BizMsgIdr");
+    return (node != CompactTree.NONE) ? header.getTextContent(node) : null;
+  }
+
+
+  private static byte[] fingerprint(X509Certificate certificate) {
+    if (certificate == null) {
+      return null;
+    }
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(certificate.getEncoded());
+    } catch (CertificateEncodingException | NoSuchAlgorithmException e) {
+      log.log(Level.WARNING, "Unable to fingerprint certificate for audit", e);
+      return null;
+    }
+  }
 
 
   /**
    * Create an XML Signature reference to the AppHdr root.
    *
+   * @param xmlSignatureFactory the factory to create the reference with
+   *
    * @return the reference
    */
-  private Reference appHdr() throws NoSuchAlgorithmException, InvalidAlgorithmParameterException {
+  private static Reference appHdr(XMLSignatureFactory xmlSignatureFactory) throws NoSuchAlgorithmException, InvalidAlgorithmParameterException {
     return xmlSignatureFactory.newReference("", xmlSignatureFactory.newDigestMethod(DigestMethod.SHA256, null),
         List.of(
             xmlSignatureFactory.newTransform(Transform.ENVELOPED, (TransformParameterSpec) null),
@@ -86,16 +169,31 @@ public class IsoSignerVerifier {
 
 
   /**
-   * Create an XML Signature reference to the associated document. This is handled as a special case where the identifying URI is unspecified.
+   * Create an XML Signature reference to the associated document. This is handled as a special case where the identifying URI is unspecified. The digest is
+   * calculated here, rather than by the XML Signature implementation, so that the canonical form of the document is never held in memory.
+   *
+   * @param xmlSignatureFactory the factory to create the reference with
+   * @param document            the document
+   * @param dereferencer        the de-referencer which identifies the document
+   * @param context             the signing context
+   * @param digestValue         the SHA-256 digest of the document's canonical form, if it is already known, or null
+   * @param digestProvider      the message digest provider, or null for the default
    *
    * @return the reference
    */
-  private Reference document() throws NoSuchAlgorithmException, InvalidAlgorithmParameterException {
+  private static Reference document(
+      XMLSignatureFactory xmlSignatureFactory, Node document, IsoUriDereferencer dereferencer, XMLCryptoContext context, byte[] digestValue,
+      Provider digestProvider
+  ) throws NoSuchAlgorithmException, InvalidAlgorithmParameterException, XMLSignatureException {
+    if (digestValue == null) {
+      Transform c14n = ReferenceDigester.newExclusiveC14n(xmlSignatureFactory.getProvider(), document, context);
+      digestValue = ReferenceDigester.digest(c14n, dereferencer, null, context, DigestMethod.SHA256, digestProvider);
+    }
     return xmlSignatureFactory.newReference(null, xmlSignatureFactory.newDigestMethod(DigestMethod.SHA256, null),
         List.of(
             xmlSignatureFactory.newTransform(EXCLUSIVE, (TransformParameterSpec) null)
         ),
-        null, null
+        null, null, digestValue
     );
   }
 
@@ -103,13 +201,45 @@ public class IsoSignerVerifier {
   /**
    * Retrieve an X.509 certificate from the AppHdr signature envelope
    *
-   * @param appHdr the AppHdr root node
+   * @param factory the factory to deserialize the certificate with
+   * @param version the AppHdr version
+   * @param appHdr  the AppHdr root node
+   *
+   * @return the certificate
+   */
+  private static X509Certificate getPublicCertFromDocument(CertificateFactory factory, AppHdrVersion version, Node appHdr) throws XMLSignatureException {
+    Node x509Node = XPathUtil.findRequiredNode(version.getX509NodePath(), appHdr);
+    return decodeCertificate(factory, x509Node.getTextContent());
+  }
+
+
+  /**
+   * Check that a signature method is appropriate to the kind of key identified by the KeyInfo. Shared secret keys may only be used with HMAC methods, and
+   * certificates may not be used with them.
+   *
+   * @param method   the signature method
+   * @param isSecret true if the KeyInfo names a shared secret key, false if it contains a certificate
+   */
+  static void checkKeyType(XMLSignatureMethod method, boolean isSecret) throws XMLSignatureException {
+    if (isSecret) {
+      if (!SignatureAlgorithms.isHmacSha2(method)) {
+        throw new XMLSignatureException("A shared secret key can only be used with an HMAC-SHA2 signature method, not " + method);
+      }
+    } else if (SignatureAlgorithms.isHmac(method)) {
+      throw new XMLSignatureException("HMAC signature methods require a shared secret key, not a certificate");
+    }
+  }
+
+
+  /**
+   * Decode the Base64 text of an X.509 certificate.
+   *
+   * @param factory the factory to deserialize the certificate with
+   * @param text    the Base64 text
    *
    * @return the certificate
    */
-  private X509Certificate getPublicCertFromDocument(Node appHdr) throws XMLSignatureException {
-    Node x509Node = XPathUtil.findRequiredNode(XPATH_X509_NODE, appHdr);
-    String text = x509Node.getTextContent();
+  static X509Certificate decodeCertificate(CertificateFactory factory, String text) throws XMLSignatureException {
     try {
       byte[] bytes = Base64.getMimeDecoder().decode(text);
       return (X509Certificate) factory.generateCertificate(new ByteArrayInputStream(bytes));
@@ -119,7 +249,7 @@ public class IsoSignerVerifier {
   }
 
 
-  private Reference keyInfo() throws NoSuchAlgorithmException, InvalidAlgorithmParameterException {
+  private static Reference keyInfo(XMLSignatureFactory xmlSignatureFactory) throws NoSuchAlgorithmException, InvalidAlgorithmParameterException {
     return xmlSignatureFactory.newReference(
         "#KeyInfo-" + UUID.randomUUID(),
         xmlSignatureFactory.newDigestMethod(DigestMethod.SHA256, null),
@@ -131,19 +261,20 @@ public class IsoSignerVerifier {
   /**
    * Find or create an empty &lt;Sgntr&gt node in the &lt;AppHdr&gt; node. It is required that the &lt;AppHdr&gt; conforms to the appropriate schema.
    *
-   * @param appHdr the XML envelope node
+   * @param version the AppHdr version
+   * @param appHdr  the XML envelope node
    *
    * @return the new or located Sgntr node
    */
-  private Node makeSignatureEnvelope(Node appHdr) throws XMLSignatureException {
+  private static Node makeSignatureEnvelope(AppHdrVersion version, Node appHdr) throws XMLSignatureException {
     // Remove all existing <Signature> nodes
-    NodeList signatureList = XPathUtil.findNodes(XPATH_SIGNATURE_NODE, appHdr);
+    NodeList signatureList = XPathUtil.findNodes(version.getSignatureNodePath(), appHdr);
     for (int i = signatureList.getLength() - 1; i >= 0; i--) {
       Node c = signatureList.item(i);
       c.getParentNode().removeChild(c);
     }
 
-    Node node = XPathUtil.findNode(XPATH_SIGNATURE_ENV, appHdr);
+    Node node = XPathUtil.findNode(version.getSignatureEnvelopePath(), appHdr);
     if (node != null) {
       // Found existing "Sgntr" node.
       return node;
@@ -164,6 +295,93 @@ public class IsoSignerVerifier {
   }
 
 
+  private static void requireHmac(XMLSignatureMethod signatureMethod) {
+    if (!SignatureAlgorithms.isHmacSha2(signatureMethod)) {
+      throw new IllegalArgumentException("Not an HMAC-SHA2 signature method: " + signatureMethod);
+    }
+  }
+
+
+  /**
+   * Remove the existing signature from an AppHdr, leaving the empty signature envelope in place.
+   *
+   * @param header the business header node
+   */
+  private static void removeSignature(Node header) throws XMLSignatureException {
+    Node sgntr = XPathUtil.findRequiredNode(AppHdrVersion.of(header).getSignatureEnvelopePath(), header);
+    while (sgntr.getFirstChild() != null) {
+      sgntr.removeChild(sgntr.getFirstChild());
+    }
+  }
+
+
+  /**
+   * Find the shared secret key named in a signature's KeyInfo.
+   *
+   * @param resolver the resolver, or null if HMAC signatures are not accepted
+   * @param keyName  the key name
+   *
+   * @return the key
+   */
+  static SecretKey resolveSecretKey(SecretKeyResolver resolver, String keyName) throws XMLSignatureException {
+    if (resolver == null) {
+      throw new XMLSignatureException("HMAC signatures are not accepted as no secret key resolver has been set");
+    }
+    String name = keyName.trim();
+    SecretKey key = resolver.resolve(name);
+    if (key == null) {
+      throw new XMLSignatureException("Unknown secret key: \"" + name + "\"");
+    }
+    return key;
+  }
+
+
+  /**
+   * New instance which uses the default security providers.
+   */
+  public IsoSignerVerifier() {
+    this(ProviderConfiguration.DEFAULT);
+  }
+
+
+  /**
+   * New instance.
+   *
+   * @param providers the security providers to use
+   */
+  public IsoSignerVerifier(ProviderConfiguration providers) {
+    factoryPool = new SignatureFactories.Pool(Objects.requireNonNull(providers));
+  }
+
+
+  private void audit(Operation operation, OperationState state, Node header) {
+    AuditSink sink = auditSink;
+    if (sink != AuditSink.NONE) {
+      audit(sink, operation, state, bizMsgIdr(header));
+    }
+  }
+
+
+  private void audit(Operation operation, OperationState state, CompactTree header) {
+    AuditSink sink = auditSink;
+    if (sink != AuditSink.NONE) {
+      audit(sink, operation, state, bizMsgIdr(header));
+    }
+  }
+
+
+  private void audit(AuditSink sink, Operation operation, OperationState state, String bizMsgIdr) {
+    Instant now = Instant.now();
+    long micros = now.getEpochSecond() * 1_000_000L + now.getNano() / 1_000;
+    try {
+      sink.record(new AuditRecord(micros, operation, state.outcome, bizMsgIdr, fingerprint(state.certificate), state.digests));
+    } catch (RuntimeException e) {
+      // The operation's own result or exception must not be lost because the audit failed.
+      log.log(Level.ERROR, "Failed to record audit of " + operation + " for " + bizMsgIdr, e);
+    }
+  }
+
+
   /**
    * Sign a &lt;Message&gt; node that envelopes an ISO-20022 AppHdr and Document pair.
    *
@@ -177,34 +395,204 @@ public class IsoSignerVerifier {
    */
   public Node sign(Node header, Node document, PrivateKey privateKey, X509Certificate x509Certificate, XMLSignatureMethod signatureMethod)
       throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, MarshalException, XMLSignatureException {
+    long start = System.nanoTime();
+    OperationState state = new OperationState();
+    state.method = signatureMethod;
+    state.certificate = x509Certificate;
+    SignatureFactories factories = factoryPool.borrow();
+    try {
+      Node signed = sign(factories, header, document, privateKey, x509Certificate, null, signatureMethod, state, null);
+      state.outcome = Outcome.SIGNED;
+      return signed;
+    } finally {
+      factoryPool.release(factories);
+      metrics.record(Operation.SIGN, signatureMethod, state.outcome, System.nanoTime() - start);
+      audit(Operation.SIGN, state, header);
+    }
+  }
+
+
+  private Node sign(
+      SignatureFactories factories, Node header, Node document, Key key, X509Certificate x509Certificate, String keyName,
+      XMLSignatureMethod signatureMethod, OperationState state, byte[] documentDigest
+  ) throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, MarshalException, XMLSignatureException {
+    XMLSignatureFactory xmlSignatureFactory = factories.xmlSignatureFactory;
+    KeyInfoFactory keyInfoFactory = factories.keyInfoFactory;
+
     // Normalize the XML documents prior to processing.
     header.normalize();
     document.normalize();
+    AppHdrVersion version = AppHdrVersion.of(header);
+
+    IsoUriDereferencer temp = new IsoUriDereferencer(keyInfoFactory.getURIDereferencer(), header, document);
+    Node sgntrNode = makeSignatureEnvelope(version, header);
+    DOMSignContext dsc = new DOMSignContext(key, sgntrNode);
+    dsc.setDefaultNamespacePrefix("sign");
+    dsc.setURIDereferencer(temp);
+    factories.configuration.configure(dsc, signatureMethod);
 
     // Define what we are signing
-    Reference keyInfoReference = keyInfo();
+    Reference keyInfoReference = keyInfo(xmlSignatureFactory);
     SignedInfo si = xmlSignatureFactory.newSignedInfo(
         xmlSignatureFactory.newCanonicalizationMethod(EXCLUSIVE, (C14NMethodParameterSpec) null),
         xmlSignatureFactory.newSignatureMethod(signatureMethod.getUri(), null),
-        List.of(keyInfoReference, appHdr(), document())
+        List.of(
+            keyInfoReference,
+            appHdr(xmlSignatureFactory),
+            document(xmlSignatureFactory, document, temp, dsc, documentDigest, factories.configuration.getDigestProvider())
+        )
     );
 
-    X509Data xd = keyInfoFactory.newX509Data(List.of(x509Certificate));
-    KeyInfo keyInfo = keyInfoFactory.newKeyInfo(List.of(xd), keyInfoReference.getURI().substring(1));
+    // A certificate identifies a key pair. A shared secret key is identified by name.
+    XMLStructure keyInfoContent = (x509Certificate != null) ? keyInfoFactory.newX509Data(List.of(x509Certificate)) : keyInfoFactory.newKeyName(keyName);
+    KeyInfo keyInfo = keyInfoFactory.newKeyInfo(List.of(keyInfoContent), keyInfoReference.getURI().substring(1));
 
-    IsoUriDereferencer temp = new IsoUriDereferencer(keyInfoFactory.getURIDereferencer(), header, document);
-    Node sgntrNode = makeSignatureEnvelope(header);
-    DOMSignContext dsc = new DOMSignContext(privateKey, sgntrNode);
-    dsc.setDefaultNamespacePrefix("sign");
-    dsc.setURIDereferencer(temp);
     XMLSignature signature = xmlSignatureFactory.newXMLSignature(si, keyInfo);
 
     signature.sign(dsc);
+    for (Reference reference : si.getReferences()) {
+      state.digests.add(reference.getDigestValue());
+    }
 
     return header;
   }
 
 
+  /**
+   * Set the sink which receives an audit record for every operation.
+   *
+   * @param auditSink the sink, or null to discard audit records
+   */
+  public void setAuditSink(AuditSink auditSink) {
+    this.auditSink = (auditSink != null) ? auditSink : AuditSink.NONE;
+  }
+
+
+  /**
+   * Set the registry which receives the metrics for every operation.
+   *
+   * @param metrics the registry, or null to discard metrics
+   */
+  public void setMetrics(MetricsRegistry metrics) {
+    this.metrics = (metrics != null) ? metrics : MetricsRegistry.NONE;
+  }
+
+
+  /**
+   * Set the resolver for the shared secret keys of HMAC signatures. Until a resolver is set, HMAC signatures are rejected.
+   *
+   * @param secretKeyResolver the resolver, or null to reject HMAC signatures
+   */
+  public void setSecretKeyResolver(SecretKeyResolver secretKeyResolver) {
+    this.secretKeyResolver = secretKeyResolver;
+  }
+
+
+  /**
+   * Sign a &lt;Message&gt; node that envelopes an ISO-20022 AppHdr and Document pair.
+   *
+   * @param header     the business header node
+   * @param document   the document
+   * @param signingKey the key, certificate and signature method to sign with
+   *
+   * @return the header, but signed
+   */
+  public Node sign(Node header, Node document, SigningKey signingKey)
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, MarshalException, XMLSignatureException {
+    return sign(header, document, signingKey.getPrivateKey(), signingKey.getCertificate(), signingKey.getSignatureMethod());
+  }
+
+
+  /**
+   * Sign a &lt;Message&gt; node that envelopes an ISO-20022 AppHdr and Document pair with a shared secret key. The KeyInfo contains the key's name rather
+   * than a certificate, so the recipient must know the key by that name. This is intended for trusted hops where an HMAC is sufficient, as it is much cheaper
+   * than a public key signature.
+   *
+   * @param header          the business header node
+   * @param document        the document
+   * @param secretKey       the shared secret key
+   * @param keyName         the name which identifies the key to the recipient
+   * @param signatureMethod the HMAC signature method
+   *
+   * @return the header, but signed
+   */
+  public Node sign(Node header, Node document, SecretKey secretKey, String keyName, XMLSignatureMethod signatureMethod)
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, MarshalException, XMLSignatureException {
+    requireHmac(signatureMethod);
+    long start = System.nanoTime();
+    OperationState state = new OperationState();
+    state.method = signatureMethod;
+    SignatureFactories factories = factoryPool.borrow();
+    try {
+      Node signed = sign(factories, header, document, secretKey, null, Objects.requireNonNull(keyName), signatureMethod, state, null);
+      state.outcome = Outcome.SIGNED;
+      return signed;
+    } finally {
+      factoryPool.release(factories);
+      metrics.record(Operation.SIGN, signatureMethod, state.outcome, System.nanoTime() - start);
+      audit(Operation.SIGN, state, header);
+    }
+  }
+
+
+  /**
+   * Sign an ISO-20022 AppHdr held as a compact tree, and its associated Document, with a shared secret key.
+   *
+   * @param header          the business header, which is updated with the signature
+   * @param document        the document
+   * @param secretKey       the shared secret key
+   * @param keyName         the name which identifies the key to the recipient
+   * @param signatureMethod the HMAC signature method
+   *
+   * @return the header, but signed
+   */
+  public CompactTree sign(CompactTree header, Node document, SecretKey secretKey, String keyName, XMLSignatureMethod signatureMethod)
+      throws GeneralSecurityException, XMLSignatureException {
+    requireHmac(signatureMethod);
+    long start = System.nanoTime();
+    OperationState state = new OperationState();
+    state.method = signatureMethod;
+    SignatureFactories factories = factoryPool.borrow();
+    try {
+      CompactSignerVerifier.sign(factories, header, document, signatureMethod, secretKey, null, Objects.requireNonNull(keyName), state);
+      state.outcome = Outcome.SIGNED;
+      return header;
+    } finally {
+      factoryPool.release(factories);
+      metrics.record(Operation.SIGN, state.method, state.outcome, System.nanoTime() - start);
+      audit(Operation.SIGN, state, header);
+    }
+  }
+
+
+  /**
+   * Sign an ISO-20022 AppHdr held as a compact tree, and its associated Document.
+   *
+   * @param header     the business header, which is updated with the signature
+   * @param document   the document
+   * @param signingKey the key, certificate and signature method to sign with
+   *
+   * @return the header, but signed
+   */
+  public CompactTree sign(CompactTree header, Node document, SigningKey signingKey) throws GeneralSecurityException, XMLSignatureException {
+    long start = System.nanoTime();
+    OperationState state = new OperationState();
+    state.method = signingKey.getSignatureMethod();
+    state.certificate = signingKey.getCertificate();
+    SignatureFactories factories = factoryPool.borrow();
+    try {
+      CompactSignerVerifier.sign(
+          factories, header, document, signingKey.getSignatureMethod(), signingKey.getPrivateKey(), signingKey.getCertificate(), null, state);
+      state.outcome = Outcome.SIGNED;
+      return header;
+    } finally {
+      factoryPool.release(factories);
+      metrics.record(Operation.SIGN, state.method, state.outcome, System.nanoTime() - start);
+      audit(Operation.SIGN, state, header);
+    }
+  }
+
+
   /**
    * Validate the signature of a business header and document.
    *
@@ -214,27 +602,158 @@ public class IsoSignerVerifier {
    * @return true if the signature is valid
    */
   public boolean validate(Node header, Node document) throws MarshalException, XMLSignatureException {
-    // Extract the certificate from the input document.
-    X509Certificate x509Certificate = getPublicCertFromDocument(header);
+    long start = System.nanoTime();
+    OperationState state = new OperationState();
+    SignatureFactories factories = factoryPool.borrow();
+    try {
+      validate(factories, header, document, state);
+      return state.outcome == Outcome.VALID;
+    } finally {
+      factoryPool.release(factories);
+      metrics.record(Operation.VALIDATE, state.method, state.outcome, System.nanoTime() - start);
+      audit(Operation.VALIDATE, state, header);
+    }
+  }
+
+
+  /**
+   * Validate the signature of a business header held as a compact tree, and its associated document.
+   *
+   * @param header   the business header
+   * @param document the document
+   *
+   * @return true if the signature is valid
+   */
+  public boolean validate(CompactTree header, Node document) throws GeneralSecurityException, XMLSignatureException {
+    long start = System.nanoTime();
+    OperationState state = new OperationState();
+    SignatureFactories factories = factoryPool.borrow();
+    try {
+      CompactSignerVerifier.validate(factories, header, document, secretKeyResolver, state);
+      return state.outcome == Outcome.VALID;
+    } finally {
+      factoryPool.release(factories);
+      metrics.record(Operation.VALIDATE, state.method, state.outcome, System.nanoTime() - start);
+      audit(Operation.VALIDATE, state, header);
+    }
+  }
+
+
+  private void validate(SignatureFactories factories, Node header, Node document, OperationState state)
+      throws MarshalException, XMLSignatureException {
+    XMLSignatureFactory xmlSignatureFactory = factories.xmlSignatureFactory;
+
+    AppHdrVersion version = AppHdrVersion.of(header);
 
-    Node signatureNode = XPathUtil.findRequiredNode(XPATH_SIGNATURE_NODE, header);
-    DOMValidateContext valContext = new DOMValidateContext(x509Certificate.getPublicKey(), signatureNode);
+    // The KeyInfo either names a shared secret key, or contains the certificate.
+    Node keyNameNode = XPathUtil.findNode(version.getKeyNamePath(), header);
+    boolean isSecret = keyNameNode != null && XPathUtil.findNode(version.getX509NodePath(), header) == null;
+    Key key;
+    if (isSecret) {
+      key = resolveSecretKey(secretKeyResolver, keyNameNode.getTextContent());
+    } else {
+      X509Certificate x509Certificate = getPublicCertFromDocument(factories.certificateFactory, version, header);
+      state.certificate = x509Certificate;
+      key = x509Certificate.getPublicKey();
+    }
+
+    Node signatureNode = XPathUtil.findRequiredNode(version.getSignatureNodePath(), header);
+    DOMValidateContext valContext = new DOMValidateContext(key, signatureNode);
     valContext.setProperty("org.jcp.xml.dsig.secureValidation", Boolean.TRUE);
 
-    IsoUriDereferencer noUri = new IsoUriDereferencer(keyInfoFactory.getURIDereferencer(), header, document);
+    IsoUriDereferencer noUri = new IsoUriDereferencer(factories.keyInfoFactory.getURIDereferencer(), header, document);
     valContext.setURIDereferencer(noUri);
 
     XMLSignature signature = xmlSignatureFactory.unmarshalXMLSignature(valContext);
+    state.method = XMLSignatureMethod.forUri(signature.getSignedInfo().getSignatureMethod().getAlgorithm());
+    if (state.method != null) {
+      checkKeyType(state.method, isSecret);
+      factories.configuration.configure(valContext, state.method);
+    }
+    for (Reference reference : signature.getSignedInfo().getReferences()) {
+      state.digests.add(reference.getDigestValue());
+    }
 
     // Return false if either of the 3 references fail. Else continue to signature validation
     for (Reference reference : signature.getSignedInfo().getReferences()) {
-      boolean refValid = reference.validate(valContext);
+      boolean refValid;
+      if (reference.getURI() == null && ReferenceDigester.canDigest(reference)) {
+        // The document reference is digested here so that its canonical form is never held in memory.
+        Transform c14n = reference.getTransforms().get(0);
+        byte[] digestValue = ReferenceDigester.digest(c14n, noUri, reference, valContext, reference.getDigestMethod().getAlgorithm(),
+            factories.configuration.getDigestProvider());
+        refValid = MessageDigest.isEqual(digestValue, reference.getDigestValue());
+      } else {
+        refValid = reference.validate(valContext);
+      }
       if (!refValid) {
-        return false;
+        state.outcome = Outcome.INVALID_REFERENCE;
+        return;
+      }
+      if (reference.getURI() == null && ReferenceDigester.canDigest(reference)) {
+        // The digest can only be reused by a new signature if it was calculated with the same transform a new signature would use.
+        state.documentDigest = reference.getDigestValue();
+        state.documentDigestMethod = reference.getDigestMethod().getAlgorithm();
       }
     }
 
-    return signature.validate(valContext);
+    // All the references have been checked, so only the signature value remains.
+    state.outcome = signature.getSignatureValue().validate(valContext) ? Outcome.VALID : Outcome.INVALID_SIGNATURE;
+  }
+
+
+
+  /**
+   * Verify the signature of a business header and document, then replace it with a new signature. This is for intermediaries which update the routing of a
+   * message before forwarding it. As the Document does not change, its verified digest is carried into the new signature rather than being calculated again,
+   * so only the AppHdr and KeyInfo references are digested.
+   *
+   * @param header        the business header node, which is updated and re-signed
+   * @param document      the document
+   * @param headerUpdater called with the header node once it has been verified and its signature removed, to update it (for example, its "Fr" and "To")
+   * @param signingKey    the key, certificate and signature method to re-sign with
+   *
+   * @return the header, but re-signed, or null if the incoming signature is not valid
+   */
+  public Node verifyAndResign(Node header, Node document, Consumer<Node> headerUpdater, SigningKey signingKey)
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, MarshalException, XMLSignatureException {
+    SignatureFactories factories = factoryPool.borrow();
+    try {
+      long start = System.nanoTime();
+      OperationState verified = new OperationState();
+      try {
+        validate(factories, header, document, verified);
+      } finally {
+        metrics.record(Operation.VALIDATE, verified.method, verified.outcome, System.nanoTime() - start);
+        audit(Operation.VALIDATE, verified, header);
+      }
+      if (verified.outcome != Outcome.VALID) {
+        return null;
+      }
+
+      // New signatures always use SHA-256 for the Document, so a digest calculated with any other method cannot be reused.
+      byte[] documentDigest = DigestMethod.SHA256.equals(verified.documentDigestMethod) ? verified.documentDigest : null;
+
+      start = System.nanoTime();
+      OperationState state = new OperationState();
+      state.method = signingKey.getSignatureMethod();
+      state.certificate = signingKey.getCertificate();
+      try {
+        removeSignature(header);
+        headerUpdater.accept(header);
+        sign(
+            factories, header, document, signingKey.getPrivateKey(), signingKey.getCertificate(), null, signingKey.getSignatureMethod(), state,
+            documentDigest
+        );
+        state.outcome = Outcome.SIGNED;
+        return header;
+      } finally {
+        metrics.record(Operation.SIGN, state.method, state.outcome, System.nanoTime() - start);
+        audit(Operation.SIGN, state, header);
+      }
+    } finally {
+      factoryPool.release(factories);
+    }
   }
 
 }
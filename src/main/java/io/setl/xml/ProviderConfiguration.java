@@ -0,0 +1,185 @@
+package io.setl.xml;
+
+import java.lang.reflect.InvocationTargetException;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.Provider;
+import java.security.Security;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import javax.xml.crypto.XMLCryptoContext;
+
+/**
+ * The security providers used for signing and validation: the XML Signature provider, the message digest provider, and the signature provider for each
+ * signature method. Any provider which is not specified is chosen by the JCA in the usual way.
+ *
+ * <p>The message digest provider is used for every reference when the AppHdr is a {@link CompactTree}. When the AppHdr is a DOM, it is used only for the
+ * Document reference, which this library digests itself. The KeyInfo and AppHdr references are digested by the JSR-105 implementation, which has no way of
+ * selecting a message digest provider, so they use the JCA's default provider.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class ProviderConfiguration {
+
+  /** The configuration which uses the JCA's default providers for everything. */
+  public static final ProviderConfiguration DEFAULT = new ProviderConfiguration(null, null, Map.of());
+
+  /** Property which names the message digest provider. */
+  public static final String PROPERTY_DIGEST = "digest.provider";
+
+  /** Property which names the signature provider for all signature methods. */
+  public static final String PROPERTY_SIGNATURE = "signature.provider";
+
+  /** Prefix of properties which name the signature provider for a single signature method, such as "signature.provider.RSA_SHA256". */
+  public static final String PROPERTY_SIGNATURE_PREFIX = "signature.provider.";
+
+  /** Property which names the XML Signature provider, such as "XMLDSig" for the JDK's provider, or "ApacheXMLDSig" for Apache Santuario. */
+  public static final String PROPERTY_XML_SIGNATURE = "xmlsignature.provider";
+
+  /** Context property which the JSR-105 implementation uses to select the provider for MAC signature methods. */
+  private static final String CONTEXT_MAC_PROVIDER = "org.jcp.xml.dsig.internal.dom.MacProvider";
+
+  /** Context property which the JSR-105 implementation uses to select the provider for public key signature methods. */
+  private static final String CONTEXT_SIGNATURE_PROVIDER = "org.jcp.xml.dsig.internal.dom.SignatureProvider";
+
+
+  /**
+   * Create a configuration from properties. Each property's value is either the name of a provider installed in {@link Security}, or the class name of a
+   * provider, which is instantiated with its no-argument constructor.
+   *
+   * <ul>
+   *   <li>{@value #PROPERTY_XML_SIGNATURE} : the XML Signature provider</li>
+   *   <li>{@value #PROPERTY_DIGEST} : the message digest provider</li>
+   *   <li>{@value #PROPERTY_SIGNATURE} : the signature provider for every signature method</li>
+   *   <li>{@value #PROPERTY_SIGNATURE_PREFIX}&lt;method&gt; : the signature provider for one signature method, where the method is the name of an
+   *   {@link XMLSignatureMethod}</li>
+   * </ul>
+   *
+   * @param properties the properties
+   *
+   * @return the configuration
+   *
+   * @throws NoSuchProviderException  if a provider cannot be found
+   * @throws NoSuchAlgorithmException if a signature method is not recognised
+   */
+  public static ProviderConfiguration fromProperties(Properties properties) throws NoSuchProviderException, NoSuchAlgorithmException {
+    Provider xmlSignature = provider(properties.getProperty(PROPERTY_XML_SIGNATURE));
+    Provider digest = provider(properties.getProperty(PROPERTY_DIGEST));
+
+    EnumMap<XMLSignatureMethod, Provider> signature = new EnumMap<>(XMLSignatureMethod.class);
+    Provider common = provider(properties.getProperty(PROPERTY_SIGNATURE));
+    if (common != null) {
+      for (XMLSignatureMethod method : XMLSignatureMethod.values()) {
+        signature.put(method, common);
+      }
+    }
+    for (String name : properties.stringPropertyNames()) {
+      if (name.startsWith(PROPERTY_SIGNATURE_PREFIX)) {
+        String methodName = name.substring(PROPERTY_SIGNATURE_PREFIX.length());
+        XMLSignatureMethod method;
+        try {
+          method = XMLSignatureMethod.valueOf(methodName);
+        } catch (IllegalArgumentException e) {
+          throw new NoSuchAlgorithmException("Unknown signature method in property \"" + name + "\"");
+        }
+        signature.put(method, provider(properties.getProperty(name)));
+      }
+    }
+    return new ProviderConfiguration(xmlSignature, digest, signature);
+  }
+
+
+  private static Provider provider(String name) throws NoSuchProviderException {
+    if (name == null || name.isBlank()) {
+      return null;
+    }
+    name = name.trim();
+    Provider provider = Security.getProvider(name);
+    if (provider != null) {
+      return provider;
+    }
+    try {
+      return (Provider) Class.forName(name).getConstructor().newInstance();
+    } catch (ClassNotFoundException | ClassCastException | NoSuchMethodException | InstantiationException | IllegalAccessException
+        | InvocationTargetException e) {
+      NoSuchProviderException exception = new NoSuchProviderException("Provider \"" + name + "\" is neither installed nor an instantiable class");
+      exception.initCause(e);
+      throw exception;
+    }
+  }
+
+
+  /** The message digest provider, or null for the default. On the DOM path, only the Document reference uses it. */
+  private final Provider digestProvider;
+
+  /** The signature providers for each signature method. Methods which are not present use the default. */
+  private final Map<XMLSignatureMethod, Provider> signatureProviders;
+
+  /** The XML Signature provider, or null for the default. */
+  private final Provider xmlSignatureProvider;
+
+
+  /**
+   * New instance.
+   *
+   * @param xmlSignatureProvider the XML Signature provider, or null for the default
+   * @param digestProvider       the message digest provider, or null for the default
+   * @param signatureProviders   the signature provider for each signature method. Methods which are not present, or map to null, use the default.
+   */
+  public ProviderConfiguration(Provider xmlSignatureProvider, Provider digestProvider, Map<XMLSignatureMethod, Provider> signatureProviders) {
+    this.xmlSignatureProvider = xmlSignatureProvider;
+    this.digestProvider = digestProvider;
+    EnumMap<XMLSignatureMethod, Provider> map = new EnumMap<>(XMLSignatureMethod.class);
+    signatureProviders.forEach((method, provider) -> {
+      if (provider != null) {
+        map.put(method, provider);
+      }
+    });
+    this.signatureProviders = Collections.unmodifiableMap(map);
+  }
+
+
+  /**
+   * Set the context properties which tell the JSR-105 implementation which provider to use for a signature method. Both the JDK's implementation and Apache
+   * Santuario recognise these properties.
+   *
+   * @param context the signing or validation context
+   * @param method  the signature method
+   */
+  void configure(XMLCryptoContext context, XMLSignatureMethod method) {
+    Provider provider = getSignatureProvider(method);
+    if (provider != null) {
+      context.setProperty(SignatureAlgorithms.isHmac(method) ? CONTEXT_MAC_PROVIDER : CONTEXT_SIGNATURE_PROVIDER, provider);
+    }
+  }
+
+
+  public Provider getDigestProvider() {
+    return digestProvider;
+  }
+
+
+  /**
+   * Get the signature provider for a signature method.
+   *
+   * @param method the signature method (may be null)
+   *
+   * @return the provider, or null for the default
+   */
+  public Provider getSignatureProvider(XMLSignatureMethod method) {
+    return (method != null) ? signatureProviders.get(method) : null;
+  }
+
+
+  public Map<XMLSignatureMethod, Provider> getSignatureProviders() {
+    return signatureProviders;
+  }
+
+
+  public Provider getXmlSignatureProvider() {
+    return xmlSignatureProvider;
+  }
+
+}
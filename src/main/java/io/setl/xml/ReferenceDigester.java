@@ -0,0 +1,176 @@
+package io.setl.xml;
+
+import static javax.xml.crypto.dsig.CanonicalizationMethod.EXCLUSIVE;
+
+import java.io.IOException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.util.List;
+import java.util.Map;
+import javax.xml.crypto.Data;
+import javax.xml.crypto.MarshalException;
+import javax.xml.crypto.URIDereferencer;
+import javax.xml.crypto.URIReference;
+import javax.xml.crypto.URIReferenceException;
+import javax.xml.crypto.XMLCryptoContext;
+import javax.xml.crypto.dom.DOMStructure;
+import javax.xml.crypto.dsig.DigestMethod;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.Transform;
+import javax.xml.crypto.dsig.TransformException;
+import javax.xml.crypto.dsig.TransformService;
+import javax.xml.crypto.dsig.XMLSignatureException;
+import javax.xml.crypto.dsig.spec.TransformParameterSpec;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * Computes reference digests by canonicalizing straight into a {@link DigestSink}. This is used in place of the JSR-105 implementation's own digesting for
+ * references whose only transform is exclusive canonicalization, such as the ISO-20022 Document reference.
+ *
+ * <p>This avoids holding the canonical form in a byte array, but it does not make digesting allocation free. The JDK canonicalizer still builds a set of the
+ * reference's nodes and creates strings for the names and text it writes, and that is most of what it allocates. For a Document of a few megabytes,
+ * ReferenceDigesterTest measured about 23 bytes allocated per canonical byte, against about 28 when the canonical form is buffered and then digested.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class ReferenceDigester {
+
+  /** Map of XML digest method URIs to JCA message digest algorithm names. */
+  private static final Map<String, String> DIGEST_ALGORITHMS = Map.of(
+      DigestMethod.SHA1, "SHA-1",
+      DigestMethod.SHA224, "SHA-224",
+      DigestMethod.SHA256, "SHA-256",
+      DigestMethod.SHA384, "SHA-384",
+      DigestMethod.SHA512, "SHA-512"
+  );
+
+
+  /**
+   * Can a reference's digest be computed by this class? This requires exclusive canonicalization to be the only transform and a supported digest method.
+   *
+   * @param reference the reference
+   *
+   * @return true if the reference is supported
+   */
+  static boolean canDigest(Reference reference) {
+    List<Transform> transforms = reference.getTransforms();
+    return transforms.size() == 1
+        && EXCLUSIVE.equals(transforms.get(0).getAlgorithm())
+        && transforms.get(0).getParameterSpec() == null
+        && DIGEST_ALGORITHMS.containsKey(reference.getDigestMethod().getAlgorithm());
+  }
+
+
+  /**
+   * Canonicalize the data identified by a URI reference and digest the result.
+   *
+   * @param c14n         the exclusive canonicalization transform
+   * @param dereferencer the de-referencer which identifies the data
+   * @param reference    the URI reference to the data (may be null)
+   * @param context      the signing or validation context
+   * @param digestMethod the URI of the digest method
+   * @param provider     the message digest provider, or null for the default
+   *
+   * @return the digest value
+   */
+  static byte[] digest(
+      Transform c14n, URIDereferencer dereferencer, URIReference reference, XMLCryptoContext context, String digestMethod, Provider provider
+  ) throws XMLSignatureException {
+    MessageDigest messageDigest = newMessageDigest(digestMethod, provider);
+    Data data;
+    try {
+      data = dereferencer.dereference(reference, context);
+    } catch (URIReferenceException e) {
+      throw new XMLSignatureException("Cannot de-reference URI", e);
+    }
+
+    DigestSink sink = new DigestSink(ByteBufferPool.SHARED, messageDigest);
+    try {
+      c14n.transform(data, context, sink);
+      return sink.digest();
+    } catch (TransformException e) {
+      throw new XMLSignatureException("Canonicalization failed", e);
+    } finally {
+      sink.close();
+    }
+  }
+
+
+  /**
+   * Canonicalize part of a compact tree and digest the result.
+   *
+   * @param tree         the tree
+   * @param node         the element to canonicalize
+   * @param excluded     an element to omit, as for the enveloped signature transform, or NONE
+   * @param digestMethod the URI of the digest method
+   * @param provider     the message digest provider, or null for the default
+   *
+   * @return the digest value
+   */
+  static byte[] digest(CompactTree tree, int node, int excluded, String digestMethod, Provider provider) throws XMLSignatureException {
+    DigestSink sink = new DigestSink(ByteBufferPool.SHARED, newMessageDigest(digestMethod, provider));
+    try {
+      CompactCanonicalizer.canonicalize(tree, node, excluded, sink);
+      return sink.digest();
+    } catch (IOException e) {
+      throw new XMLSignatureException("Canonicalization failed", e);
+    } finally {
+      sink.close();
+    }
+  }
+
+
+  /**
+   * Create a message digest for an XML digest method.
+   *
+   * @param digestMethod the URI of the digest method
+   * @param provider     the provider, or null for the default
+   *
+   * @return the message digest
+   */
+  static MessageDigest newMessageDigest(String digestMethod, Provider provider) throws XMLSignatureException {
+    String algorithm = DIGEST_ALGORITHMS.get(digestMethod);
+    if (algorithm == null) {
+      throw new XMLSignatureException("Unsupported digest method: " + digestMethod);
+    }
+    try {
+      return (provider != null) ? MessageDigest.getInstance(algorithm, provider) : MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new XMLSignatureException(e);
+    }
+  }
+
+
+  /**
+   * Create an exclusive canonicalization transform that can be applied outside of a signature. JSR-105 transforms can only be applied once they have been
+   * marshalled, so the new transform is marshalled into a detached element.
+   *
+   * @param provider the XML Signature provider
+   * @param owner    a node in the document which the detached element will be created in
+   * @param context  the signing or validation context
+   *
+   * @return the transform
+   */
+  static Transform newExclusiveC14n(Provider provider, Node owner, XMLCryptoContext context) throws InvalidAlgorithmParameterException,
+      NoSuchAlgorithmException, XMLSignatureException {
+    TransformService c14n = TransformService.getInstance(EXCLUSIVE, "DOM", provider);
+    c14n.init((TransformParameterSpec) null);
+    Document ownerDocument = (owner.getNodeType() == Node.DOCUMENT_NODE) ? (Document) owner : owner.getOwnerDocument();
+    try {
+      c14n.marshalParams(new DOMStructure(ownerDocument.createElementNS(Constants.NS_SIGNATURE, "Transform")), context);
+    } catch (MarshalException e) {
+      throw new XMLSignatureException(e);
+    }
+    return c14n;
+  }
+
+
+  private ReferenceDigester() {
+    // do nothing
+  }
+
+}
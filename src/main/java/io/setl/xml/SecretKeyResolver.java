@@ -0,0 +1,21 @@
+package io.setl.xml;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Finds the shared secret key for an HMAC signature from the key name in the signature's KeyInfo.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public interface SecretKeyResolver {
+
+  /**
+   * Find the secret key with a given name.
+   *
+   * @param keyName the key name
+   *
+   * @return the key, or null if there is no key with that name
+   */
+  SecretKey resolve(String keyName);
+
+}
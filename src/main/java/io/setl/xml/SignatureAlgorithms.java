@@ -0,0 +1,288 @@
+package io.setl.xml;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.DSAKey;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.RSAKey;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+import java.util.Arrays;
+import java.util.Set;
+import javax.crypto.Mac;
+import javax.xml.crypto.dsig.XMLSignatureException;
+
+/**
+ * Maps XML signature methods to JCA signature and MAC algorithms, for code that creates and checks signature values without the JSR-105 implementation.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class SignatureAlgorithms {
+
+  /** Signature methods which are forbidden when validating, matching the JDK's secure validation policy. */
+  static final Set<XMLSignatureMethod> DISALLOWED = Set.of(
+      XMLSignatureMethod.DSA_SHA1,
+      XMLSignatureMethod.ECDSA_SHA1,
+      XMLSignatureMethod.RSA_SHA1,
+      XMLSignatureMethod.SHA1_RSA_MGF1
+  );
+
+
+  /** Minimum size of DSA keys, matching the JDK's secure validation policy. */
+  private static final int MIN_DSA_BITS = 1024;
+
+  /** Minimum size of EC keys, matching the JDK's secure validation policy. */
+  private static final int MIN_EC_BITS = 224;
+
+  /** Minimum size of RSA keys, matching the JDK's secure validation policy. */
+  private static final int MIN_RSA_BITS = 1024;
+
+
+  /**
+   * Check that a public key is not smaller than the JDK's secure validation policy allows.
+   *
+   * @param key the key
+   *
+   * @throws XMLSignatureException if the key is too small
+   */
+  static void checkKeySize(PublicKey key) throws XMLSignatureException {
+    String type;
+    int bits;
+    int minimum;
+    if (key instanceof RSAKey) {
+      type = "RSA";
+      bits = ((RSAKey) key).getModulus().bitLength();
+      minimum = MIN_RSA_BITS;
+    } else if (key instanceof DSAKey) {
+      type = "DSA";
+      bits = ((DSAKey) key).getParams().getP().bitLength();
+      minimum = MIN_DSA_BITS;
+    } else if (key instanceof ECKey) {
+      type = "EC";
+      bits = ((ECKey) key).getParams().getOrder().bitLength();
+      minimum = MIN_EC_BITS;
+    } else {
+      return;
+    }
+    if (bits < minimum) {
+      throw new XMLSignatureException(type + " keys less than " + minimum + " bits are forbidden when secure validation is enabled");
+    }
+  }
+
+
+  private static Signature getInstance(String algorithm, Provider provider) throws NoSuchAlgorithmException {
+    return (provider != null) ? Signature.getInstance(algorithm, provider) : Signature.getInstance(algorithm);
+  }
+
+
+  /**
+   * Does a signature method use a DSA or ECDSA signature, which XML Signature encodes as the concatenation of "r" and "s" rather than as DER?.
+   *
+   * @param method the method
+   *
+   * @return true if the signature is DSA or ECDSA
+   */
+  static boolean isDsa(XMLSignatureMethod method) {
+    return method.name().startsWith("DSA_") || method.name().startsWith("ECDSA_");
+  }
+
+
+  /**
+   * Is a signature method an HMAC, which requires a shared secret key rather than a key pair?.
+   *
+   * @param method the method (may be null)
+   *
+   * @return true if the method is an HMAC
+   */
+  static boolean isHmac(XMLSignatureMethod method) {
+    return method != null && method.name().startsWith("HMAC_");
+  }
+
+
+  /**
+   * Is a signature method an HMAC with a SHA-2 digest, which is the only kind accepted with a shared secret key?.
+   *
+   * @param method the method (may be null)
+   *
+   * @return true if the method is an HMAC other than HMAC-SHA1
+   */
+  static boolean isHmacSha2(XMLSignatureMethod method) {
+    return isHmac(method) && method != XMLSignatureMethod.HMAC_SHA1;
+  }
+
+
+  /**
+   * Create a JCA MAC for an HMAC signature method.
+   *
+   * @param method   the method
+   * @param provider the provider, or null for the default
+   *
+   * @return the MAC, uninitialised
+   */
+  static Mac newMac(XMLSignatureMethod method, Provider provider) throws NoSuchAlgorithmException {
+    String algorithm;
+    switch (method) {
+      case HMAC_SHA1:
+        algorithm = "HmacSHA1";
+        break;
+      case HMAC_SHA224:
+        algorithm = "HmacSHA224";
+        break;
+      case HMAC_SHA256:
+        algorithm = "HmacSHA256";
+        break;
+      case HMAC_SHA384:
+        algorithm = "HmacSHA384";
+        break;
+      case HMAC_SHA512:
+        algorithm = "HmacSHA512";
+        break;
+      default:
+        throw new NoSuchAlgorithmException("Not an HMAC signature method: " + method);
+    }
+    return (provider != null) ? Mac.getInstance(algorithm, provider) : Mac.getInstance(algorithm);
+  }
+
+
+  /**
+   * Create a JCA signature for a signature method.
+   *
+   * @param method   the method
+   * @param provider the provider, or null for the default
+   *
+   * @return the signature, uninitialised
+   */
+  static Signature newSignature(XMLSignatureMethod method, Provider provider) throws NoSuchAlgorithmException, InvalidAlgorithmParameterException {
+    switch (method) {
+      case DSA_SHA1:
+        return getInstance("SHA1withDSA", provider);
+      case DSA_SHA256:
+        return getInstance("SHA256withDSA", provider);
+      case ECDSA_SHA1:
+        return getInstance("SHA1withECDSA", provider);
+      case ECDSA_SHA224:
+        return getInstance("SHA224withECDSA", provider);
+      case ECDSA_SHA256:
+        return getInstance("SHA256withECDSA", provider);
+      case ECDSA_SHA384:
+        return getInstance("SHA384withECDSA", provider);
+      case ECDSA_SHA512:
+        return getInstance("SHA512withECDSA", provider);
+      case RSA_SHA1:
+        return getInstance("SHA1withRSA", provider);
+      case RSA_SHA224:
+        return getInstance("SHA224withRSA", provider);
+      case RSA_SHA256:
+        return getInstance("SHA256withRSA", provider);
+      case RSA_SHA384:
+        return getInstance("SHA384withRSA", provider);
+      case RSA_SHA512:
+        return getInstance("SHA512withRSA", provider);
+      case SHA1_RSA_MGF1:
+        return pss("SHA-1", MGF1ParameterSpec.SHA1, 20, provider);
+      case SHA224_RSA_MGF1:
+        return pss("SHA-224", MGF1ParameterSpec.SHA224, 28, provider);
+      case SHA256_RSA_MGF1:
+        return pss("SHA-256", MGF1ParameterSpec.SHA256, 32, provider);
+      case SHA384_RSA_MGF1:
+        return pss("SHA-384", MGF1ParameterSpec.SHA384, 48, provider);
+      case SHA512_RSA_MGF1:
+        return pss("SHA-512", MGF1ParameterSpec.SHA512, 64, provider);
+      default:
+        throw new NoSuchAlgorithmException("Not a public key signature method: " + method);
+    }
+  }
+
+
+  private static Signature pss(String digest, MGF1ParameterSpec mgf1, int saltLength, Provider provider) throws NoSuchAlgorithmException,
+      InvalidAlgorithmParameterException {
+    Signature signature = getInstance("RSASSA-PSS", provider);
+    signature.setParameter(new PSSParameterSpec(digest, "MGF1", mgf1, saltLength, PSSParameterSpec.TRAILER_FIELD_BC));
+    return signature;
+  }
+
+
+  /**
+   * Convert a DER encoded DSA or ECDSA signature to the XML Signature form, which is "r" and "s" as fixed length unsigned integers.
+   *
+   * @param der    the DER encoded signature
+   * @param length the length of each integer
+   *
+   * @return the XML Signature form
+   */
+  static byte[] toConcatenated(byte[] der, int length) throws XMLSignatureException {
+    // SEQUENCE { INTEGER r, INTEGER s }
+    if (der.length < 8 || der[0] != 0x30) {
+      throw new XMLSignatureException("Invalid DER signature");
+    }
+    int offset = ((der[1] & 0x80) != 0) ? 2 + (der[1] & 0x7f) : 2;
+    byte[] output = new byte[2 * length];
+    for (int part = 0; part < 2; part++) {
+      if (offset + 2 > der.length || der[offset] != 0x02) {
+        throw new XMLSignatureException("Invalid DER signature");
+      }
+      int intLength = der[offset + 1] & 0xff;
+      byte[] value = new BigInteger(1, Arrays.copyOfRange(der, offset + 2, offset + 2 + intLength)).toByteArray();
+      int start = (value[0] == 0) ? 1 : 0;
+      int size = value.length - start;
+      if (size > length) {
+        throw new XMLSignatureException("DER signature integer is too long");
+      }
+      System.arraycopy(value, start, output, part * length + length - size, size);
+      offset += 2 + intLength;
+    }
+    return output;
+  }
+
+
+  /**
+   * Convert an XML Signature DSA or ECDSA signature value to DER.
+   *
+   * @param concatenated the "r" and "s" values as equal length unsigned integers
+   *
+   * @return the DER encoded signature
+   */
+  static byte[] toDer(byte[] concatenated) throws XMLSignatureException {
+    if (concatenated.length == 0 || concatenated.length % 2 != 0) {
+      throw new XMLSignatureException("Invalid DSA or ECDSA signature value length: " + concatenated.length);
+    }
+    int half = concatenated.length / 2;
+    byte[] r = new BigInteger(1, Arrays.copyOfRange(concatenated, 0, half)).toByteArray();
+    byte[] s = new BigInteger(1, Arrays.copyOfRange(concatenated, half, concatenated.length)).toByteArray();
+
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    writeDer(body, 0x02, r);
+    writeDer(body, 0x02, s);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    writeDer(output, 0x30, body.toByteArray());
+    return output.toByteArray();
+  }
+
+
+  private static void writeDer(ByteArrayOutputStream output, int tag, byte[] content) {
+    output.write(tag);
+    int length = content.length;
+    if (length < 0x80) {
+      output.write(length);
+    } else if (length < 0x100) {
+      output.write(0x81);
+      output.write(length);
+    } else {
+      output.write(0x82);
+      output.write(length >> 8);
+      output.write(length & 0xff);
+    }
+    output.write(content, 0, length);
+  }
+
+
+  private SignatureAlgorithms() {
+    // do nothing
+  }
+
+}
@@ -0,0 +1,92 @@
+package io.setl.xml;
+
+import java.security.Provider;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.keyinfo.KeyInfoFactory;
+
+/**
+ * The JSR-105 and certificate factories needed for a single signing or validation operation. The JSR-105 specification does not require
+ * XMLSignatureFactory, KeyInfoFactory or CertificateFactory instances to be thread-safe, so each operation borrows a set from a pool and returns it when it is
+ * done.
+ *
+ * @author agent on 18/10/2026.
+ */
+class SignatureFactories {
+
+  /**
+   * A pool of idle factory sets for one provider configuration. Each signer-verifier owns its pool, so the pool is discarded along with it.
+   */
+  static class Pool {
+
+    /** The provider configuration of the pooled factories. */
+    private final ProviderConfiguration configuration;
+
+    /** The idle factory sets. */
+    private final BlockingQueue<SignatureFactories> idle = new LinkedBlockingQueue<>();
+
+
+    /**
+     * New instance.
+     *
+     * @param configuration the provider configuration of the pooled factories
+     */
+    Pool(ProviderConfiguration configuration) {
+      this.configuration = configuration;
+    }
+
+
+    /**
+     * Borrow a factory set from the pool, creating a new one if none are idle.
+     *
+     * @return the factory set
+     */
+    SignatureFactories borrow() {
+      SignatureFactories factories = idle.poll();
+      return (factories != null) ? factories : new SignatureFactories(configuration);
+    }
+
+
+    /**
+     * Return a factory set to the pool.
+     *
+     * @param factories the factory set
+     */
+    void release(SignatureFactories factories) {
+      // The pool is unbounded, so this cannot fail. If it somehow did, the factories would just be garbage collected.
+      idle.offer(factories);
+    }
+
+  }
+
+
+  /** The provider configuration these factories were created with. */
+  final ProviderConfiguration configuration;
+
+  /** Factory for deserializing X.509 certificates. */
+  final CertificateFactory certificateFactory;
+
+  /** Generate KeyInfo elements. */
+  final KeyInfoFactory keyInfoFactory;
+
+  /** XML Signature factory for performing signing and validation. */
+  final XMLSignatureFactory xmlSignatureFactory;
+
+
+  private SignatureFactories(ProviderConfiguration configuration) {
+    this.configuration = configuration;
+    Provider provider = configuration.getXmlSignatureProvider();
+    xmlSignatureFactory = (provider != null) ? XMLSignatureFactory.getInstance("DOM", provider) : XMLSignatureFactory.getInstance("DOM");
+    keyInfoFactory = xmlSignatureFactory.getKeyInfoFactory();
+    try {
+      certificateFactory = CertificateFactory.getInstance("X.509");
+    } catch (CertificateException e) {
+      // Support for X.509 certificates is required.
+      throw new InternalError("X.509 certificates are not supported", e);
+    }
+  }
+
+}
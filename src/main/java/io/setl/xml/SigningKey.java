@@ -0,0 +1,127 @@
+package io.setl.xml;
+
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Objects;
+
+/**
+ * A private key, the certificate that identifies it, and the signature method to use with it.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class SigningKey {
+
+  /**
+   * Get the default signature method for a private key, based upon the key's algorithm.
+   *
+   * @param privateKey the private key
+   *
+   * @return the default signature method
+   *
+   * @throws IllegalArgumentException if the key's algorithm is not supported
+   */
+  public static XMLSignatureMethod defaultMethod(PrivateKey privateKey) {
+    switch (privateKey.getAlgorithm()) {
+      case "RSA":
+        return XMLSignatureMethod.RSA_SHA256;
+      case "EC":
+        return XMLSignatureMethod.ECDSA_SHA256;
+      case "DSA":
+        return XMLSignatureMethod.DSA_SHA256;
+      default:
+        throw new IllegalArgumentException("Unsupported private key algorithm: " + privateKey.getAlgorithm());
+    }
+  }
+
+
+  /**
+   * Get the private key algorithm that a signature method requires.
+   *
+   * @param method the signature method
+   *
+   * @return the JCA key algorithm, or null if the method does not use a private key
+   */
+  public static String keyAlgorithm(XMLSignatureMethod method) {
+    String name = method.name();
+    if (name.startsWith("RSA_") || name.endsWith("_RSA_MGF1")) {
+      return "RSA";
+    }
+    if (name.startsWith("ECDSA_")) {
+      return "EC";
+    }
+    if (name.startsWith("DSA_")) {
+      return "DSA";
+    }
+    return null;
+  }
+
+
+  /** The certificate to include in the signature. */
+  private final X509Certificate certificate;
+
+  /** The private key to sign with. */
+  private final PrivateKey privateKey;
+
+  /** The signature method to use. */
+  private final XMLSignatureMethod signatureMethod;
+
+
+  /**
+   * New instance which uses the default signature method for the private key.
+   *
+   * @param privateKey  the private key
+   * @param certificate the certificate
+   */
+  public SigningKey(PrivateKey privateKey, X509Certificate certificate) {
+    this(privateKey, certificate, defaultMethod(privateKey));
+  }
+
+
+  /**
+   * New instance.
+   *
+   * @param privateKey      the private key
+   * @param certificate     the certificate
+   * @param signatureMethod the signature method
+   *
+   * @throws IllegalArgumentException if the signature method cannot be used with the private key
+   */
+  public SigningKey(PrivateKey privateKey, X509Certificate certificate, XMLSignatureMethod signatureMethod) {
+    this.privateKey = Objects.requireNonNull(privateKey);
+    this.certificate = Objects.requireNonNull(certificate);
+    this.signatureMethod = Objects.requireNonNull(signatureMethod);
+    if (!privateKey.getAlgorithm().equals(keyAlgorithm(signatureMethod))) {
+      throw new IllegalArgumentException("Signature method " + signatureMethod + " cannot be used with a " + privateKey.getAlgorithm() + " key");
+    }
+  }
+
+
+  public X509Certificate getCertificate() {
+    return certificate;
+  }
+
+
+  public PrivateKey getPrivateKey() {
+    return privateKey;
+  }
+
+
+  public XMLSignatureMethod getSignatureMethod() {
+    return signatureMethod;
+  }
+
+
+  /**
+   * Get a signing key with the same private key and certificate, which uses a different signature method.
+   *
+   * @param method the signature method
+   *
+   * @return the signing key
+   *
+   * @throws IllegalArgumentException if the signature method cannot be used with the private key
+   */
+  public SigningKey withSignatureMethod(XMLSignatureMethod method) {
+    return (method == signatureMethod) ? this : new SigningKey(privateKey, certificate, method);
+  }
+
+}
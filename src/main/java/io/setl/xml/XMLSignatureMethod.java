@@ -1,5 +1,8 @@
 package io.setl.xml;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Possible types of cryptographic signature.
  *
@@ -177,6 +180,30 @@ public enum XMLSignatureMethod {
    */
   SHA512_RSA_MGF1("http://www.w3.org/2007/05/xmldsig-more#sha512-rsa-MGF1");
 
+  /** Index of signature methods by URI. */
+  private static final Map<String, XMLSignatureMethod> BY_URI;
+
+
+  /**
+   * Get the signature method with the specified URI.
+   *
+   * @param uri the URI
+   *
+   * @return the signature method, or null if the URI is not recognised
+   */
+  public static XMLSignatureMethod forUri(String uri) {
+    return (uri != null) ? BY_URI.get(uri) : null;
+  }
+
+
+  static {
+    HashMap<String, XMLSignatureMethod> map = new HashMap<>();
+    for (XMLSignatureMethod method : values()) {
+      map.put(method.uri, method);
+    }
+    BY_URI = Map.copyOf(map);
+  }
+
   private final String uri;
 
 
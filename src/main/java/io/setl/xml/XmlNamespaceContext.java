@@ -1,15 +1,19 @@
 package io.setl.xml;
 
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import javax.xml.namespace.NamespaceContext;
 
 /**
- * Simple namespace context resolver for X-Path. The namespace mappings are fixed.
+ * Simple namespace context resolver for X-Path. The namespace mappings are fixed, with one prefix for each supported AppHdr version.
  *
  * <pre>
+ *   xmlns:head01="urn:iso:std:iso:20022:tech:xsd:head.001.001.01"
+ *   xmlns:head02="urn:iso:std:iso:20022:tech:xsd:head.001.001.02"
  *   xmlns:head="urn:iso:std:iso:20022:tech:xsd:head.001.001.03"
+ *   xmlns:head04="urn:iso:std:iso:20022:tech:xsd:head.001.001.04"
  *   xmlns:sign="http://www.w3.org/2000/09/xmldsig#"
  * </pre>
  *
@@ -17,15 +21,23 @@ import javax.xml.namespace.NamespaceContext;
  */
 public class XmlNamespaceContext implements NamespaceContext {
 
-  private final Map<String, String> prefixesForUri = Map.of(
-      Constants.NS_ISO_HEAD, "head",
-      Constants.NS_SIGNATURE, "sign"
-  );
+  private static final Map<String, String> prefixesForUri;
 
-  private final Map<String, String> uriForPrefix = Map.of(
-      "head", Constants.NS_ISO_HEAD,
-      "sign", Constants.NS_SIGNATURE
-  );
+  private static final Map<String, String> uriForPrefix;
+
+
+  static {
+    HashMap<String, String> prefixes = new HashMap<>();
+    HashMap<String, String> uris = new HashMap<>();
+    for (AppHdrVersion version : AppHdrVersion.values()) {
+      prefixes.put(version.getNamespace(), version.getPrefix());
+      uris.put(version.getPrefix(), version.getNamespace());
+    }
+    prefixes.put(Constants.NS_SIGNATURE, "sign");
+    uris.put("sign", Constants.NS_SIGNATURE);
+    prefixesForUri = Map.copyOf(prefixes);
+    uriForPrefix = Map.copyOf(uris);
+  }
 
 
   @Override
@@ -0,0 +1,135 @@
+package io.setl.xml.audit;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads the records of a {@link MappedAuditJournal}. The journal may be appended to while it is being read, in this process or another.
+ *
+ * <p>Lookups by BizMsgIdr use an index which is built on first use. Each lookup first extends the index with any records appended since the previous
+ * lookup, so the index is only ever built once.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class AuditJournalReader {
+
+  /** The directory holding the segments. */
+  private final Path directory;
+
+  /** Index of record locations by BizMsgIdr. Each location is the segment's index in the segment list and the record's offset, packed into a long. */
+  private final HashMap<String, List<Long>> index = new HashMap<>();
+
+  /** The number of complete records indexed in the last segment that has been indexed. */
+  private int indexedRecords;
+
+  /** The segments that have been indexed, the last of which may have more records to index. */
+  private final List<Path> indexedSegments = new ArrayList<>();
+
+
+  /**
+   * New instance.
+   *
+   * @param directory the directory which holds the journal's segments
+   */
+  public AuditJournalReader(Path directory) {
+    this.directory = directory;
+  }
+
+
+  /**
+   * Find the records for a BizMsgIdr, in the order they were written.
+   *
+   * @param bizMsgIdr the BizMsgIdr
+   *
+   * @return the matching records
+   */
+  public synchronized List<AuditRecord> find(String bizMsgIdr) throws IOException {
+    updateIndex();
+    List<Long> locations = index.get(bizMsgIdr);
+    if (locations == null) {
+      return List.of();
+    }
+    ArrayList<AuditRecord> records = new ArrayList<>(locations.size());
+    int mappedSegment = -1;
+    MappedByteBuffer buffer = null;
+    for (long location : locations) {
+      int segment = (int) (location >>> 32);
+      if (segment != mappedSegment) {
+        buffer = map(indexedSegments.get(segment));
+        mappedSegment = segment;
+      }
+      records.add(MappedAuditJournal.read(buffer, (int) location));
+    }
+    return records;
+  }
+
+
+  /**
+   * Pass every record in the journal to a consumer, in the order they were written.
+   *
+   * @param consumer the consumer
+   */
+  public void forEach(Consumer<AuditRecord> consumer) throws IOException {
+    for (Path path : MappedAuditJournal.segments(directory)) {
+      MappedByteBuffer buffer = map(path);
+      for (int offset = 0; offset + MappedAuditJournal.RECORD_SIZE <= buffer.capacity(); offset += MappedAuditJournal.RECORD_SIZE) {
+        AuditRecord auditRecord = MappedAuditJournal.read(buffer, offset);
+        if (auditRecord == null) {
+          break;
+        }
+        consumer.accept(auditRecord);
+      }
+    }
+  }
+
+
+  private MappedByteBuffer map(Path path) throws IOException {
+    // The mapping remains valid after the channel is closed.
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return channel.map(MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+
+  /**
+   * Add records written since the last update to the index.
+   */
+  private void updateIndex() throws IOException {
+    List<Path> segments = MappedAuditJournal.segments(directory);
+    if (!indexedSegments.isEmpty() && !segments.contains(indexedSegments.get(0))) {
+      // Old segments have been removed, so the recorded positions are no longer valid.
+      index.clear();
+      indexedSegments.clear();
+      indexedRecords = 0;
+    }
+
+    int segmentIndex = Math.max(0, indexedSegments.size() - 1);
+    int offset = indexedRecords * MappedAuditJournal.RECORD_SIZE;
+    for (int i = indexedSegments.isEmpty() ? 0 : segments.indexOf(indexedSegments.get(segmentIndex)); i < segments.size(); i++) {
+      Path path = segments.get(i);
+      if (segmentIndex == indexedSegments.size()) {
+        indexedSegments.add(path);
+        offset = 0;
+      }
+      MappedByteBuffer buffer = map(path);
+      while (offset + MappedAuditJournal.RECORD_SIZE <= buffer.capacity() && MappedAuditJournal.isComplete(buffer, offset)) {
+        String bizMsgIdr = MappedAuditJournal.readId(buffer, offset);
+        if (bizMsgIdr != null) {
+          index.computeIfAbsent(bizMsgIdr, k -> new ArrayList<>()).add(((long) segmentIndex << 32) | offset);
+        }
+        offset += MappedAuditJournal.RECORD_SIZE;
+      }
+      indexedRecords = offset / MappedAuditJournal.RECORD_SIZE;
+      segmentIndex++;
+    }
+  }
+
+}
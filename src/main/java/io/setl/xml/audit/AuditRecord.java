@@ -0,0 +1,97 @@
+package io.setl.xml.audit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.setl.xml.metrics.Operation;
+import io.setl.xml.metrics.Outcome;
+
+/**
+ * A record of a single signing or validation operation.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class AuditRecord {
+
+  /** The message's business message identifier, or null if it could not be read. */
+  private final String bizMsgIdr;
+
+  /** SHA-256 fingerprint of the certificate, or null if there was no certificate. */
+  private final byte[] certificateFingerprint;
+
+  /** The operation. */
+  private final Operation operation;
+
+  /** The outcome. */
+  private final Outcome outcome;
+
+  /** The digest values of the signature's references. */
+  private final List<byte[]> referenceDigests;
+
+  /** When the operation completed, in microseconds since the epoch. */
+  private final long timestampMicros;
+
+
+  /**
+   * New instance.
+   *
+   * @param timestampMicros        when the operation completed, in microseconds since the epoch
+   * @param operation              the operation
+   * @param outcome                the outcome
+   * @param bizMsgIdr              the message's business message identifier, or null
+   * @param certificateFingerprint SHA-256 fingerprint of the certificate, or null
+   * @param referenceDigests       the digest values of the signature's references
+   */
+  public AuditRecord(
+      long timestampMicros, Operation operation, Outcome outcome, String bizMsgIdr, byte[] certificateFingerprint,
+      List<byte[]> referenceDigests
+  ) {
+    this.timestampMicros = timestampMicros;
+    this.operation = operation;
+    this.outcome = outcome;
+    this.bizMsgIdr = bizMsgIdr;
+    this.certificateFingerprint = (certificateFingerprint != null) ? certificateFingerprint.clone() : null;
+    ArrayList<byte[]> copy = new ArrayList<>(referenceDigests.size());
+    for (byte[] digest : referenceDigests) {
+      copy.add(digest.clone());
+    }
+    this.referenceDigests = Collections.unmodifiableList(copy);
+  }
+
+
+  public String getBizMsgIdr() {
+    return bizMsgIdr;
+  }
+
+
+  public byte[] getCertificateFingerprint() {
+    return (certificateFingerprint != null) ? certificateFingerprint.clone() : null;
+  }
+
+
+  public Operation getOperation() {
+    return operation;
+  }
+
+
+  public Outcome getOutcome() {
+    return outcome;
+  }
+
+
+  /**
+   * Get the digest values of the signature's references. The returned arrays must not be modified.
+   *
+   * @return the digest values
+   */
+  public List<byte[]> getReferenceDigests() {
+    return referenceDigests;
+  }
+
+
+  public long getTimestampMicros() {
+    return timestampMicros;
+  }
+
+}
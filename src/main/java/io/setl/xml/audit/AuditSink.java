@@ -0,0 +1,24 @@
+package io.setl.xml.audit;
+
+/**
+ * A destination for audit records of signing and validation operations. Implementations must be thread-safe, and should return quickly as they are called on
+ * every operation.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public interface AuditSink {
+
+  /** A sink that discards everything. */
+  AuditSink NONE = auditRecord -> {
+    // do nothing
+  };
+
+
+  /**
+   * Record an operation.
+   *
+   * @param auditRecord the record
+   */
+  void record(AuditRecord auditRecord);
+
+}
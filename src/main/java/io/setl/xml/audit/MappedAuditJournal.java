@@ -0,0 +1,603 @@
+package io.setl.xml.audit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import io.setl.xml.metrics.Operation;
+import io.setl.xml.metrics.Outcome;
+
+/**
+ * An append-only audit journal of fixed size binary records in memory-mapped segment files.
+ *
+ * <p>Appending a record copies it into the mapped segment, so it costs no more than a few memory writes. A background thread forces dirty segments to
+ * storage every commit interval. Each segment holds a fixed number of records, and a new segment is started when the current one is full. A full segment is
+ * handed to the background thread to be forced and closed, so appending never waits for the storage device. Segments are never modified once they are full,
+ * so they may be archived or removed as retention requires.</p>
+ *
+ * <p>{@link #record(AuditRecord)} gives no durability guarantee: it returns as soon as the record is in memory, and a crash before the next group commit
+ * loses it. A caller that must know a record is stored uses {@link #append(AuditRecord)}, which returns the record's position, and then waits for that
+ * position with {@link #awaitDurable(long, long)}.</p>
+ *
+ * <p>Every record is {@value #RECORD_SIZE} bytes:</p>
+ * <table>
+ *   <caption>Record layout</caption>
+ *   <tr><th>Offset</th><th>Size</th><th>Content</th></tr>
+ *   <tr><td>0</td><td>4</td><td>Magic number, which marks the slot as holding a record</td></tr>
+ *   <tr><td>4</td><td>1</td><td>Operation ordinal</td></tr>
+ *   <tr><td>5</td><td>1</td><td>Outcome ordinal</td></tr>
+ *   <tr><td>6</td><td>1</td><td>Flags: bit 0 is set if a certificate fingerprint is present</td></tr>
+ *   <tr><td>7</td><td>1</td><td>Number of reference digests</td></tr>
+ *   <tr><td>8</td><td>8</td><td>Timestamp in microseconds since the epoch</td></tr>
+ *   <tr><td>16</td><td>32</td><td>SHA-256 certificate fingerprint</td></tr>
+ *   <tr><td>48</td><td>1</td><td>Length of the BizMsgIdr in bytes, or 255 if there is none</td></tr>
+ *   <tr><td>49</td><td>136</td><td>BizMsgIdr in UTF-8</td></tr>
+ *   <tr><td>185</td><td>195</td><td>Three reference digests, each a length byte followed by up to 64 bytes</td></tr>
+ *   <tr><td>380</td><td>4</td><td>CRC-32 of bytes 4 to 379</td></tr>
+ * </table>
+ *
+ * <p>A record is only read if both its magic number and its checksum are correct. The checksum is needed because forcing a segment to storage is not atomic:
+ * after a crash, a record which spans a page boundary may have been stored with its magic number but without the rest of its content. As full segments are
+ * forced in the background, a crash may leave both the newest segment and the one before it incomplete.</p>
+ *
+ * <p>A BizMsgIdr is at most 35 characters, so fits in the space provided unless it contains many characters outside the Basic Multilingual Plane. Longer
+ * values are truncated. Only the first three reference digests are kept.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class MappedAuditJournal implements AuditSink, Closeable {
+
+  /** Default time between forcing records to storage. */
+  public static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 10;
+
+  /** Default number of records in a segment. */
+  public static final int DEFAULT_RECORDS_PER_SEGMENT = 65536;
+
+  /** Size of a record in bytes. */
+  public static final int RECORD_SIZE = 384;
+
+  /** Flag which indicates a certificate fingerprint is present. */
+  static final int FLAG_FINGERPRINT = 1;
+
+  /** Magic number which marks a slot holding a record. */
+  static final int MAGIC = 0x41554432;
+
+  /** Maximum length of a reference digest. */
+  static final int MAX_DIGEST = 64;
+
+  /** Maximum number of reference digests. */
+  static final int MAX_DIGESTS = 3;
+
+  /** Maximum length of the BizMsgIdr in bytes. */
+  static final int MAX_ID = 136;
+
+  /** Length value which indicates there is no BizMsgIdr. */
+  static final int NO_ID = 0xff;
+
+  static final int OFFSET_CHECKSUM = 380;
+
+  static final int OFFSET_DIGESTS = 185;
+
+  static final int OFFSET_DIGEST_COUNT = 7;
+
+  static final int OFFSET_FINGERPRINT = 16;
+
+  static final int OFFSET_FLAGS = 6;
+
+  static final int OFFSET_ID = 49;
+
+  static final int OFFSET_ID_LENGTH = 48;
+
+  static final int OFFSET_OPERATION = 4;
+
+  static final int OFFSET_OUTCOME = 5;
+
+  static final int OFFSET_TIMESTAMP = 8;
+
+  /** Pattern of segment file names. */
+  private static final Pattern SEGMENT_NAME = Pattern.compile("audit-(\\d{16})\\.seg");
+
+  /** The logger. */
+  private static final Logger log = System.getLogger(MappedAuditJournal.class.getName());
+
+
+  /** A full segment which has not yet been forced to storage. */
+  private static class FullSegment {
+
+    /** The segment's channel, closed once the segment is stored. */
+    final FileChannel channel;
+
+    /** The segment. */
+    final MappedByteBuffer segment;
+
+
+    FullSegment(FileChannel channel, MappedByteBuffer segment) {
+      this.channel = channel;
+      this.segment = segment;
+    }
+
+  }
+
+
+  /**
+   * Calculate the checksum of the record at a position in a segment. The checksum covers everything except the magic number and the checksum itself.
+   *
+   * @param buffer the segment
+   * @param offset the record's offset
+   *
+   * @return the checksum
+   */
+  static int checksum(ByteBuffer buffer, int offset) {
+    ByteBuffer view = buffer.duplicate();
+    view.limit(offset + OFFSET_CHECKSUM);
+    view.position(offset + OFFSET_OPERATION);
+    CRC32 crc = new CRC32();
+    crc.update(view);
+    return (int) crc.getValue();
+  }
+
+
+  private static void getBytes(ByteBuffer buffer, int index, byte[] bytes) {
+    ByteBuffer view = buffer.duplicate();
+    view.position(index);
+    view.get(bytes);
+  }
+
+
+  /**
+   * Test if the slot at a position in a segment holds a complete record, by checking its magic number and checksum.
+   *
+   * @param buffer the segment
+   * @param offset the slot's offset
+   *
+   * @return true if the record is complete
+   */
+  static boolean isComplete(ByteBuffer buffer, int offset) {
+    return buffer.getInt(offset) == MAGIC && buffer.getInt(offset + OFFSET_CHECKSUM) == checksum(buffer, offset);
+  }
+
+
+  private static void putBytes(ByteBuffer buffer, int index, byte[] bytes, int length) {
+    ByteBuffer view = buffer.duplicate();
+    view.position(index);
+    view.put(bytes, 0, length);
+  }
+
+
+  /**
+   * Read the record at a position in a segment.
+   *
+   * @param buffer the segment
+   * @param offset the record's offset
+   *
+   * @return the record, or null if there is no complete record at the offset
+   */
+  static AuditRecord read(ByteBuffer buffer, int offset) {
+    if (!isComplete(buffer, offset)) {
+      return null;
+    }
+    Operation operation = Operation.values()[buffer.get(offset + OFFSET_OPERATION)];
+    Outcome outcome = Outcome.values()[buffer.get(offset + OFFSET_OUTCOME)];
+    long micros = buffer.getLong(offset + OFFSET_TIMESTAMP);
+
+    byte[] fingerprint = null;
+    if ((buffer.get(offset + OFFSET_FLAGS) & FLAG_FINGERPRINT) != 0) {
+      fingerprint = new byte[32];
+      getBytes(buffer, offset + OFFSET_FINGERPRINT, fingerprint);
+    }
+
+    String bizMsgIdr = decodeId(buffer, offset);
+
+    int count = buffer.get(offset + OFFSET_DIGEST_COUNT);
+    ArrayList<byte[]> digests = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int position = offset + OFFSET_DIGESTS + i * (1 + MAX_DIGEST);
+      byte[] digest = new byte[buffer.get(position) & 0xff];
+      getBytes(buffer, position + 1, digest);
+      digests.add(digest);
+    }
+    return new AuditRecord(micros, operation, outcome, bizMsgIdr, fingerprint, digests);
+  }
+
+
+  /**
+   * Read the BizMsgIdr of the record at a position in a segment, without decoding the rest of the record.
+   *
+   * @param buffer the segment
+   * @param offset the record's offset
+   *
+   * @return the BizMsgIdr, or null if the record has none or is not complete
+   */
+  static String readId(ByteBuffer buffer, int offset) {
+    return isComplete(buffer, offset) ? decodeId(buffer, offset) : null;
+  }
+
+
+  private static String decodeId(ByteBuffer buffer, int offset) {
+    int length = buffer.get(offset + OFFSET_ID_LENGTH) & 0xff;
+    if (length == NO_ID) {
+      return null;
+    }
+    byte[] id = new byte[length];
+    getBytes(buffer, offset + OFFSET_ID, id);
+    return new String(id, StandardCharsets.UTF_8);
+  }
+
+
+  /**
+   * List the segment files in a directory.
+   *
+   * @param directory the directory
+   *
+   * @return the segment files, in the order they were written
+   */
+  static List<Path> segments(Path directory) throws IOException {
+    try (Stream<Path> stream = Files.list(directory)) {
+      return stream.filter(p -> SEGMENT_NAME.matcher(p.getFileName().toString()).matches()).sorted().collect(Collectors.toList());
+    }
+  }
+
+
+  /**
+   * Truncate UTF-8 bytes to at most the maximum length, without splitting a character.
+   *
+   * @param id the UTF-8 bytes
+   *
+   * @return the number of bytes to keep
+   */
+  private static int truncatedLength(byte[] id) {
+    if (id.length <= MAX_ID) {
+      return id.length;
+    }
+    int length = MAX_ID;
+    while (length > 0 && (id[length] & 0xc0) == 0x80) {
+      length--;
+    }
+    return length;
+  }
+
+
+  /** Time between forcing records to storage. */
+  private final long commitIntervalMillis;
+
+  /** Thread that periodically forces records to storage. */
+  private final Thread committer;
+
+  /** The directory holding the segments. */
+  private final Path directory;
+
+  /** Lock held while forcing segments, so that the durable position only advances once everything before it is stored. */
+  private final Object flushLock = new Object();
+
+  /** Full segments waiting to be forced to storage, oldest first. */
+  private final ArrayDeque<FullSegment> fullSegments = new ArrayDeque<>();
+
+  /** Number of records in a segment. */
+  private final int recordsPerSegment;
+
+  /** The channel of the current segment. */
+  private FileChannel channel;
+
+  /** Has the journal been closed?. */
+  private boolean closed;
+
+  /** The current segment, if it has records which have not been forced to storage, or null. */
+  private MappedByteBuffer dirty;
+
+  /** The position before which every record is known to be stored. */
+  private long durable;
+
+  /** The next free record slot in the current segment. */
+  private int next;
+
+  /** The current segment. */
+  private MappedByteBuffer segment;
+
+  /** The sequence number of the current segment. */
+  private long sequence;
+
+
+  /**
+   * New instance with the default segment size and commit interval.
+   *
+   * @param directory the directory which holds the segments
+   */
+  public MappedAuditJournal(Path directory) throws IOException {
+    this(directory, DEFAULT_RECORDS_PER_SEGMENT, DEFAULT_COMMIT_INTERVAL_MILLIS);
+  }
+
+
+  /**
+   * New instance. Appending resumes after the last record in the directory's newest segment.
+   *
+   * @param directory            the directory which holds the segments
+   * @param recordsPerSegment    the number of records in a segment
+   * @param commitIntervalMillis the time between forcing records to storage
+   */
+  public MappedAuditJournal(Path directory, int recordsPerSegment, long commitIntervalMillis) throws IOException {
+    if (recordsPerSegment <= 0 || (long) recordsPerSegment * RECORD_SIZE > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid records per segment: " + recordsPerSegment);
+    }
+    if (commitIntervalMillis <= 0) {
+      throw new IllegalArgumentException("Invalid commit interval: " + commitIntervalMillis);
+    }
+    this.directory = directory;
+    this.recordsPerSegment = recordsPerSegment;
+    this.commitIntervalMillis = commitIntervalMillis;
+    Files.createDirectories(directory);
+
+    List<Path> existing = segments(directory);
+    if (existing.isEmpty()) {
+      openSegment(0);
+    } else {
+      Path last = existing.get(existing.size() - 1);
+      Matcher matcher = SEGMENT_NAME.matcher(last.getFileName().toString());
+      if (!matcher.matches()) {
+        throw new IllegalStateException("Segment name does not match its own pattern: " + last);
+      }
+      openSegment(Long.parseLong(matcher.group(1)));
+      while (next < recordsPerSegment && isComplete(segment, next * RECORD_SIZE)) {
+        next++;
+      }
+    }
+    durable = position();
+
+    committer = new Thread(this::commitLoop, "MappedAuditJournal-committer");
+    committer.setDaemon(true);
+    committer.start();
+  }
+
+
+  /**
+   * Append a record and return its position. The record is not durable until {@link #awaitDurable(long, long)} has returned true for its position.
+   *
+   * @param auditRecord the record
+   *
+   * @return the record's position, or -1 if the journal is closed and the record was discarded
+   */
+  public synchronized long append(AuditRecord auditRecord) {
+    if (closed) {
+      log.log(Level.WARNING, "Audit journal in {0} is closed. Discarding record for {1}", directory, auditRecord.getBizMsgIdr());
+      return -1;
+    }
+    if (next == recordsPerSegment) {
+      rotate();
+    }
+    long position = position();
+    write(auditRecord);
+    return position;
+  }
+
+
+  /**
+   * Wait for the group commit which stores the record at a position.
+   *
+   * @param position      the record's position, as returned by {@link #append(AuditRecord)}
+   * @param timeoutMillis the longest time to wait
+   *
+   * @return true if the record is stored, false if the timeout expired first
+   */
+  public synchronized boolean awaitDurable(long position, long timeoutMillis) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    while (durable <= position) {
+      long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      if (remaining <= 0) {
+        return false;
+      }
+      wait(remaining);
+    }
+    return true;
+  }
+
+
+  /**
+   * Force all records to storage and stop appending. Records passed to this journal after it is closed are discarded.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    committer.interrupt();
+    flush();
+    channel.close();
+  }
+
+
+  private void commitLoop() {
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        Thread.sleep(commitIntervalMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      try {
+        flush();
+      } catch (UncheckedIOException e) {
+        log.log(Level.ERROR, "Failed to commit audit journal in " + directory, e);
+      }
+    }
+  }
+
+
+  /**
+   * Force all appended records to storage now, rather than waiting for the next group commit.
+   */
+  public void flush() {
+    synchronized (flushLock) {
+      long target;
+      synchronized (this) {
+        target = position();
+      }
+
+      // Forcing happens outside the journal's lock so that appends are not held up by the storage device. A full segment is only removed once it is stored,
+      // so a failure leaves it for the next attempt.
+      while (true) {
+        FullSegment full;
+        synchronized (this) {
+          full = fullSegments.peekFirst();
+        }
+        if (full == null) {
+          break;
+        }
+        full.segment.force();
+        synchronized (this) {
+          fullSegments.removeFirst();
+        }
+        try {
+          full.channel.close();
+        } catch (IOException e) {
+          log.log(Level.WARNING, "Failed to close a full audit segment in " + directory, e);
+        }
+      }
+
+      MappedByteBuffer toForce;
+      synchronized (this) {
+        toForce = dirty;
+        dirty = null;
+      }
+      if (toForce != null) {
+        try {
+          toForce.force();
+        } catch (UncheckedIOException e) {
+          synchronized (this) {
+            if (dirty == null && segment == toForce) {
+              dirty = toForce;
+            }
+          }
+          throw e;
+        }
+      }
+
+      synchronized (this) {
+        if (target > durable) {
+          durable = target;
+          notifyAll();
+        }
+      }
+    }
+  }
+
+
+  private void openSegment(long newSequence) throws IOException {
+    Path path = directory.resolve(String.format("audit-%016d.seg", newSequence));
+    FileChannel newChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      segment = newChannel.map(MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+    } catch (IOException e) {
+      newChannel.close();
+      throw e;
+    }
+    channel = newChannel;
+    sequence = newSequence;
+    next = 0;
+  }
+
+
+  /**
+   * Get the position of the next record. Positions count records from the start of the first segment, so they continue across segments and restarts.
+   *
+   * @return the position
+   */
+  private long position() {
+    return sequence * recordsPerSegment + next;
+  }
+
+
+  /**
+   * Append a record. This returns as soon as the record is in the mapped segment, and gives no guarantee that it is stored. Use {@link #append(AuditRecord)}
+   * and {@link #awaitDurable(long, long)} where that is needed.
+   *
+   * @param auditRecord the record
+   */
+  @Override
+  public void record(AuditRecord auditRecord) {
+    append(auditRecord);
+  }
+
+
+  /**
+   * Start a new segment. The full segment is handed to the committer, which forces it to storage and closes it.
+   */
+  private void rotate() {
+    FullSegment full = new FullSegment(channel, segment);
+    try {
+      openSegment(sequence + 1);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to start a new audit segment in " + directory, e);
+    }
+    fullSegments.addLast(full);
+    dirty = null;
+  }
+
+
+  private void write(AuditRecord auditRecord) {
+    int offset = next * RECORD_SIZE;
+    MappedByteBuffer buffer = segment;
+    buffer.put(offset + OFFSET_OPERATION, (byte) auditRecord.getOperation().ordinal());
+    buffer.put(offset + OFFSET_OUTCOME, (byte) auditRecord.getOutcome().ordinal());
+    buffer.putLong(offset + OFFSET_TIMESTAMP, auditRecord.getTimestampMicros());
+
+    // A slot may hold the remains of a record that was partly written before a crash, so every field that is read is written.
+    byte[] fingerprint = auditRecord.getCertificateFingerprint();
+    boolean hasFingerprint = fingerprint != null && fingerprint.length == 32;
+    buffer.put(offset + OFFSET_FLAGS, (byte) (hasFingerprint ? FLAG_FINGERPRINT : 0));
+    if (hasFingerprint) {
+      putBytes(buffer, offset + OFFSET_FINGERPRINT, fingerprint, fingerprint.length);
+    }
+
+    String bizMsgIdr = auditRecord.getBizMsgIdr();
+    if (bizMsgIdr != null) {
+      byte[] id = bizMsgIdr.getBytes(StandardCharsets.UTF_8);
+      int length = truncatedLength(id);
+      buffer.put(offset + OFFSET_ID_LENGTH, (byte) length);
+      putBytes(buffer, offset + OFFSET_ID, id, length);
+    } else {
+      buffer.put(offset + OFFSET_ID_LENGTH, (byte) NO_ID);
+    }
+
+    int count = 0;
+    for (byte[] digest : auditRecord.getReferenceDigests()) {
+      if (count == MAX_DIGESTS) {
+        break;
+      }
+      int length = Math.min(digest.length, MAX_DIGEST);
+      int position = offset + OFFSET_DIGESTS + count * (1 + MAX_DIGEST);
+      buffer.put(position, (byte) length);
+      putBytes(buffer, position + 1, digest, length);
+      count++;
+    }
+    buffer.put(offset + OFFSET_DIGEST_COUNT, (byte) count);
+
+    // The checksum lets a reader detect a record that was only partly stored before a crash. The magic number goes in last, so a slot that is still being
+    // written is usually skipped without calculating its checksum.
+    buffer.putInt(offset + OFFSET_CHECKSUM, checksum(buffer, offset));
+    buffer.putInt(offset, MAGIC);
+    next++;
+    dirty = buffer;
+  }
+
+}
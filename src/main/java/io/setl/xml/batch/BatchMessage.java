@@ -0,0 +1,60 @@
+package io.setl.xml.batch;
+
+import org.w3c.dom.Element;
+
+/**
+ * One AppHdr and Document pair taken from a batch file. Each pair has its own small DOM.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class BatchMessage {
+
+  /** The Document root element. */
+  private final Element document;
+
+  /** The AppHdr root element. */
+  private final Element header;
+
+  /** The position of this message within the batch, starting at zero. */
+  private final long index;
+
+  /** The approximate size of the Document in characters. */
+  private final long size;
+
+
+  /**
+   * New instance.
+   *
+   * @param index    the position of this message within the batch
+   * @param header   the AppHdr root element
+   * @param document the Document root element
+   * @param size     the approximate size of the Document in characters
+   */
+  public BatchMessage(long index, Element header, Element document, long size) {
+    this.index = index;
+    this.header = header;
+    this.document = document;
+    this.size = size;
+  }
+
+
+  public Element getDocument() {
+    return document;
+  }
+
+
+  public Element getHeader() {
+    return header;
+  }
+
+
+  public long getIndex() {
+    return index;
+  }
+
+
+  public long getSize() {
+    return size;
+  }
+
+}
@@ -0,0 +1,58 @@
+package io.setl.xml.batch;
+
+/**
+ * The result of verifying one message from a batch.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class BatchResult {
+
+  /** The message's business message identifier, if it could be read. */
+  private final String bizMsgIdr;
+
+  /** The error which prevented verification, if any. */
+  private final Exception error;
+
+  /** The position of the message within the batch. */
+  private final long index;
+
+  /** Was the signature valid?. */
+  private final boolean valid;
+
+
+  /**
+   * New instance.
+   *
+   * @param index     the position of the message within the batch
+   * @param bizMsgIdr the message's business message identifier, or null
+   * @param valid     was the signature valid?
+   * @param error     the error which prevented verification, or null
+   */
+  public BatchResult(long index, String bizMsgIdr, boolean valid, Exception error) {
+    this.index = index;
+    this.bizMsgIdr = bizMsgIdr;
+    this.valid = valid;
+    this.error = error;
+  }
+
+
+  public String getBizMsgIdr() {
+    return bizMsgIdr;
+  }
+
+
+  public Exception getError() {
+    return error;
+  }
+
+
+  public long getIndex() {
+    return index;
+  }
+
+
+  public boolean isValid() {
+    return valid;
+  }
+
+}
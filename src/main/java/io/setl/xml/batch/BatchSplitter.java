@@ -0,0 +1,263 @@
+package io.setl.xml.batch;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import io.setl.xml.AppHdrVersion;
+
+/**
+ * Splits a batch file containing many AppHdr and Document pairs into separate messages. The file is read once as a stream, and only the message currently being
+ * extracted is held in memory as a DOM.
+ *
+ * <p>The structure of the envelope around the messages is not significant. Every AppHdr element, in any supported version, starts a new message and the next
+ * element named "Document" completes it. Namespace declarations inherited from the envelope are copied onto the root of each extracted element, so that the
+ * extracted elements canonicalize exactly as they would have in place.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class BatchSplitter implements Closeable {
+
+  /** The name of the ISO-20022 document element. */
+  private static final String DOCUMENT = "Document";
+
+  /** The name of the ISO-20022 business application header element. */
+  private static final String HEADER = "AppHdr";
+
+  /** Factory for stream readers. Factories are thread-safe once configured. */
+  private static final XMLInputFactory INPUT_FACTORY;
+
+  /** Factory for DOM builders. */
+  private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY;
+
+
+  static {
+    XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+    inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+    inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    INPUT_FACTORY = inputFactory;
+
+    DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+    builderFactory.setNamespaceAware(true);
+    DOCUMENT_BUILDER_FACTORY = builderFactory;
+  }
+
+  /** Builder for the per-message DOMs. */
+  private final DocumentBuilder documentBuilder;
+
+  /** The namespace declarations currently in scope, from outermost to innermost. Each entry is a prefix and URI pair. */
+  private final List<String[]> namespaces = new ArrayList<>();
+
+  /** The number of namespace declarations made by each currently open element. */
+  private final List<Integer> namespaceCounts = new ArrayList<>();
+
+  /** The stream reader. */
+  private final XMLStreamReader reader;
+
+  /** The index of the next message. */
+  private long nextIndex = 0;
+
+
+  /**
+   * New instance.
+   *
+   * @param inputStream the batch file's content
+   */
+  public BatchSplitter(InputStream inputStream) throws XMLStreamException {
+    try {
+      documentBuilder = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+    } catch (ParserConfigurationException e) {
+      throw new InternalError("Default document builder configuration is not supported", e);
+    }
+    reader = INPUT_FACTORY.createXMLStreamReader(inputStream);
+  }
+
+
+  /**
+   * Close the stream reader. The underlying input stream is not closed.
+   */
+  @Override
+  public void close() {
+    try {
+      reader.close();
+    } catch (XMLStreamException e) {
+      // Nothing useful can be done about a failure to close.
+    }
+  }
+
+
+  /**
+   * Copy the current element, and everything within it, into a new DOM. On return the reader is positioned on the element's end tag.
+   *
+   * @param size single element array which receives the approximate size of the element in characters
+   *
+   * @return the new DOM's root element
+   */
+  private Element extract(long[] size) throws XMLStreamException {
+    Document document = documentBuilder.newDocument();
+    long characters = 0;
+
+    // Declare every namespace that is in scope, innermost declaration first so it takes precedence.
+    Element root = startElement(document);
+    HashSet<String> declared = new HashSet<>();
+    for (int i = 0; i < reader.getNamespaceCount(); i++) {
+      declared.add(prefixOf(reader.getNamespacePrefix(i)));
+    }
+    for (int i = namespaces.size() - 1; i >= 0; i--) {
+      String[] ns = namespaces.get(i);
+      if (declared.add(ns[0])) {
+        root.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, ns[0].isEmpty() ? "xmlns" : "xmlns:" + ns[0], ns[1]);
+      }
+    }
+    document.appendChild(root);
+
+    Node current = root;
+    int depth = 1;
+    while (depth > 0) {
+      switch (reader.next()) {
+        case XMLStreamConstants.START_ELEMENT:
+          Element element = startElement(document);
+          characters += reader.getLocalName().length();
+          current.appendChild(element);
+          current = element;
+          depth++;
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          current = current.getParentNode();
+          depth--;
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.SPACE:
+          current.appendChild(document.createTextNode(reader.getText()));
+          characters += reader.getTextLength();
+          break;
+        case XMLStreamConstants.CDATA:
+          current.appendChild(document.createCDATASection(reader.getText()));
+          characters += reader.getTextLength();
+          break;
+        case XMLStreamConstants.COMMENT:
+          current.appendChild(document.createComment(reader.getText()));
+          break;
+        case XMLStreamConstants.PROCESSING_INSTRUCTION:
+          current.appendChild(document.createProcessingInstruction(reader.getPITarget(), reader.getPIData()));
+          break;
+        default:
+          // Other events cannot occur within an element.
+          break;
+      }
+    }
+
+    size[0] = characters;
+    return root;
+  }
+
+
+  /**
+   * Get the next message from the batch.
+   *
+   * @return the next message, or null if there are no more
+   *
+   * @throws XMLStreamException if the batch cannot be read, or a Document is found without a preceding AppHdr
+   */
+  public BatchMessage next() throws XMLStreamException {
+    Element header = null;
+    long[] size = new long[1];
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        popNamespaces();
+        continue;
+      }
+      if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+
+      String localName = reader.getLocalName();
+      if (HEADER.equals(localName) && AppHdrVersion.forNamespace(reader.getNamespaceURI()) != null) {
+        if (header != null) {
+          throw new XMLStreamException("AppHdr without a Document", reader.getLocation());
+        }
+        header = extract(size);
+      } else if (DOCUMENT.equals(localName)) {
+        if (header == null) {
+          throw new XMLStreamException("Document without a preceding AppHdr", reader.getLocation());
+        }
+        Element document = extract(size);
+        return new BatchMessage(nextIndex++, header, document, size[0]);
+      } else {
+        // Part of the envelope, so track its namespace declarations.
+        pushNamespaces();
+      }
+    }
+
+    if (header != null) {
+      throw new XMLStreamException("AppHdr without a Document at end of batch");
+    }
+    return null;
+  }
+
+
+  private void popNamespaces() {
+    int count = namespaceCounts.remove(namespaceCounts.size() - 1);
+    for (int i = 0; i < count; i++) {
+      namespaces.remove(namespaces.size() - 1);
+    }
+  }
+
+
+  private static String prefixOf(String prefix) {
+    return (prefix != null) ? prefix : "";
+  }
+
+
+  private void pushNamespaces() {
+    int count = reader.getNamespaceCount();
+    for (int i = 0; i < count; i++) {
+      namespaces.add(new String[]{prefixOf(reader.getNamespacePrefix(i)), prefixOf(reader.getNamespaceURI(i))});
+    }
+    namespaceCounts.add(count);
+  }
+
+
+  /**
+   * Create a DOM element from the reader's current start tag, including its namespace declarations and attributes.
+   *
+   * @param document the DOM which will hold the element
+   *
+   * @return the element
+   */
+  private Element startElement(Document document) {
+    String prefix = prefixOf(reader.getPrefix());
+    String namespace = reader.getNamespaceURI();
+    Element element = document.createElementNS(namespace, prefix.isEmpty() ? reader.getLocalName() : prefix + ":" + reader.getLocalName());
+
+    for (int i = 0; i < reader.getNamespaceCount(); i++) {
+      String nsPrefix = prefixOf(reader.getNamespacePrefix(i));
+      element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, nsPrefix.isEmpty() ? "xmlns" : "xmlns:" + nsPrefix, prefixOf(reader.getNamespaceURI(i)));
+    }
+
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      String attrPrefix = prefixOf(reader.getAttributePrefix(i));
+      String attrNamespace = reader.getAttributeNamespace(i);
+      String qName = attrPrefix.isEmpty() ? reader.getAttributeLocalName(i) : attrPrefix + ":" + reader.getAttributeLocalName(i);
+      element.setAttributeNS((attrNamespace == null || attrNamespace.isEmpty()) ? null : attrNamespace, qName, reader.getAttributeValue(i));
+    }
+    return element;
+  }
+
+}
@@ -0,0 +1,238 @@
+package io.setl.xml.batch;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import javax.xml.stream.XMLStreamException;
+
+import org.w3c.dom.Node;
+
+import io.setl.xml.AppHdrVersion;
+import io.setl.xml.IsoSignerVerifier;
+import io.setl.xml.XPathUtil;
+
+/**
+ * Verifies every message in a batch file. The file is split as it is read, and the messages are verified in parallel. The number of messages held in memory is
+ * bounded, so a batch of any size is verified in constant memory. Messages may be divided into lanes by Document size, so that a few very large messages do
+ * not hold up the rest of the batch.
+ *
+ * <p>Each lane has its own in-flight budget. When a message's lane has used up its budget, the message is parked and reading continues, so messages for other
+ * lanes are not held up. Reading only waits when the total number of messages in memory, including parked ones, reaches the maximum.</p>
+ *
+ * <p>Every message read from a batch receives exactly one result. If the verifier is closed while a batch is being verified, the messages which have not
+ * started receive a failed result whose error is a {@link CancellationException}.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class BatchVerifier implements Closeable {
+
+  /** Counts the messages of one batch which have been submitted and have not yet received their result. */
+  private static class Outstanding {
+
+    /** The number of messages. */
+    private long count;
+
+
+    synchronized void add() {
+      count++;
+    }
+
+
+    /**
+     * Wait until every message has received its result. If this thread is interrupted, waiting continues and the interrupt is restored afterwards.
+     */
+    synchronized void awaitUninterruptibly() {
+      boolean interrupted = false;
+      while (count > 0) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+
+    synchronized void done() {
+      count--;
+      if (count == 0) {
+        notifyAll();
+      }
+    }
+
+  }
+
+
+  /** The verification of one message. It finishes exactly once, either by running or by being discarded when the verifier is closed. */
+  private class VerifyTask implements Runnable {
+
+    /** The consumer of the result. */
+    final Consumer<BatchResult> consumer;
+
+    /** The permits for messages in memory. */
+    final Semaphore inFlight;
+
+    /** The message. */
+    final BatchMessage message;
+
+    /** The batch's outstanding messages. */
+    final Outstanding outstanding;
+
+
+    VerifyTask(BatchMessage message, Consumer<BatchResult> consumer, Semaphore inFlight, Outstanding outstanding) {
+      this.message = message;
+      this.consumer = consumer;
+      this.inFlight = inFlight;
+      this.outstanding = outstanding;
+    }
+
+
+    /**
+     * Give the message a failed result without verifying it.
+     */
+    void discard() {
+      try {
+        consumer.accept(new BatchResult(message.getIndex(), null, false, new CancellationException("The batch verifier was closed")));
+      } finally {
+        inFlight.release();
+        outstanding.done();
+      }
+    }
+
+
+    @Override
+    public void run() {
+      try {
+        consumer.accept(verify(message));
+      } finally {
+        inFlight.release();
+        outstanding.done();
+      }
+    }
+
+  }
+
+
+
+  /** The maximum number of messages that may be in memory at once. */
+  private final int maxInFlight;
+
+  /** The shared signer-verifier. */
+  private final IsoSignerVerifier verifier;
+
+  /** The threads which verify the messages. */
+  private final LaneScheduler workers;
+
+
+  /**
+   * New instance which verifies messages of all sizes in a single lane.
+   *
+   * @param verifier    the shared signer-verifier
+   * @param parallelism the number of messages to verify at once
+   * @param maxInFlight the maximum number of messages that may be in memory at once. Must be at least the parallelism.
+   */
+  public BatchVerifier(IsoSignerVerifier verifier, int parallelism, int maxInFlight) {
+    this(verifier, List.of(new Lane("all", Long.MAX_VALUE, parallelism, maxInFlight)), false, maxInFlight);
+  }
+
+
+  /**
+   * New instance which verifies messages in lanes according to their Document size, so that large messages do not delay small ones.
+   *
+   * @param verifier    the shared signer-verifier
+   * @param lanes       the lanes
+   * @param stealing    if true, workers with nothing to do take messages from smaller lanes
+   * @param maxInFlight the maximum number of messages that may be in memory at once, including parked messages. Must be at least the total concurrency of
+   *                    the lanes, and should exceed the budgets of the large message lanes so that parked large messages do not stop reading.
+   */
+  public BatchVerifier(IsoSignerVerifier verifier, List<Lane> lanes, boolean stealing, int maxInFlight) {
+    int parallelism = lanes.stream().mapToInt(Lane::getConcurrency).sum();
+    if (maxInFlight < parallelism) {
+      throw new IllegalArgumentException("Maximum in-flight messages (" + maxInFlight + ") is less than the parallelism (" + parallelism + ")");
+    }
+    this.verifier = verifier;
+    this.maxInFlight = maxInFlight;
+    workers = new LaneScheduler(lanes, stealing);
+  }
+
+
+  /**
+   * Stop the worker threads. Messages which are being verified are interrupted. Messages which have not started are given a failed result, and any batch that
+   * is being verified stops reading.
+   */
+  @Override
+  public void close() {
+    for (Runnable task : workers.shutdownNow()) {
+      ((VerifyTask) task).discard();
+    }
+  }
+
+
+  /**
+   * Verify one message.
+   *
+   * @param message the message
+   *
+   * @return the result
+   */
+  BatchResult verify(BatchMessage message) {
+    String bizMsgIdr = null;
+    try {
+      Node idNode = XPathUtil.findNode(AppHdrVersion.of(message.getHeader()).path("BizMsgIdr"), message.getHeader());
+      bizMsgIdr = (idNode != null) ? idNode.getTextContent() : null;
+      boolean valid = verifier.validate(message.getHeader(), message.getDocument());
+      return new BatchResult(message.getIndex(), bizMsgIdr, valid, null);
+    } catch (Exception e) {
+      return new BatchResult(message.getIndex(), bizMsgIdr, false, e);
+    }
+  }
+
+
+  /**
+   * Verify every message in a batch. The results are passed to the consumer as each message completes, so they are not in batch order. The consumer is called
+   * from the worker threads and must be thread-safe. This method does not return or throw until every message it has read has received its result.
+   *
+   * @param inputStream the batch file's content
+   * @param consumer    the consumer of the results
+   *
+   * @return the number of messages in the batch
+   *
+   * @throws XMLStreamException         if the batch is not well-formed
+   * @throws RejectedExecutionException if this verifier has been closed
+   */
+  public long verify(InputStream inputStream, Consumer<BatchResult> consumer) throws XMLStreamException, InterruptedException {
+    Semaphore inFlight = new Semaphore(maxInFlight);
+    Outstanding outstanding = new Outstanding();
+    long count = 0;
+    try (BatchSplitter splitter = new BatchSplitter(inputStream)) {
+      // Acquire a permit before reading each message, so reading waits for the workers. Each task releases the permit acquired before its message was read.
+      inFlight.acquire();
+      BatchMessage message;
+      while ((message = splitter.next()) != null) {
+        VerifyTask task = new VerifyTask(message, consumer, inFlight, outstanding);
+        outstanding.add();
+        try {
+          workers.submit(message.getSize(), task);
+        } catch (RejectedExecutionException e) {
+          // Closed while reading. The message still receives its result.
+          task.discard();
+          throw e;
+        }
+        count++;
+        inFlight.acquire();
+      }
+    } finally {
+      // Whether the batch was read to the end or not, wait for every submitted message to receive its result.
+      outstanding.awaitUninterruptibly();
+    }
+    return count;
+  }
+
+}
@@ -0,0 +1,75 @@
+package io.setl.xml.batch;
+
+/**
+ * A scheduling lane for messages up to a given size. Each lane has its own worker threads, its own queue and its own in-flight budget, so large messages
+ * cannot hold up small ones.
+ *
+ * <p>A lane's in-flight budget is its concurrency plus its queue bound: the number of its messages that may be running or waiting to run at once. Messages
+ * submitted to a lane whose budget is used up are parked until one of the lane's messages completes.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class Lane {
+
+  /** The number of worker threads dedicated to this lane. */
+  private final int concurrency;
+
+  /** The largest message size, in characters, that is routed to this lane. */
+  private final long maxSize;
+
+  /** The name of this lane, used to name its threads. */
+  private final String name;
+
+  /** The number of messages, beyond its concurrency, that this lane may hold waiting to run. */
+  private final int queueBound;
+
+
+  /**
+   * New instance.
+   *
+   * @param name        the name of this lane, used to name its threads
+   * @param maxSize     the largest message size, in characters, that is routed to this lane
+   * @param concurrency the number of worker threads dedicated to this lane
+   * @param queueBound  the number of messages, beyond its concurrency, that this lane may hold waiting to run
+   */
+  public Lane(String name, long maxSize, int concurrency, int queueBound) {
+    if (maxSize < 0 || concurrency <= 0 || queueBound <= 0) {
+      throw new IllegalArgumentException("Invalid lane \"" + name + "\": maxSize=" + maxSize + ", concurrency=" + concurrency + ", queueBound=" + queueBound);
+    }
+    this.name = name;
+    this.maxSize = maxSize;
+    this.concurrency = concurrency;
+    this.queueBound = queueBound;
+  }
+
+
+  /**
+   * Get the in-flight budget of this lane: the number of its messages that may be running or waiting to run at once.
+   *
+   * @return the budget
+   */
+  public int getBudget() {
+    return concurrency + queueBound;
+  }
+
+
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+
+  public String getName() {
+    return name;
+  }
+
+
+  public int getQueueBound() {
+    return queueBound;
+  }
+
+}
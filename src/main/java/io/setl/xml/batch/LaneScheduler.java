@@ -0,0 +1,295 @@
+package io.setl.xml.batch;
+
+import java.io.Closeable;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs tasks on worker threads that are divided into lanes by message size. Each lane has its own workers, its own queue and its own in-flight budget, so a
+ * burst of large messages occupies only the large message lanes, and small messages continue to be processed at their usual latency.
+ *
+ * <p>A message is routed to the lane with the smallest maximum size that is at least the message's size. Messages larger than every lane's maximum go to
+ * the lane with the largest maximum.</p>
+ *
+ * <p>Submitting a task never blocks. A lane admits tasks to its queue until its {@linkplain Lane#getBudget() budget} of running and waiting tasks is used up.
+ * Further tasks for the lane are parked, and each time one of the lane's tasks completes, its oldest parked task is admitted. The caller is responsible for
+ * bounding the number of tasks it submits.</p>
+ *
+ * <p>If stealing is enabled, a worker whose own queue is empty takes work from the queues of smaller lanes, starting with the smallest. Workers never take
+ * work from larger lanes, so small message lanes are never occupied by large messages. Parked tasks are not stolen.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class LaneScheduler implements Closeable {
+
+  /** A task and the lane it was submitted to. */
+  private static class Task {
+
+    /** The lane. */
+    final int lane;
+
+    /** The task. */
+    final Runnable runnable;
+
+
+    Task(int lane, Runnable runnable) {
+      this.lane = lane;
+      this.runnable = runnable;
+    }
+
+  }
+
+
+  /** The logger. */
+  private static final Logger log = System.getLogger(LaneScheduler.class.getName());
+
+  /** The number of each lane's tasks that have been admitted to its queue and not yet completed. */
+  private final int[] admitted;
+
+  /** The lanes, in order of increasing maximum size. */
+  private final Lane[] lanes;
+
+  /** Lock which guards the queues. */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /** The tasks of each lane that are waiting for the lane's budget. */
+  private final List<ArrayDeque<Task>> parked;
+
+  /** The queue of each lane. */
+  private final List<ArrayDeque<Task>> queues;
+
+  /** Can workers take work from the queues of smaller lanes?. */
+  private final boolean stealing;
+
+  /** The worker threads. */
+  private final List<Thread> threads = new ArrayList<>();
+
+  /** Condition signalled when there is work that a lane's workers can take. */
+  private final Condition[] workAvailable;
+
+  /** Has this scheduler been closed?. */
+  private boolean closed;
+
+
+  /**
+   * New instance. The worker threads are started immediately.
+   *
+   * @param lanes    the lanes, in any order
+   * @param stealing if true, workers with nothing to do take work from smaller lanes
+   */
+  public LaneScheduler(List<Lane> lanes, boolean stealing) {
+    if (lanes.isEmpty()) {
+      throw new IllegalArgumentException("At least one lane is required");
+    }
+    this.lanes = lanes.toArray(new Lane[0]);
+    Arrays.sort(this.lanes, Comparator.comparingLong(Lane::getMaxSize));
+    this.stealing = stealing;
+
+    admitted = new int[this.lanes.length];
+    parked = new ArrayList<>(this.lanes.length);
+    queues = new ArrayList<>(this.lanes.length);
+    workAvailable = new Condition[this.lanes.length];
+    for (int i = 0; i < this.lanes.length; i++) {
+      parked.add(new ArrayDeque<>());
+      queues.add(new ArrayDeque<>(this.lanes[i].getBudget()));
+      workAvailable[i] = lock.newCondition();
+    }
+
+    for (int i = 0; i < this.lanes.length; i++) {
+      int lane = i;
+      for (int j = 0; j < this.lanes[i].getConcurrency(); j++) {
+        String threadName = "LaneScheduler-" + this.lanes[i].getName() + "-" + j;
+        Thread thread = new Thread(() -> work(lane), threadName);
+        thread.setDaemon(true);
+        threads.add(thread);
+      }
+    }
+    threads.forEach(Thread::start);
+  }
+
+
+  /**
+   * Stop the worker threads. Queued and parked tasks are discarded, and tasks which are running are interrupted.
+   */
+  @Override
+  public void close() {
+    shutdownNow();
+  }
+
+
+  /**
+   * Add a task to its lane's queue and wake the workers that can run it. The caller must hold the lock.
+   *
+   * @param task the task
+   */
+  private void admit(Task task) {
+    int lane = task.lane;
+    admitted[lane]++;
+    queues.get(lane).addLast(task);
+
+    // Wake a worker of this lane, and of each larger lane that could steal the task.
+    workAvailable[lane].signal();
+    if (stealing) {
+      for (int i = lane + 1; i < lanes.length; i++) {
+        workAvailable[i].signal();
+      }
+    }
+  }
+
+
+  /**
+   * Record that a task has completed, and admit the oldest parked task of its lane in its place.
+   *
+   * @param lane the task's lane
+   */
+  private void complete(int lane) {
+    lock.lock();
+    try {
+      admitted[lane]--;
+      Task next = parked.get(lane).pollFirst();
+      if (next != null) {
+        admit(next);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  /**
+   * Get the lane for a message size.
+   *
+   * @param size the message size
+   *
+   * @return the index of the lane
+   */
+  private int laneFor(long size) {
+    for (int i = 0; i < lanes.length - 1; i++) {
+      if (size <= lanes[i].getMaxSize()) {
+        return i;
+      }
+    }
+    return lanes.length - 1;
+  }
+
+
+  /**
+   * Stop the worker threads. Tasks which are running are interrupted. Queued and parked tasks are discarded and returned, so that the caller can finish them
+   * in some other way.
+   *
+   * @return the discarded tasks, or an empty list if this scheduler was already closed
+   */
+  public List<Runnable> shutdownNow() {
+    ArrayList<Runnable> discarded = new ArrayList<>();
+    lock.lock();
+    try {
+      if (!closed) {
+        closed = true;
+        for (int i = 0; i < lanes.length; i++) {
+          queues.get(i).forEach(task -> discarded.add(task.runnable));
+          queues.get(i).clear();
+          parked.get(i).forEach(task -> discarded.add(task.runnable));
+          parked.get(i).clear();
+          workAvailable[i].signalAll();
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+    threads.forEach(Thread::interrupt);
+    return discarded;
+  }
+
+
+  /**
+   * Submit a task for a message. This never waits: if the message's lane has used up its budget, the task is parked until one of the lane's tasks completes.
+   *
+   * @param size the size of the message, in characters
+   * @param task the task
+   *
+   * @return true if the task was admitted to its lane's queue, false if it was parked
+   *
+   * @throws RejectedExecutionException if this scheduler has been closed
+   */
+  public boolean submit(long size, Runnable task) {
+    int lane = laneFor(size);
+    lock.lock();
+    try {
+      if (closed) {
+        throw new RejectedExecutionException("Scheduler has been closed");
+      }
+      if (admitted[lane] < lanes[lane].getBudget()) {
+        admit(new Task(lane, task));
+        return true;
+      }
+      parked.get(lane).addLast(new Task(lane, task));
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  /**
+   * Take the next task for a lane's worker, waiting until there is one.
+   *
+   * @param lane the worker's lane
+   *
+   * @return the task, or null if this scheduler has been closed
+   */
+  private Task take(int lane) throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (!closed) {
+        Task task = queues.get(lane).pollFirst();
+        if (task == null && stealing) {
+          for (int i = 0; i < lane && task == null; i++) {
+            task = queues.get(i).pollFirst();
+          }
+        }
+        if (task != null) {
+          return task;
+        }
+        workAvailable[lane].await();
+      }
+      return null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  private void work(int lane) {
+    while (true) {
+      Task task;
+      try {
+        // A task may have left this thread interrupted. Only closing stops a worker, and take() returns null once closed.
+        Thread.interrupted();
+        task = take(lane);
+      } catch (InterruptedException e) {
+        continue;
+      }
+      if (task == null) {
+        return;
+      }
+
+      // A worker that died would take its lane's thread and budget with it, so even an Error only fails its own task.
+      try {
+        task.runnable.run();
+      } catch (Throwable t) {
+        log.log(Level.ERROR, "Task failed in lane " + lanes[task.lane].getName(), t);
+      } finally {
+        complete(task.lane);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,300 @@
+package io.setl.xml.keys;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.GeneralSecurityException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.xml.crypto.dsig.XMLSignatureException;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import io.setl.xml.AppHdrVersion;
+import io.setl.xml.SigningKey;
+import io.setl.xml.XMLSignatureMethod;
+import io.setl.xml.XPathUtil;
+
+/**
+ * Holds the signing keys for every sender we sign on behalf of. The keys are loaded once from their sources and indexed by sender identifier. When watching is
+ * enabled, the sources are reloaded whenever their files change and the whole key set is replaced atomically, so selecting a key never touches a key store
+ * and never blocks.
+ *
+ * <p>The sender identifier for a message is taken from the AppHdr's "Fr" element. The first of these that is present is used:</p>
+ * <ol>
+ *   <li>Fr/OrgId/Id/OrgId/AnyBIC, or Fr/OrgId/Id/OrgId/BICOrBEI for head.001.001.01</li>
+ *   <li>Fr/OrgId/Id/OrgId/Othr/Id</li>
+ *   <li>Fr/FIId/FinInstnId/BICFI</li>
+ *   <li>Fr/OrgId/Nm</li>
+ * </ol>
+ *
+ * <p>Sender identifiers are matched case-insensitively, as some key store types do not preserve the case of aliases.</p>
+ *
+ * <p>Each key is used with the default signature method for its algorithm, unless a signature method has been configured for its sender. A sender whose
+ * configured method cannot be used with its key is skipped with an error.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class KeyManager implements Closeable {
+
+  /** How long to wait for a burst of file changes to finish before reloading. */
+  private static final long SETTLE_MILLIS = 250;
+
+  /** X-Paths to the sender identifier for each AppHdr version, in order of preference. */
+  private static final Map<AppHdrVersion, List<String>> XPATH_SENDER;
+
+  /** The logger. */
+  private static final Logger log = System.getLogger(KeyManager.class.getName());
+
+
+  /**
+   * Normalize a sender identifier for use as an index key.
+   *
+   * @param sender the sender identifier
+   *
+   * @return the normalized identifier
+   */
+  private static String normalize(String sender) {
+    return sender.trim().toLowerCase(Locale.ROOT);
+  }
+
+
+  /**
+   * Get the sender identifier from an AppHdr.
+   *
+   * @param appHdr the AppHdr root node
+   *
+   * @return the sender identifier, or null if there is none
+   *
+   * @throws XMLSignatureException if the AppHdr version is not supported
+   */
+  public static String senderOf(Node appHdr) throws XMLSignatureException {
+    for (String expression : XPATH_SENDER.get(AppHdrVersion.of(appHdr))) {
+      NodeList nodes = XPathUtil.findNodes(expression, appHdr);
+      if (nodes.getLength() > 0) {
+        String text = nodes.item(0).getTextContent();
+        if (text != null && !text.isBlank()) {
+          return text.trim();
+        }
+      }
+    }
+    return null;
+  }
+
+
+  static {
+    EnumMap<AppHdrVersion, List<String>> map = new EnumMap<>(AppHdrVersion.class);
+    for (AppHdrVersion version : AppHdrVersion.values()) {
+      // Version 1 identifies an organisation by "BICOrBEI". Later versions renamed it to "AnyBIC".
+      String bic = (version == AppHdrVersion.HEAD_001_001_01) ? "BICOrBEI" : "AnyBIC";
+      map.put(version, List.of(
+          version.path("Fr", "OrgId", "Id", "OrgId", bic),
+          version.path("Fr", "OrgId", "Id", "OrgId", "Othr", "Id"),
+          version.path("Fr", "FIId", "FinInstnId", "BICFI"),
+          version.path("Fr", "OrgId", "Nm")
+      ));
+    }
+    XPATH_SENDER = map;
+  }
+
+  /** The signature method configured for each sender, indexed by normalized sender identifier. */
+  private final Map<String, XMLSignatureMethod> signatureMethods;
+
+  /** The sources of keys. Where a sender appears in more than one source, the last source wins. */
+  private final List<KeySource> sources;
+
+  /** The current key set, indexed by normalized sender identifier. Always replaced, never modified. */
+  private volatile Map<String, SigningKey> keys = Map.of();
+
+  /** Thread that watches the sources for changes. */
+  private Thread watcher;
+
+  /** Watch service used by the watcher thread. */
+  private WatchService watchService;
+
+
+  /**
+   * New instance. The keys are loaded immediately.
+   *
+   * @param sources the sources of keys
+   */
+  public KeyManager(List<KeySource> sources) throws IOException, GeneralSecurityException {
+    this(sources, Map.of());
+  }
+
+
+  /**
+   * New instance. The keys are loaded immediately.
+   *
+   * @param sources          the sources of keys
+   * @param signatureMethods the signature method to use for each sender. Senders which are not present use the default method for their key.
+   */
+  public KeyManager(List<KeySource> sources, Map<String, XMLSignatureMethod> signatureMethods) throws IOException, GeneralSecurityException {
+    this.sources = List.copyOf(sources);
+    HashMap<String, XMLSignatureMethod> methods = new HashMap<>();
+    signatureMethods.forEach((sender, method) -> methods.put(normalize(sender), Objects.requireNonNull(method)));
+    this.signatureMethods = Map.copyOf(methods);
+    reload();
+  }
+
+
+  /**
+   * Stop watching for changes.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (watchService != null) {
+      watchService.close();
+      watchService = null;
+      watcher.interrupt();
+      watcher = null;
+    }
+  }
+
+
+  /**
+   * Get the key for a sender.
+   *
+   * @param sender the sender identifier
+   *
+   * @return the key, or null if there is none
+   */
+  public SigningKey getKey(String sender) {
+    return (sender != null) ? keys.get(normalize(sender)) : null;
+  }
+
+
+  /**
+   * Get the identifiers of all the senders we currently have keys for.
+   *
+   * @return the normalized sender identifiers
+   */
+  public Set<String> getSenders() {
+    return keys.keySet();
+  }
+
+
+  /**
+   * Reload all the key sources and replace the current key set. If any source fails to load, the current key set is retained.
+   */
+  public synchronized void reload() throws IOException, GeneralSecurityException {
+    HashMap<String, SigningKey> newKeys = new HashMap<>();
+    for (KeySource source : sources) {
+      for (Map.Entry<String, SigningKey> e : source.load().entrySet()) {
+        if (newKeys.put(normalize(e.getKey()), e.getValue()) != null) {
+          log.log(Level.WARNING, "Sender \"{0}\" has more than one key. The last one loaded will be used.", e.getKey());
+        }
+      }
+    }
+
+    for (Map.Entry<String, XMLSignatureMethod> e : signatureMethods.entrySet()) {
+      SigningKey key = newKeys.get(e.getKey());
+      if (key != null) {
+        try {
+          newKeys.put(e.getKey(), key.withSignatureMethod(e.getValue()));
+        } catch (IllegalArgumentException iae) {
+          log.log(Level.ERROR, "Sender \"{0}\" is configured to use {1}, which cannot be used with its {2} key. The sender has been skipped.",
+              e.getKey(), e.getValue(), key.getPrivateKey().getAlgorithm());
+          newKeys.remove(e.getKey());
+        }
+      }
+    }
+    keys = Map.copyOf(newKeys);
+  }
+
+
+  /**
+   * Select the key to sign a message with, using the sender identified in its AppHdr.
+   *
+   * @param appHdr the AppHdr root node
+   *
+   * @return the key
+   *
+   * @throws XMLSignatureException if the AppHdr has no sender, or we do not have a key for the sender
+   */
+  public SigningKey selectKey(Node appHdr) throws XMLSignatureException {
+    String sender = senderOf(appHdr);
+    if (sender == null) {
+      throw new XMLSignatureException("The AppHdr does not identify its sender.");
+    }
+    SigningKey key = getKey(sender);
+    if (key == null) {
+      throw new XMLSignatureException("No signing key is available for sender \"" + sender + "\".");
+    }
+    return key;
+  }
+
+
+  /**
+   * Start watching the key sources for changes. Changes are processed on a daemon thread.
+   */
+  public synchronized void startWatching() throws IOException {
+    if (watchService != null) {
+      return;
+    }
+
+    Set<Path> directories = new HashSet<>();
+    for (KeySource source : sources) {
+      directories.add(source.watchedDirectory());
+    }
+    WatchService service = FileSystems.getDefault().newWatchService();
+    try {
+      for (Path directory : directories) {
+        directory.register(service, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+      }
+    } catch (IOException e) {
+      service.close();
+      throw e;
+    }
+
+    watchService = service;
+    watcher = new Thread(() -> watch(service), "KeyManager-watcher");
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+
+  private void watch(WatchService service) {
+    try {
+      while (true) {
+        WatchKey key = service.take();
+        key.pollEvents();
+        key.reset();
+
+        // Files are often updated in several steps, so wait for the changes to settle before reloading.
+        while ((key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+          key.pollEvents();
+          key.reset();
+        }
+
+        try {
+          reload();
+          log.log(Level.INFO, "Reloaded signing keys for {0} senders", keys.size());
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+          log.log(Level.ERROR, "Failed to reload signing keys. The previous keys remain in use.", e);
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // Watching has been stopped.
+    }
+  }
+
+}
@@ -0,0 +1,32 @@
+package io.setl.xml.keys;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Map;
+
+import io.setl.xml.SigningKey;
+
+/**
+ * A source of signing keys, such as a key store file or a directory of PEM files.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public interface KeySource {
+
+  /**
+   * Load all the keys from this source.
+   *
+   * @return the keys, indexed by the sender identifier they sign for
+   */
+  Map<String, SigningKey> load() throws IOException, GeneralSecurityException;
+
+
+  /**
+   * Get the directory that must be watched for changes to this source.
+   *
+   * @return the directory
+   */
+  Path watchedDirectory();
+
+}
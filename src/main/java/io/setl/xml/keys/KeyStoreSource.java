@@ -0,0 +1,88 @@
+package io.setl.xml.keys;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.setl.xml.SigningKey;
+
+/**
+ * A key source backed by a key store file. Every private key entry with an X.509 certificate is loaded, and the entry's alias is the sender identifier it
+ * signs for.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class KeyStoreSource implements KeySource {
+
+  /** The password for the key store and its keys. */
+  private final char[] password;
+
+  /** The key store file. */
+  private final Path path;
+
+  /** The key store type, such as "JKS" or "PKCS12". */
+  private final String type;
+
+
+  /**
+   * New instance.
+   *
+   * @param path     the key store file
+   * @param type     the key store type, such as "JKS" or "PKCS12"
+   * @param password the password for the key store and its keys
+   */
+  public KeyStoreSource(Path path, String type, char[] password) {
+    this.path = path.toAbsolutePath();
+    this.type = type;
+    this.password = password.clone();
+  }
+
+
+  @Override
+  public Map<String, SigningKey> load() throws IOException, GeneralSecurityException {
+    KeyStore keyStore = KeyStore.getInstance(type);
+    try (InputStream inputStream = Files.newInputStream(path)) {
+      keyStore.load(inputStream, password);
+    }
+
+    HashMap<String, SigningKey> keys = new HashMap<>();
+    for (String alias : Collections.list(keyStore.aliases())) {
+      if (!keyStore.isKeyEntry(alias)) {
+        continue;
+      }
+      Key key = keyStore.getKey(alias, password);
+      Certificate certificate = keyStore.getCertificate(alias);
+      if (key instanceof PrivateKey && certificate instanceof X509Certificate) {
+        keys.put(alias, new SigningKey((PrivateKey) key, (X509Certificate) certificate));
+      }
+    }
+    return keys;
+  }
+
+
+  /**
+   * Get the key store file.
+   *
+   * @return the file
+   */
+  public Path getPath() {
+    return path;
+  }
+
+
+  @Override
+  public Path watchedDirectory() {
+    return path.getParent();
+  }
+
+}
@@ -0,0 +1,178 @@
+package io.setl.xml.keys;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.setl.xml.SigningKey;
+
+/**
+ * A key source backed by a directory of PEM files. For every sender there must be a "&lt;sender&gt;.key" file holding an unencrypted PKCS#8 private key and a
+ * "&lt;sender&gt;.crt" file holding the matching X.509 certificate. A pair which cannot be read or decoded, or whose private key does not match its
+ * certificate's public key, is skipped with a warning, so one bad pair does not stop the other senders' keys from loading.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class PemDirectorySource implements KeySource {
+
+  /** Key algorithms to try when decoding a PKCS#8 private key. */
+  private static final String[] KEY_ALGORITHMS = {"RSA", "EC", "DSA"};
+
+  /** Value signed to check that a private key matches a certificate. */
+  private static final byte[] TEST_VALUE = "PemDirectorySource key pair check".getBytes(StandardCharsets.US_ASCII);
+
+  /** The logger. */
+  private static final Logger log = System.getLogger(PemDirectorySource.class.getName());
+
+
+  /**
+   * Decode a PKCS#8 private key from its PEM representation.
+   *
+   * @param pem the PEM text
+   *
+   * @return the private key
+   */
+  static PrivateKey decodePrivateKey(String pem) throws GeneralSecurityException {
+    StringBuilder base64 = new StringBuilder();
+    for (String line : pem.split("\\R")) {
+      if (!line.startsWith("-----")) {
+        base64.append(line.trim());
+      }
+    }
+    PKCS8EncodedKeySpec spec;
+    try {
+      spec = new PKCS8EncodedKeySpec(Base64.getDecoder().decode(base64.toString()));
+    } catch (IllegalArgumentException e) {
+      throw new InvalidKeySpecException("Invalid Base64 in PEM private key", e);
+    }
+
+    InvalidKeySpecException failure = new InvalidKeySpecException("Unsupported private key algorithm");
+    for (String algorithm : KEY_ALGORITHMS) {
+      try {
+        return KeyFactory.getInstance(algorithm).generatePrivate(spec);
+      } catch (InvalidKeySpecException e) {
+        failure.addSuppressed(e);
+      }
+    }
+    throw failure;
+  }
+
+
+  /**
+   * Check that a private key matches a public key, by signing a test value with the private key and verifying it with the public key.
+   *
+   * @param privateKey the private key
+   * @param publicKey  the public key
+   *
+   * @return true if the keys are a pair
+   */
+  static boolean isPair(PrivateKey privateKey, PublicKey publicKey) throws GeneralSecurityException {
+    if (!privateKey.getAlgorithm().equals(publicKey.getAlgorithm())) {
+      return false;
+    }
+    String algorithm;
+    switch (privateKey.getAlgorithm()) {
+      case "RSA":
+        algorithm = "SHA256withRSA";
+        break;
+      case "EC":
+        algorithm = "SHA256withECDSA";
+        break;
+      case "DSA":
+        algorithm = "SHA256withDSA";
+        break;
+      default:
+        throw new InvalidKeySpecException("Unsupported private key algorithm: " + privateKey.getAlgorithm());
+    }
+
+    Signature signer = Signature.getInstance(algorithm);
+    signer.initSign(privateKey);
+    signer.update(TEST_VALUE);
+    byte[] signature = signer.sign();
+
+    Signature verifier = Signature.getInstance(algorithm);
+    try {
+      verifier.initVerify(publicKey);
+      verifier.update(TEST_VALUE);
+      return verifier.verify(signature);
+    } catch (GeneralSecurityException e) {
+      // For example, an EC key on a different curve
+      return false;
+    }
+  }
+
+
+  /** The directory. */
+  private final Path directory;
+
+
+  /**
+   * New instance.
+   *
+   * @param directory the directory containing the PEM files
+   */
+  public PemDirectorySource(Path directory) {
+    this.directory = directory.toAbsolutePath();
+  }
+
+
+  @Override
+  public Map<String, SigningKey> load() throws IOException, GeneralSecurityException {
+    CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+    HashMap<String, SigningKey> keys = new HashMap<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.key")) {
+      for (Path keyFile : stream) {
+        String fileName = keyFile.getFileName().toString();
+        String sender = fileName.substring(0, fileName.length() - 4);
+        Path certFile = directory.resolve(sender + ".crt");
+        if (!Files.isRegularFile(certFile)) {
+          // Incomplete pair, possibly mid-update. The next reload will pick it up.
+          continue;
+        }
+
+        PrivateKey privateKey;
+        X509Certificate certificate;
+        try {
+          privateKey = decodePrivateKey(Files.readString(keyFile, StandardCharsets.US_ASCII));
+          try (InputStream inputStream = Files.newInputStream(certFile)) {
+            certificate = (X509Certificate) certificateFactory.generateCertificate(inputStream);
+          }
+          if (!isPair(privateKey, certificate.getPublicKey())) {
+            log.log(Level.WARNING, "The private key in \"{0}\" does not match the certificate in \"{1}\". Sender \"{2}\" has been skipped.",
+                keyFile, certFile, sender);
+            continue;
+          }
+        } catch (IOException | GeneralSecurityException e) {
+          log.log(Level.WARNING, "Cannot load the key pair in \"" + keyFile + "\" and \"" + certFile + "\". Sender \"" + sender + "\" has been skipped.", e);
+          continue;
+        }
+        keys.put(sender, new SigningKey(privateKey, certificate));
+      }
+    }
+    return keys;
+  }
+
+
+  @Override
+  public Path watchedDirectory() {
+    return directory;
+  }
+
+}
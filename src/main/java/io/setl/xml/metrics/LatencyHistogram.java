@@ -0,0 +1,144 @@
+package io.setl.xml.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free, high dynamic range histogram of latencies in nanoseconds. Values are held in log-linear buckets with 64 sub-buckets for each power of two, so
+ * every recorded value is accurate to within about 1.5%. Values above 2<sup>36</sup> nanoseconds (about 68 seconds) are recorded as that value.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class LatencyHistogram {
+
+  /** The largest value that can be recorded accurately. */
+  static final long MAX_VALUE = (1L << 36) - 1;
+
+  /** Number of bits of precision in each power of two. */
+  private static final int SUB_BUCKET_BITS = 6;
+
+  /** Number of sub-buckets in each power of two. */
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+  /** Total number of buckets. */
+  private static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+
+  /**
+   * Get the bucket index for a value.
+   *
+   * @param value the value, between zero and MAX_VALUE inclusive
+   *
+   * @return the index
+   */
+  static int indexOf(long value) {
+    if (value < 2 * SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+  }
+
+
+  /**
+   * Get the highest value that is recorded in a bucket.
+   *
+   * @param index the bucket's index
+   *
+   * @return the highest value
+   */
+  static long highestValueAt(int index) {
+    if (index < 2 * SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    long subBucket = index - ((long) shift << SUB_BUCKET_BITS);
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+
+  /** The bucket counts. */
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+  /** The largest value recorded. */
+  private final AtomicLong max = new AtomicLong();
+
+  /** Total number of values recorded. */
+  private final LongAdder total = new LongAdder();
+
+  /** Sum of all the values recorded. */
+  private final LongAdder sum = new LongAdder();
+
+
+  /**
+   * Get the number of values recorded.
+   *
+   * @return the count
+   */
+  public long getCount() {
+    return total.sum();
+  }
+
+
+  /**
+   * Get the largest value recorded.
+   *
+   * @return the largest value
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+
+  /**
+   * Get the mean of the values recorded.
+   *
+   * @return the mean, or zero if nothing has been recorded
+   */
+  public double getMean() {
+    long count = total.sum();
+    return (count != 0) ? ((double) sum.sum()) / count : 0;
+  }
+
+
+  /**
+   * Get the value at a percentile. As values may be recorded while the percentile is calculated, the result is approximate.
+   *
+   * @param percentile the percentile, between 0 and 100
+   *
+   * @return the highest value equivalent to the value at the percentile, or zero if nothing has been recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    long count = total.sum();
+    if (count == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts.get(i);
+      if (seen >= target) {
+        return Math.min(highestValueAt(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+
+  /**
+   * Record a value.
+   *
+   * @param nanos the value in nanoseconds
+   */
+  public void record(long nanos) {
+    long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+    counts.incrementAndGet(indexOf(value));
+    sum.add(value);
+    total.increment();
+    if (value > max.get()) {
+      max.accumulateAndGet(value, Math::max);
+    }
+  }
+
+}
@@ -0,0 +1,68 @@
+package io.setl.xml.metrics;
+
+/**
+ * Latency statistics for one combination of operation, signature method and outcome.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class LatencyStats implements LatencyStatsMXBean {
+
+  /** Nanoseconds per microsecond. */
+  private static final double NANOS_PER_MICRO = 1000.0;
+
+  /** The histogram of latencies. */
+  private final LatencyHistogram histogram = new LatencyHistogram();
+
+
+  @Override
+  public long getCount() {
+    return histogram.getCount();
+  }
+
+
+  /**
+   * Get the underlying histogram.
+   *
+   * @return the histogram
+   */
+  public LatencyHistogram getHistogram() {
+    return histogram;
+  }
+
+
+  @Override
+  public double getMaxMicros() {
+    return histogram.getMax() / NANOS_PER_MICRO;
+  }
+
+
+  @Override
+  public double getMeanMicros() {
+    return histogram.getMean() / NANOS_PER_MICRO;
+  }
+
+
+  @Override
+  public double getP50Micros() {
+    return histogram.getValueAtPercentile(50) / NANOS_PER_MICRO;
+  }
+
+
+  @Override
+  public double getP90Micros() {
+    return histogram.getValueAtPercentile(90) / NANOS_PER_MICRO;
+  }
+
+
+  @Override
+  public double getP999Micros() {
+    return histogram.getValueAtPercentile(99.9) / NANOS_PER_MICRO;
+  }
+
+
+  @Override
+  public double getP99Micros() {
+    return histogram.getValueAtPercentile(99) / NANOS_PER_MICRO;
+  }
+
+}
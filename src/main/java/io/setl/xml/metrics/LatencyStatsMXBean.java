@@ -0,0 +1,24 @@
+package io.setl.xml.metrics;
+
+/**
+ * JMX view of the latency statistics for one combination of operation, signature method and outcome. All latencies are in microseconds.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public interface LatencyStatsMXBean {
+
+  long getCount();
+
+  double getMeanMicros();
+
+  double getMaxMicros();
+
+  double getP50Micros();
+
+  double getP90Micros();
+
+  double getP99Micros();
+
+  double getP999Micros();
+
+}
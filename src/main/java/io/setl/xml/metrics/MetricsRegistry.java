@@ -0,0 +1,29 @@
+package io.setl.xml.metrics;
+
+import io.setl.xml.XMLSignatureMethod;
+
+/**
+ * A destination for the metrics recorded by the signer-verifier. Implementations must be thread-safe and should not block, as they are called on every
+ * operation.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public interface MetricsRegistry {
+
+  /** A registry that discards everything. */
+  MetricsRegistry NONE = (operation, method, outcome, nanos) -> {
+    // do nothing
+  };
+
+
+  /**
+   * Record the completion of an operation.
+   *
+   * @param operation the operation
+   * @param method    the signature method, or null if it could not be determined
+   * @param outcome   the outcome
+   * @param nanos     the elapsed time in nanoseconds
+   */
+  void record(Operation operation, XMLSignatureMethod method, Outcome outcome, long nanos);
+
+}
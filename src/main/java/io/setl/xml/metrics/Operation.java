@@ -0,0 +1,14 @@
+package io.setl.xml.metrics;
+
+/**
+ * The operations performed by the signer-verifier.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public enum Operation {
+  /** Signing an AppHdr and Document. */
+  SIGN,
+
+  /** Validating the signature on an AppHdr and Document. */
+  VALIDATE
+}
@@ -0,0 +1,23 @@
+package io.setl.xml.metrics;
+
+/**
+ * The possible outcomes of an operation.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public enum Outcome {
+  /** A signature was created. */
+  SIGNED,
+
+  /** The signature was valid. */
+  VALID,
+
+  /** The digest of at least one of the signature's references did not match. */
+  INVALID_REFERENCE,
+
+  /** The references matched, but the signature value did not. */
+  INVALID_SIGNATURE,
+
+  /** The operation failed because the input was malformed or unsupported. */
+  MALFORMED
+}
@@ -0,0 +1,199 @@
+package io.setl.xml.metrics;
+
+import java.io.Closeable;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import io.setl.xml.XMLSignatureMethod;
+
+/**
+ * The built-in metrics registry. Latency statistics are kept for every combination of operation, signature method and outcome. Each combination's statistics
+ * are created the first time it is recorded, and are then published as a JMX MXBean if an MBean server was provided.
+ *
+ * <p>Recording is lock-free: the statistics are found by array index, and the histograms are updated with atomic operations.</p>
+ *
+ * <p>MXBeans are named "io.setl.xml:type=SigningMetrics,name=&lt;name&gt;,operation=&lt;operation&gt;,method=&lt;method&gt;,outcome=&lt;outcome&gt;".
+ * Validations which failed before the signature method was known are recorded with a method of "UNKNOWN". The name must not be in use by another open
+ * registry on the same MBean server. Closing the registry unregisters its MXBeans, so the name can then be reused.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class SigningMetrics implements MetricsRegistry, Closeable {
+
+  /** The logger. */
+  private static final Logger log = System.getLogger(SigningMetrics.class.getName());
+
+  /** Number of signature methods, including "unknown". */
+  private static final int METHOD_COUNT = XMLSignatureMethod.values().length + 1;
+
+  /** Number of outcomes. */
+  private static final int OUTCOME_COUNT = Outcome.values().length;
+
+
+  private static int indexOf(Operation operation, XMLSignatureMethod method, Outcome outcome) {
+    int methodIndex = (method != null) ? method.ordinal() + 1 : 0;
+    return (operation.ordinal() * METHOD_COUNT + methodIndex) * OUTCOME_COUNT + outcome.ordinal();
+  }
+
+
+  /** The MBean server to publish to, or null. */
+  private final MBeanServer mBeanServer;
+
+  /** The MXBeans this registry has published. Guarded by "this". */
+  private final List<ObjectName> published = new ArrayList<>();
+
+  /** Name which distinguishes this registry's MXBeans from those of other registries. */
+  private final String name;
+
+  /** The statistics, indexed by operation, method and outcome. */
+  private final AtomicReferenceArray<LatencyStats> stats = new AtomicReferenceArray<>(Operation.values().length * METHOD_COUNT * OUTCOME_COUNT);
+
+  /** Has this registry been closed? Guarded by "this". */
+  private boolean closed;
+
+
+  /**
+   * New instance which publishes its statistics to the platform MBean server.
+   *
+   * @param name name which distinguishes this registry's MXBeans from those of other registries
+   */
+  public SigningMetrics(String name) {
+    this(name, ManagementFactory.getPlatformMBeanServer());
+  }
+
+
+  /**
+   * New instance.
+   *
+   * @param name        name which distinguishes this registry's MXBeans from those of other registries
+   * @param mBeanServer the MBean server to publish to, or null to not publish
+   *
+   * @throws IllegalArgumentException if another registry with the same name has published to the MBean server and has not been closed
+   */
+  public SigningMetrics(String name, MBeanServer mBeanServer) {
+    this.name = name;
+    this.mBeanServer = mBeanServer;
+    if (mBeanServer != null && !mBeanServer.queryNames(objectName("*"), null).isEmpty()) {
+      throw new IllegalArgumentException("Signing metrics named \"" + name + "\" are already published to the MBean server");
+    }
+  }
+
+
+  /**
+   * Stop publishing. Every MXBean this registry has published is unregistered. Statistics continue to be recorded, but are no longer published.
+   */
+  @Override
+  public synchronized void close() {
+    closed = true;
+    for (ObjectName objectName : published) {
+      try {
+        mBeanServer.unregisterMBean(objectName);
+      } catch (InstanceNotFoundException e) {
+        // Already unregistered by someone else
+      } catch (JMException e) {
+        log.log(Level.WARNING, "Failed to unregister signing metrics " + objectName, e);
+      }
+    }
+    published.clear();
+  }
+
+
+  /**
+   * Get the statistics for a combination of operation, signature method and outcome.
+   *
+   * @param operation the operation
+   * @param method    the signature method, or null for "unknown"
+   * @param outcome   the outcome
+   *
+   * @return the statistics, or null if nothing has been recorded for the combination
+   */
+  public LatencyStats getStats(Operation operation, XMLSignatureMethod method, Outcome outcome) {
+    return stats.get(indexOf(operation, method, outcome));
+  }
+
+
+  /**
+   * Get the total number of operations recorded with a specific outcome.
+   *
+   * @param operation the operation
+   * @param outcome   the outcome
+   *
+   * @return the count
+   */
+  public long getCount(Operation operation, Outcome outcome) {
+    long count = 0;
+    LatencyStats s = getStats(operation, null, outcome);
+    if (s != null) {
+      count += s.getCount();
+    }
+    for (XMLSignatureMethod method : XMLSignatureMethod.values()) {
+      s = getStats(operation, method, outcome);
+      if (s != null) {
+        count += s.getCount();
+      }
+    }
+    return count;
+  }
+
+
+  /**
+   * Create the name of one of this registry's MXBeans.
+   *
+   * @param keys the key properties which follow the registry's name
+   *
+   * @return the name
+   */
+  private ObjectName objectName(String keys) {
+    try {
+      return new ObjectName("io.setl.xml:type=SigningMetrics,name=" + ObjectName.quote(name) + "," + keys);
+    } catch (MalformedObjectNameException e) {
+      throw new IllegalArgumentException("Invalid signing metrics name: " + name, e);
+    }
+  }
+
+
+  private synchronized void publish(Operation operation, XMLSignatureMethod method, Outcome outcome, LatencyStats latencyStats) {
+    if (closed) {
+      return;
+    }
+    ObjectName objectName = objectName(String.format("operation=%s,method=%s,outcome=%s", operation, (method != null) ? method : "UNKNOWN", outcome));
+    try {
+      mBeanServer.registerMBean(latencyStats, objectName);
+      published.add(objectName);
+    } catch (InstanceAlreadyExistsException e) {
+      log.log(Level.ERROR, "Signing metrics " + objectName + " are already published by another registry. These metrics will not be published.", e);
+    } catch (JMException e) {
+      log.log(Level.ERROR, "Failed to publish signing metrics " + objectName + " to JMX", e);
+    }
+  }
+
+
+  @Override
+  public void record(Operation operation, XMLSignatureMethod method, Outcome outcome, long nanos) {
+    int index = indexOf(operation, method, outcome);
+    LatencyStats latencyStats = stats.get(index);
+    if (latencyStats == null) {
+      LatencyStats created = new LatencyStats();
+      if (stats.compareAndSet(index, null, created)) {
+        latencyStats = created;
+        if (mBeanServer != null) {
+          publish(operation, method, outcome, created);
+        }
+      } else {
+        latencyStats = stats.get(index);
+      }
+    }
+    latencyStats.getHistogram().record(nanos);
+  }
+
+}
@@ -0,0 +1,153 @@
+package io.setl.xml;
+
+import static io.setl.ExampleSigning.loadKeyStore;
+import static io.setl.ExampleSigning.parse;
+import static io.setl.ExampleSigning.xmlToString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Map;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.crypto.dsig.XMLSignatureException;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Signs and validates a message with each supported version of the AppHdr.
+ *
+ * @author agent on 18/10/2026.
+ */
+public class AppHdrVersionTest {
+
+  /** A namespace which is not a supported AppHdr version. */
+  private static final String UNKNOWN_NAMESPACE = "urn:iso:std:iso:20022:tech:xsd:head.001.001.05";
+
+  private static String appHdrText;
+
+  private static String documentText;
+
+  private static SigningKey signingKey;
+
+
+  @BeforeAll
+  public static void loadResources() throws Exception {
+    appHdrText = loadText("examples/sign1/apphdr.xml");
+    documentText = loadText("examples/sign1/document.xml");
+    KeyStore keyStore = loadKeyStore("examples/keystore.jks");
+    signingKey = new SigningKey((PrivateKey) keyStore.getKey("example", "password".toCharArray()), (X509Certificate) keyStore.getCertificate("example"));
+  }
+
+
+  private static String appHdr(String namespace) {
+    return appHdrText.replace(Constants.NS_ISO_HEAD, namespace);
+  }
+
+
+  private static String loadText(String resource) throws IOException {
+    try (InputStream inputStream = AppHdrVersionTest.class.getClassLoader().getResourceAsStream(resource)) {
+      return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+
+  private static void tamper(Node header) {
+    Element bizMsgIdr = (Element) ((Element) header).getElementsByTagNameNS("*", "BizMsgIdr").item(0);
+    bizMsgIdr.setTextContent("tampered");
+  }
+
+
+  @Test
+  public void forNamespace() throws Exception {
+    for (AppHdrVersion version : AppHdrVersion.values()) {
+      assertSame(version, AppHdrVersion.forNamespace(version.getNamespace()));
+      assertSame(version, AppHdrVersion.of(parse(appHdr(version.getNamespace()))));
+    }
+    assertNull(AppHdrVersion.forNamespace(UNKNOWN_NAMESPACE));
+    assertNull(AppHdrVersion.forNamespace(null));
+  }
+
+
+  @Test
+  public void signAndValidateEachVersion() throws Exception {
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    for (AppHdrVersion version : AppHdrVersion.values()) {
+      Node header = parse(appHdr(version.getNamespace())).getDocumentElement();
+      Node document = parse(documentText).getDocumentElement();
+      isoSignerVerifier.sign(header, document, signingKey);
+
+      // The signature is in this version's signature envelope.
+      assertEquals(1, XPathUtil.findNodes(version.getX509NodePath(), header).getLength(), version.name());
+      assertTrue(isoSignerVerifier.validate(header, document), version.name());
+
+      tamper(header);
+      assertFalse(isoSignerVerifier.validate(header, document), version.name());
+    }
+  }
+
+
+  @Test
+  public void signAndValidateEachVersionCompact() throws Exception {
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    for (AppHdrVersion version : AppHdrVersion.values()) {
+      Node document = parse(documentText).getDocumentElement();
+      CompactTree header = isoSignerVerifier.sign(CompactTree.parse(appHdr(version.getNamespace())), document, signingKey);
+      assertTrue(isoSignerVerifier.validate(header, document), version.name());
+
+      // A signature made on a compact tree must validate on a DOM.
+      StringWriter text = new StringWriter();
+      header.write(text);
+      assertTrue(isoSignerVerifier.validate(parse(text.toString()).getDocumentElement(), document), version.name());
+    }
+  }
+
+
+  @Test
+  public void signAndValidateEachVersionHmac() throws Exception {
+    SecretKey secretKey = new SecretKeySpec(new byte[32], "HmacSHA256");
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    isoSignerVerifier.setSecretKeyResolver(Map.of("hop", secretKey)::get);
+    for (AppHdrVersion version : AppHdrVersion.values()) {
+      Node header = parse(appHdr(version.getNamespace())).getDocumentElement();
+      Node document = parse(documentText).getDocumentElement();
+      isoSignerVerifier.sign(header, document, secretKey, "hop", XMLSignatureMethod.HMAC_SHA256);
+
+      assertEquals("hop", XPathUtil.findRequiredNode(version.getKeyNamePath(), header).getTextContent(), version.name());
+      assertTrue(isoSignerVerifier.validate(header, document), version.name());
+    }
+  }
+
+
+  @Test
+  public void unknownNamespaceIsRejected() throws Exception {
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    Node document = parse(documentText).getDocumentElement();
+
+    Node header = parse(appHdr(UNKNOWN_NAMESPACE)).getDocumentElement();
+    XMLSignatureException e = assertThrows(XMLSignatureException.class, () -> isoSignerVerifier.sign(header, document, signingKey));
+    assertTrue(e.getMessage().contains(UNKNOWN_NAMESPACE), e.getMessage());
+    assertThrows(XMLSignatureException.class, () -> isoSignerVerifier.sign(CompactTree.parse(appHdr(UNKNOWN_NAMESPACE)), document, signingKey));
+
+    // A message signed as version 3 whose AppHdr is then moved to an unknown namespace cannot be validated.
+    Node signed = parse(appHdrText).getDocumentElement();
+    isoSignerVerifier.sign(signed, document, signingKey);
+    String moved = xmlToString(signed).replace(Constants.NS_ISO_HEAD, UNKNOWN_NAMESPACE);
+    assertThrows(XMLSignatureException.class, () -> isoSignerVerifier.validate(parse(moved).getDocumentElement(), document));
+    assertThrows(XMLSignatureException.class, () -> isoSignerVerifier.validate(CompactTree.parse(moved), document));
+  }
+
+}
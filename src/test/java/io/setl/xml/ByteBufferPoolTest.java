@@ -0,0 +1,47 @@
+package io.setl.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author agent on 18/10/2026.
+ */
+public class ByteBufferPoolTest {
+
+  @Test
+  public void buffersAreReused() {
+    ByteBufferPool pool = new ByteBufferPool(16, 2);
+    ByteBuffer buffer = pool.acquire();
+    assertTrue(buffer.isDirect());
+    assertEquals(16, buffer.capacity());
+
+    buffer.put((byte) 1).flip();
+    pool.release(buffer);
+    assertEquals(1, pool.idleCount());
+
+    ByteBuffer again = pool.acquire();
+    assertSame(buffer, again);
+    assertEquals(0, again.position());
+    assertEquals(16, again.limit());
+    assertEquals(0, pool.idleCount());
+  }
+
+
+  @Test
+  public void fullPoolDiscardsBuffers() {
+    ByteBufferPool pool = new ByteBufferPool(16, 2);
+    ByteBuffer[] buffers = {pool.acquire(), pool.acquire(), pool.acquire()};
+    assertNotSame(buffers[0], buffers[1]);
+    for (ByteBuffer buffer : buffers) {
+      pool.release(buffer);
+    }
+    assertEquals(2, pool.idleCount());
+  }
+
+}
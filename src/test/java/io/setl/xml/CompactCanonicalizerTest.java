@@ -0,0 +1,94 @@
+package io.setl.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the compact canonicalizer against the exclusive canonical forms produced by the JDK's XML Signature implementation.
+ *
+ * @author agent on 18/10/2026.
+ */
+public class CompactCanonicalizerTest {
+
+  private static String canonicalize(CompactTree tree, int node) throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    CompactCanonicalizer.canonicalize(tree, node, CompactTree.NONE, output);
+    return output.toString(StandardCharsets.UTF_8);
+  }
+
+
+  private static String canonicalize(String xml) throws Exception {
+    return canonicalize(CompactTree.parse(xml), 0);
+  }
+
+
+  private static int firstChildElement(CompactTree tree, int node) {
+    int child = tree.getFirstChild(node);
+    while (tree.getKind(child) != CompactTree.ELEMENT) {
+      child = tree.getNextSibling(child);
+    }
+    return child;
+  }
+
+
+  @Test
+  public void attributeOrdering() throws Exception {
+    assertEquals(
+        "<a xmlns:q=\"urn:q\" xmlns:r=\"urn:r\" a=\"4\" z=\"1\" q:a=\"5\" q:c=\"3\" r:b=\"2\"></a>",
+        canonicalize("<a xmlns:q=\"urn:q\" xmlns:r=\"urn:r\" z=\"1\" r:b=\"2\" q:c=\"3\" a=\"4\" q:a=\"5\"/>")
+    );
+  }
+
+
+  @Test
+  public void cdataBecomesEscapedText() throws Exception {
+    assertEquals("<a>&lt;x&gt;&amp;amp;</a>", canonicalize("<a><![CDATA[<x>&amp;]]></a>"));
+  }
+
+
+  @Test
+  public void defaultNamespaceUndeclaration() throws Exception {
+    String xml = "<a xmlns=\"urn:x\"><b xmlns=\"\"><c/></b></a>";
+    assertEquals("<a xmlns=\"urn:x\"><b xmlns=\"\"><c></c></b></a>", canonicalize(xml));
+
+    // The undeclaration is only output when a default namespace is in the output scope.
+    CompactTree tree = CompactTree.parse(xml);
+    assertEquals("<b><c></c></b>", canonicalize(tree, firstChildElement(tree, 0)));
+  }
+
+
+  @Test
+  public void defaultNamespaceRedeclaration() throws Exception {
+    String xml = "<p:a xmlns:p=\"urn:p\" xmlns=\"urn:x\"><b xmlns=\"\"><c xmlns=\"urn:y\"/></b></p:a>";
+    assertEquals("<p:a xmlns:p=\"urn:p\"><b><c xmlns=\"urn:y\"></c></b></p:a>", canonicalize(xml));
+
+    CompactTree tree = CompactTree.parse(xml);
+    assertEquals("<b><c xmlns=\"urn:y\"></c></b>", canonicalize(tree, firstChildElement(tree, 0)));
+  }
+
+
+  @Test
+  public void escaping() throws Exception {
+    assertEquals(
+        "<a v=\"x&#xD;y&#x9;z&#xA;w&quot;&lt;>&amp;\">t&#xD;&gt;\"</a>",
+        canonicalize("<a v=\"x&#13;y&#9;z&#10;w&quot;&lt;&gt;&amp;\">t&#13;&gt;\"</a>")
+    );
+  }
+
+
+  @Test
+  public void processingInstructions() throws Exception {
+    assertEquals("<a><?pi data here ?><b></b><?empty?></a>", canonicalize("<a><?pi   data here ?><b/><?empty?></a>"));
+  }
+
+
+  @Test
+  public void unusedNamespacesAreOmitted() throws Exception {
+    assertEquals("<a><b:c xmlns:b=\"urn:b\"></b:c></a>", canonicalize("<a xmlns:b=\"urn:b\" xmlns:u=\"urn:u\"><b:c/></a>"));
+  }
+
+}
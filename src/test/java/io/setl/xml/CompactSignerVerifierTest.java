@@ -0,0 +1,349 @@
+package io.setl.xml;
+
+import static io.setl.ExampleSigning.loadKeyStore;
+import static io.setl.ExampleSigning.parse;
+import static io.setl.ExampleSigning.xmlToString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Map;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.crypto.dsig.XMLSignatureException;
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * Checks that signatures created from a compact tree and from a DOM are interchangeable, and that the compact path applies the secure validation policy.
+ *
+ * @author agent on 18/10/2026.
+ */
+public class CompactSignerVerifierTest {
+
+  private static String appHdrText;
+
+  private static String documentText;
+
+  private static SigningKey ecKey;
+
+  private static SigningKey rsaKey;
+
+  private static SigningKey weakRsaKey;
+
+
+  private static long allocatedBytes(com.sun.management.ThreadMXBean threads) {
+    return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+
+  private static SigningKey loadKey(KeyStore keyStore, String alias) throws Exception {
+    return new SigningKey((PrivateKey) keyStore.getKey(alias, "password".toCharArray()), (X509Certificate) keyStore.getCertificate(alias));
+  }
+
+
+  @BeforeAll
+  public static void loadResources() throws Exception {
+    appHdrText = loadText("examples/sign1/apphdr.xml");
+    documentText = loadText("examples/sign1/document.xml");
+    rsaKey = loadKey(loadKeyStore("examples/keystore.jks"), "example");
+    KeyStore testKeys = loadKeyStore("keys.jks");
+    ecKey = loadKey(testKeys, "ec");
+    weakRsaKey = loadKey(testKeys, "rsa512");
+  }
+
+
+  private static String loadText(String resource) throws IOException {
+    try (InputStream inputStream = CompactSignerVerifierTest.class.getClassLoader().getResourceAsStream(resource)) {
+      return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+
+  private static String toText(CompactTree tree) throws IOException {
+    StringWriter writer = new StringWriter();
+    tree.write(writer);
+    return writer.toString();
+  }
+
+
+  private static void assertInterchangeable(IsoSignerVerifier isoSignerVerifier, SigningKey key) throws Exception {
+    Document document = parse(documentText);
+
+    // Compact to DOM
+    CompactTree compact = isoSignerVerifier.sign(CompactTree.parse(appHdrText), document.getDocumentElement(), key);
+    assertTrue(isoSignerVerifier.validate(compact, document.getDocumentElement()));
+    assertTrue(isoSignerVerifier.validate(parse(toText(compact)).getDocumentElement(), document.getDocumentElement()));
+
+    // DOM to compact
+    Document appHdr = parse(appHdrText);
+    isoSignerVerifier.sign(appHdr.getDocumentElement(), document.getDocumentElement(), key);
+    assertTrue(isoSignerVerifier.validate(CompactTree.parse(xmlToString(appHdr)), document.getDocumentElement()));
+
+    // A changed Document invalidates both
+    Document changed = parse(documentText.replaceFirst("<pacs:GrpHdr>", "<pacs:GrpHdr x=\"1\">"));
+    assertFalse(isoSignerVerifier.validate(compact, changed.getDocumentElement()));
+    assertFalse(isoSignerVerifier.validate(CompactTree.parse(xmlToString(appHdr)), changed.getDocumentElement()));
+  }
+
+
+  /**
+   * Check that a changed signed header gives the same result on the compact path and the DOM path. A rejection by exception counts as not validating.
+   *
+   * @param isoSignerVerifier the verifier
+   * @param header            the changed header
+   * @param document          the Document
+   * @param expected          the expected result
+   */
+  private static void assertBothPaths(IsoSignerVerifier isoSignerVerifier, String header, Node document, boolean expected) throws Exception {
+    boolean compact;
+    try {
+      compact = isoSignerVerifier.validate(CompactTree.parse(header), document);
+    } catch (XMLSignatureException e) {
+      compact = false;
+    }
+    boolean dom;
+    try {
+      dom = isoSignerVerifier.validate(parse(header).getDocumentElement(), document);
+    } catch (XMLSignatureException e) {
+      dom = false;
+    }
+    assertEquals(expected, compact, "Compact path");
+    assertEquals(expected, dom, "DOM path");
+  }
+
+
+  /**
+   * Measure the heap allocated by parsing and validating the AppHdr as a compact tree and as a DOM. For the example message, validation allocates about a
+   * fifth as much on the compact path, as the JSR-105 implementation builds node sets and expands the deferred DOM. Parsing alone saves much less, as the
+   * StAX reader's set up costs about 20 KB whatever the size of the header.
+   */
+  @Test
+  public void allocation() throws Exception {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean, "Allocation cannot be measured on this JVM");
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled(), "Allocation cannot be measured on this JVM");
+
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    Node document = parse(documentText).getDocumentElement();
+    String signed = toText(isoSignerVerifier.sign(CompactTree.parse(appHdrText), document, rsaKey));
+
+    // Take the least of many runs, so that the JIT and class loading are excluded.
+    long compactParse = Long.MAX_VALUE;
+    long domParse = Long.MAX_VALUE;
+    long compactTotal = Long.MAX_VALUE;
+    long domTotal = Long.MAX_VALUE;
+    for (int run = 0; run < 200; run++) {
+      long start = allocatedBytes(threads);
+      CompactTree tree = CompactTree.parse(signed);
+      long parsed = allocatedBytes(threads);
+      assertTrue(isoSignerVerifier.validate(tree, document));
+      long end = allocatedBytes(threads);
+      compactParse = Math.min(compactParse, parsed - start);
+      compactTotal = Math.min(compactTotal, end - start);
+
+      start = allocatedBytes(threads);
+      Node header = parse(signed).getDocumentElement();
+      parsed = allocatedBytes(threads);
+      assertTrue(isoSignerVerifier.validate(header, document));
+      end = allocatedBytes(threads);
+      domParse = Math.min(domParse, parsed - start);
+      domTotal = Math.min(domTotal, end - start);
+    }
+
+    System.out.printf("AppHdr of %,d characters: parse compact %,d bytes, DOM %,d bytes (%.1fx); parse and validate compact %,d bytes, DOM %,d bytes (%.1fx)%n",
+        signed.length(), compactParse, domParse, (double) domParse / compactParse, compactTotal, domTotal, (double) domTotal / compactTotal
+    );
+    assertTrue(compactTotal * 3 < domTotal, "Compact validation allocated " + compactTotal + " bytes, DOM " + domTotal);
+  }
+
+
+  @Test
+  public void commentsAreIgnored() throws Exception {
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    Node document = parse(documentText).getDocumentElement();
+    String signed = toText(isoSignerVerifier.sign(CompactTree.parse(appHdrText), document, rsaKey));
+
+    // Exclusive canonicalization without comments drops them from the AppHdr, the KeyInfo and the SignedInfo.
+    assertBothPaths(isoSignerVerifier, signed.replace("<head:Fr>", "<head:Fr><!-- in the header -->"), document, true);
+    assertBothPaths(isoSignerVerifier, signed.replace("<sign:SignedInfo>", "<sign:SignedInfo><!-- in SignedInfo -->"), document, true);
+    assertBothPaths(isoSignerVerifier, signed.replace("<sign:X509Certificate>", "<sign:X509Certificate><!-- in KeyInfo -->"), document, true);
+  }
+
+
+  @Test
+  public void namespaceRedeclaration() throws Exception {
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    Node document = parse(documentText).getDocumentElement();
+    String signed = toText(isoSignerVerifier.sign(CompactTree.parse(appHdrText), document, rsaKey));
+
+    // Redeclaring a prefix to the same namespace, or declaring an unused prefix, does not change the canonical form.
+    assertBothPaths(isoSignerVerifier, signed.replace("<head:Fr>", "<head:Fr xmlns:head=\"" + Constants.NS_ISO_HEAD + "\">"), document, true);
+    assertBothPaths(isoSignerVerifier, signed.replace("<sign:SignedInfo>", "<sign:SignedInfo xmlns:sign=\"" + Constants.NS_SIGNATURE + "\">"), document, true);
+    assertBothPaths(isoSignerVerifier, signed.replace("<sign:SignedInfo>", "<sign:SignedInfo xmlns:unused=\"urn:unused\">"), document, true);
+    assertBothPaths(isoSignerVerifier, signed.replace("<head:To>", "<head:To xmlns=\"urn:default\">"), document, true);
+
+    // Redeclaring a prefix to a different namespace moves the element, which changes the AppHdr.
+    assertBothPaths(isoSignerVerifier, signed.replace("<head:Fr>", "<head:Fr xmlns:head=\"urn:other\">"), document, false);
+  }
+
+
+  @Test
+  public void entitiesAndCdata() throws Exception {
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    Node document = parse(documentText).getDocumentElement();
+    String signed = toText(isoSignerVerifier.sign(CompactTree.parse(appHdrText), document, rsaKey));
+    String bizMsgIdr = "018264daa45f70dc-ad7c516d25f3c02b";
+
+    // Character references and CDATA sections canonicalize as the text they represent.
+    assertBothPaths(isoSignerVerifier, signed.replace(bizMsgIdr, "<![CDATA[" + bizMsgIdr + "]]>"), document, true);
+    assertBothPaths(isoSignerVerifier, signed.replace(bizMsgIdr, "&#x30;" + bizMsgIdr.substring(1)), document, true);
+    assertBothPaths(isoSignerVerifier, signed.replace(bizMsgIdr, "<![CDATA[" + bizMsgIdr + "&amp;]]>"), document, false);
+
+    // The compact tree does not process DTDs, so an internal entity cannot be expanded.
+    String doctype = "<!DOCTYPE head:AppHdr [<!ENTITY id \"" + bizMsgIdr + "\">]>";
+    assertThrows(XMLStreamException.class, () -> CompactTree.parse(doctype + signed.replace(bizMsgIdr, "&id;")));
+  }
+
+
+  @Test
+  public void whitespaceInSignedInfo() throws Exception {
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    Node document = parse(documentText).getDocumentElement();
+    String signed = toText(isoSignerVerifier.sign(CompactTree.parse(appHdrText), document, rsaKey));
+
+    // Whitespace is significant in the canonical SignedInfo.
+    assertBothPaths(isoSignerVerifier, signed.replace("<sign:SignedInfo>", "<sign:SignedInfo>\n  "), document, false);
+    assertBothPaths(isoSignerVerifier, signed.replace("</sign:Reference>", "</sign:Reference>\n  "), document, false);
+    assertBothPaths(isoSignerVerifier, signed.replace("<sign:DigestValue>", "<sign:DigestValue>\n"), document, false);
+
+    // Outside SignedInfo, line breaks in the Base64 signature value are allowed.
+    String value = signed.replaceFirst("(?s).*<sign:SignatureValue>([^<]+)<.*", "$1");
+    assertBothPaths(isoSignerVerifier, signed.replace(value, value.substring(0, 40) + "\n" + value.substring(40)), document, true);
+  }
+
+
+  @Test
+  public void extraReferencesAndTransforms() throws Exception {
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    Node document = parse(documentText).getDocumentElement();
+    String signed = toText(isoSignerVerifier.sign(CompactTree.parse(appHdrText), document, rsaKey));
+    String keyInfoReference = signed.replaceFirst("(?s).*(<sign:Reference URI=\"#KeyInfo[^\"]*\">.*?</sign:Reference>).*", "$1");
+
+    // A repeated reference changes SignedInfo.
+    assertBothPaths(isoSignerVerifier, signed.replace(keyInfoReference, keyInfoReference + keyInfoReference), document, false);
+
+    // A reference to an element without an ID, or with an unsupported transform, is rejected outright on the compact path.
+    String toBizMsgIdr = keyInfoReference.replaceFirst("URI=\"[^\"]*\"", "URI=\"#BizMsgIdr\"");
+    assertThrows(XMLSignatureException.class,
+        () -> isoSignerVerifier.validate(CompactTree.parse(signed.replace(keyInfoReference, keyInfoReference + toBizMsgIdr)), document)
+    );
+    String base64 = "<sign:Transform Algorithm=\"http://www.w3.org/2000/09/xmldsig#base64\"/>";
+    assertThrows(XMLSignatureException.class,
+        () -> isoSignerVerifier.validate(CompactTree.parse(signed.replace("<sign:Transforms>", "<sign:Transforms>" + base64)), document)
+    );
+    String xpath = "<sign:Transform Algorithm=\"http://www.w3.org/TR/1999/REC-xpath-19991116\"><sign:XPath>true()</sign:XPath></sign:Transform>";
+    String withXPath = signed.replace("<sign:Transforms>", "<sign:Transforms>" + xpath);
+    XMLSignatureException e = assertThrows(XMLSignatureException.class, () -> isoSignerVerifier.validate(CompactTree.parse(withXPath), document));
+    assertTrue(e.getMessage().contains("Transform parameters"), e.getMessage());
+    assertBothPaths(isoSignerVerifier, withXPath, document, false);
+
+    // More references than the secure validation policy allows.
+    String many = signed.replace(keyInfoReference, keyInfoReference.repeat(31));
+    e = assertThrows(XMLSignatureException.class, () -> isoSignerVerifier.validate(CompactTree.parse(many), document));
+    assertTrue(e.getMessage().contains("Too many references"), e.getMessage());
+  }
+
+
+  @Test
+  public void duplicateIdIsRejected() throws Exception {
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    Document document = parse(documentText);
+    String signed = toText(isoSignerVerifier.sign(CompactTree.parse(appHdrText), document.getDocumentElement(), rsaKey));
+    assertTrue(isoSignerVerifier.validate(CompactTree.parse(signed), document.getDocumentElement()));
+
+    // Add a second element with the KeyInfo's ID
+    String id = signed.replaceFirst("(?s).*KeyInfo Id=\"([^\"]+)\".*", "$1");
+    String duplicated = signed.replaceFirst("<head:Nm>", "<head:Nm Id=\"" + id + "\">");
+    assertThrows(XMLSignatureException.class, () -> isoSignerVerifier.validate(CompactTree.parse(duplicated), document.getDocumentElement()));
+  }
+
+
+  @Test
+  public void ecdsa() throws Exception {
+    assertInterchangeable(new IsoSignerVerifier(), ecKey);
+  }
+
+
+  @Test
+  public void hmac() throws Exception {
+    SecretKey secretKey = new SecretKeySpec("a shared secret of thirty-two bytes!".getBytes(StandardCharsets.US_ASCII), "HmacSHA256");
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    isoSignerVerifier.setSecretKeyResolver(Map.of("hop-1", secretKey)::get);
+    Document document = parse(documentText);
+
+    CompactTree compact = isoSignerVerifier.sign(CompactTree.parse(appHdrText), document.getDocumentElement(), secretKey, "hop-1",
+        XMLSignatureMethod.HMAC_SHA256
+    );
+    assertTrue(isoSignerVerifier.validate(compact, document.getDocumentElement()));
+    assertTrue(isoSignerVerifier.validate(parse(toText(compact)).getDocumentElement(), document.getDocumentElement()));
+
+    Document appHdr = parse(appHdrText);
+    isoSignerVerifier.sign(appHdr.getDocumentElement(), document.getDocumentElement(), secretKey, "hop-1", XMLSignatureMethod.HMAC_SHA256);
+    assertTrue(isoSignerVerifier.validate(CompactTree.parse(xmlToString(appHdr)), document.getDocumentElement()));
+
+    // The wrong key
+    isoSignerVerifier.setSecretKeyResolver(Map.of("hop-1", new SecretKeySpec(new byte[32], "HmacSHA256"))::get);
+    assertFalse(isoSignerVerifier.validate(compact, document.getDocumentElement()));
+    assertFalse(isoSignerVerifier.validate(CompactTree.parse(xmlToString(appHdr)), document.getDocumentElement()));
+  }
+
+
+  @Test
+  public void resignedTreeValidates() throws Exception {
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    Document document = parse(documentText);
+    CompactTree tree = isoSignerVerifier.sign(CompactTree.parse(appHdrText), document.getDocumentElement(), rsaKey);
+    isoSignerVerifier.sign(tree, document.getDocumentElement(), ecKey);
+    assertTrue(isoSignerVerifier.validate(tree, document.getDocumentElement()));
+    assertTrue(isoSignerVerifier.validate(parse(toText(tree)).getDocumentElement(), document.getDocumentElement()));
+  }
+
+
+  @Test
+  public void rsa() throws Exception {
+    assertInterchangeable(new IsoSignerVerifier(), rsaKey);
+  }
+
+
+  @Test
+  public void rsaPss() throws Exception {
+    SigningKey pss = new SigningKey(rsaKey.getPrivateKey(), rsaKey.getCertificate(), XMLSignatureMethod.SHA256_RSA_MGF1);
+    assertInterchangeable(new IsoSignerVerifier(), pss);
+  }
+
+
+  @Test
+  public void smallKeyIsRejected() throws Exception {
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    Document document = parse(documentText);
+    CompactTree compact = isoSignerVerifier.sign(CompactTree.parse(appHdrText), document.getDocumentElement(), weakRsaKey);
+    assertThrows(XMLSignatureException.class, () -> isoSignerVerifier.validate(compact, document.getDocumentElement()));
+    assertThrows(XMLSignatureException.class, () -> isoSignerVerifier.validate(parse(toText(compact)).getDocumentElement(), document.getDocumentElement()));
+  }
+
+}
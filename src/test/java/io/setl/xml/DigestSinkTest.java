@@ -0,0 +1,52 @@
+package io.setl.xml;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.security.MessageDigest;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author agent on 18/10/2026.
+ */
+public class DigestSinkTest {
+
+  @Test
+  public void digestMatchesAcrossBufferBoundaries() throws Exception {
+    byte[] data = new byte[1000];
+    new Random(1).nextBytes(data);
+    byte[] expected = MessageDigest.getInstance("SHA-256").digest(data);
+
+    // Buffers much smaller than the data, so the sink drains many times, with writes that straddle the buffer boundaries.
+    ByteBufferPool pool = new ByteBufferPool(7, 1);
+    for (int chunk : new int[]{1, 3, 7, 8, 100, 1000}) {
+      DigestSink sink = new DigestSink(pool, MessageDigest.getInstance("SHA-256"));
+      for (int offset = 0; offset < data.length; offset += chunk) {
+        if (chunk == 1) {
+          sink.write(data[offset]);
+        } else {
+          sink.write(data, offset, Math.min(chunk, data.length - offset));
+        }
+      }
+      assertArrayEquals(expected, sink.digest(), "Chunk size " + chunk);
+      assertEquals(1, pool.idleCount());
+    }
+  }
+
+
+  @Test
+  public void closeReturnsBufferOnce() throws Exception {
+    ByteBufferPool pool = new ByteBufferPool(7, 4);
+    DigestSink sink = new DigestSink(pool, MessageDigest.getInstance("SHA-256"));
+    sink.write(new byte[20], 0, 20);
+    sink.close();
+    assertEquals(1, pool.idleCount());
+
+    sink.close();
+    sink.digest();
+    assertEquals(1, pool.idleCount());
+  }
+
+}
@@ -0,0 +1,188 @@
+package io.setl.xml;
+
+import static io.setl.ExampleSigning.loadKeyStore;
+import static io.setl.ExampleSigning.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Shares a single signer-verifier between many threads, each of which signs and validates its own copy of the example message. The same work is run on
+ * platform threads, on virtual threads where the JDK has them, and on an increasing number of threads to show how throughput scales.
+ *
+ * @author agent on 18/10/2026.
+ */
+public class IsoSignerVerifierConcurrencyTest {
+
+  /** Number of sign-and-validate operations performed by each thread. */
+  private static final int OPERATIONS_PER_THREAD = 50;
+
+  /** Number of threads sharing the signer-verifier. */
+  private static final int THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+  /** The text of the example AppHdr. */
+  private static String appHdrText;
+
+  /** The text of the example Document. */
+  private static String documentText;
+
+  /** The example private key. */
+  private static PrivateKey privateKey;
+
+  /** The example certificate. */
+  private static X509Certificate x509;
+
+
+  private static String loadText(String resource) throws IOException {
+    try (InputStream inputStream = IsoSignerVerifierConcurrencyTest.class.getClassLoader().getResourceAsStream(resource)) {
+      return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+
+  @BeforeAll
+  public static void loadExample() throws Exception {
+    appHdrText = loadText("examples/sign1/apphdr.xml");
+    documentText = loadText("examples/sign1/document.xml");
+    KeyStore keyStore = loadKeyStore("examples/keystore.jks");
+    privateKey = (PrivateKey) keyStore.getKey("example", "password".toCharArray());
+    x509 = (X509Certificate) keyStore.getCertificate("example");
+  }
+
+
+  /**
+   * Get the JDK's virtual thread executor, if this JDK has one.
+   *
+   * @return the executor, or null
+   */
+  private static ExecutorService newVirtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+
+  /**
+   * Sign and validate the example message on many tasks at once, all sharing one signer-verifier, and check every result.
+   *
+   * @param executor the executor which runs the tasks
+   * @param tasks    the number of tasks
+   * @param count    the number of operations performed by each task
+   *
+   * @return the elapsed time in nanoseconds
+   */
+  private static long run(ExecutorService executor, int tasks, int count) throws Exception {
+    // One engine shared by every task.
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<int[]>> futures = new ArrayList<>();
+    long elapsed;
+    try {
+      for (int t = 0; t < tasks; t++) {
+        Callable<int[]> task = () -> {
+          start.await();
+          int[] results = new int[4];
+          for (int i = 0; i < count; i++) {
+            // DOM trees are not thread-safe, so every operation uses its own.
+            Document appHdrDoc = parse(appHdrText);
+            Document document = parse(documentText);
+            Element appHdr = appHdrDoc.getDocumentElement();
+            Element body = document.getDocumentElement();
+            isoSignerVerifier.sign(appHdr, body, privateKey, x509, XMLSignatureMethod.RSA_SHA256);
+
+            // A correctly signed message must validate.
+            results[isoSignerVerifier.validate(appHdr, body) ? 0 : 1]++;
+
+            // A tampered message must not.
+            Element text = (Element) body.getElementsByTagNameNS("*", "*").item(1);
+            text.setAttribute("tampered", Integer.toString(i));
+            results[isoSignerVerifier.validate(appHdr, body) ? 2 : 3]++;
+          }
+          return results;
+        };
+        futures.add(executor.submit(task));
+      }
+
+      long startTime = System.nanoTime();
+      start.countDown();
+      for (Future<int[]> future : futures) {
+        int[] results = future.get(5, TimeUnit.MINUTES);
+        assertEquals(count, results[0], "Correctly signed messages which validated");
+        assertEquals(0, results[1], "Correctly signed messages which failed validation");
+        assertEquals(0, results[2], "Tampered messages which validated");
+        assertEquals(count, results[3], "Tampered messages which failed validation");
+      }
+      elapsed = System.nanoTime() - startTime;
+    } finally {
+      executor.shutdownNow();
+    }
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    return elapsed;
+  }
+
+
+  @Test
+  public void signAndValidateUnderContention() throws Exception {
+    run(Executors.newFixedThreadPool(THREADS), THREADS, OPERATIONS_PER_THREAD);
+  }
+
+
+  @Test
+  public void signAndValidateOnVirtualThreads() throws Exception {
+    ExecutorService executor = newVirtualThreadExecutor();
+    assumeTrue(executor != null, "This JDK does not have virtual threads");
+
+    // Many more tasks than carrier threads, so tasks are unmounted and remounted while they use the shared pools.
+    run(executor, 16 * THREADS, OPERATIONS_PER_THREAD / 5);
+  }
+
+
+  /**
+   * Measure throughput as the number of threads sharing the signer-verifier grows. Each thread performs the same number of operations, so with no contention
+   * the elapsed time stays constant until the threads outnumber the processors. Sharing the engine must never make the total throughput worse than a single
+   * thread's.
+   */
+  @Test
+  public void throughputScalesWithThreads() throws Exception {
+    // Warm up, so that the first measurement does not include class loading and compilation.
+    run(Executors.newSingleThreadExecutor(), 1, OPERATIONS_PER_THREAD);
+
+    int processors = Runtime.getRuntime().availableProcessors();
+    double single = 0;
+    for (int threads = 1; threads <= Math.max(4, 2 * processors); threads *= 2) {
+      long elapsed = run(Executors.newFixedThreadPool(threads), threads, OPERATIONS_PER_THREAD);
+      double throughput = 3.0e9 * threads * OPERATIONS_PER_THREAD / elapsed;
+      System.out.printf("%d processor(s), %2d thread(s): %8.1f operations per second%n", processors, threads, throughput);
+      if (threads == 1) {
+        single = throughput;
+      } else {
+        // Allow for timing noise, but not for the threads queueing on a shared lock.
+        assertTrue(throughput > 0.5 * single, "Throughput with " + threads + " threads fell to " + throughput + " from " + single);
+      }
+    }
+  }
+
+}
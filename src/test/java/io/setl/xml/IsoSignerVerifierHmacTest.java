@@ -0,0 +1,155 @@
+package io.setl.xml;
+
+import static io.setl.ExampleSigning.loadKeyStore;
+import static io.setl.ExampleSigning.parse;
+import static io.setl.ExampleSigning.xmlToString;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Map;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.crypto.dsig.XMLSignatureException;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Node;
+
+/**
+ * Checks that HMAC signature methods are only accepted with a named shared secret key, and certificates only with public key methods, on both the DOM and
+ * the compact path.
+ *
+ * @author agent on 18/10/2026.
+ */
+public class IsoSignerVerifierHmacTest {
+
+  private static final SecretKey SECRET_KEY = new SecretKeySpec("a shared secret of thirty-two bytes!".getBytes(StandardCharsets.US_ASCII), "HmacSHA256");
+
+  private static String appHdrText;
+
+  private static String documentText;
+
+  private static SigningKey rsaKey;
+
+
+  @BeforeAll
+  public static void loadResources() throws Exception {
+    appHdrText = loadText("examples/sign1/apphdr.xml");
+    documentText = loadText("examples/sign1/document.xml");
+    KeyStore keyStore = loadKeyStore("examples/keystore.jks");
+    rsaKey = new SigningKey((PrivateKey) keyStore.getKey("example", "password".toCharArray()), (X509Certificate) keyStore.getCertificate("example"));
+  }
+
+
+  private static String loadText(String resource) throws IOException {
+    try (InputStream inputStream = IsoSignerVerifierHmacTest.class.getClassLoader().getResourceAsStream(resource)) {
+      return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+
+  private static IsoSignerVerifier withResolver() {
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    isoSignerVerifier.setSecretKeyResolver(Map.of("hop-1", SECRET_KEY)::get);
+    return isoSignerVerifier;
+  }
+
+
+  /**
+   * Check that a header is rejected with an exception on both paths.
+   *
+   * @param isoSignerVerifier the verifier
+   * @param header            the header text
+   * @param document          the Document
+   * @param message           text expected in the exception message
+   */
+  private static void assertRejected(IsoSignerVerifier isoSignerVerifier, String header, Node document, String message) {
+    XMLSignatureException e = assertThrows(XMLSignatureException.class, () -> isoSignerVerifier.validate(parse(header).getDocumentElement(), document));
+    assertTrue(e.getMessage().contains(message), e.getMessage());
+    e = assertThrows(XMLSignatureException.class, () -> isoSignerVerifier.validate(CompactTree.parse(header), document));
+    assertTrue(e.getMessage().contains(message), e.getMessage());
+  }
+
+
+  private static String withMethod(String header, XMLSignatureMethod from, XMLSignatureMethod to) {
+    String changed = header.replace("Algorithm=\"" + from.getUri() + "\"", "Algorithm=\"" + to.getUri() + "\"");
+    assertFalse(changed.equals(header));
+    return changed;
+  }
+
+
+  @Test
+  public void isHmacSha2() {
+    assertTrue(SignatureAlgorithms.isHmacSha2(XMLSignatureMethod.HMAC_SHA256));
+    assertTrue(SignatureAlgorithms.isHmacSha2(XMLSignatureMethod.HMAC_SHA512));
+    assertFalse(SignatureAlgorithms.isHmacSha2(XMLSignatureMethod.HMAC_SHA1));
+    assertFalse(SignatureAlgorithms.isHmacSha2(XMLSignatureMethod.RSA_SHA256));
+    assertFalse(SignatureAlgorithms.isHmacSha2(null));
+  }
+
+
+  @Test
+  public void certificateWithHmacMethod() throws Exception {
+    IsoSignerVerifier isoSignerVerifier = withResolver();
+    Node document = parse(documentText).getDocumentElement();
+    Node header = parse(appHdrText).getDocumentElement();
+    isoSignerVerifier.sign(header, document, rsaKey);
+
+    String changed = withMethod(xmlToString(header), XMLSignatureMethod.RSA_SHA256, XMLSignatureMethod.HMAC_SHA256);
+    assertRejected(isoSignerVerifier, changed, document, "require a shared secret key");
+  }
+
+
+  @Test
+  public void keyNameWithPublicKeyMethod() throws Exception {
+    IsoSignerVerifier isoSignerVerifier = withResolver();
+    Node document = parse(documentText).getDocumentElement();
+    Node header = parse(appHdrText).getDocumentElement();
+    isoSignerVerifier.sign(header, document, SECRET_KEY, "hop-1", XMLSignatureMethod.HMAC_SHA256);
+    assertTrue(isoSignerVerifier.validate(header, document));
+
+    String changed = withMethod(xmlToString(header), XMLSignatureMethod.HMAC_SHA256, XMLSignatureMethod.RSA_SHA256);
+    assertRejected(isoSignerVerifier, changed, document, "HMAC-SHA2");
+  }
+
+
+  @Test
+  public void hmacSha1IsRejected() throws Exception {
+    IsoSignerVerifier isoSignerVerifier = withResolver();
+    Node document = parse(documentText).getDocumentElement();
+
+    // It cannot be used to sign
+    SecretKey sha1Key = new SecretKeySpec(new byte[32], "HmacSHA1");
+    assertThrows(IllegalArgumentException.class,
+        () -> isoSignerVerifier.sign(parse(appHdrText).getDocumentElement(), document, sha1Key, "hop-1", XMLSignatureMethod.HMAC_SHA1)
+    );
+    assertThrows(IllegalArgumentException.class, () -> isoSignerVerifier.sign(CompactTree.parse(appHdrText), document, sha1Key, "hop-1",
+        XMLSignatureMethod.HMAC_SHA1
+    ));
+
+    // A signature which claims to use it is not validated
+    Node header = parse(appHdrText).getDocumentElement();
+    isoSignerVerifier.sign(header, document, SECRET_KEY, "hop-1", XMLSignatureMethod.HMAC_SHA256);
+    String changed = withMethod(xmlToString(header), XMLSignatureMethod.HMAC_SHA256, XMLSignatureMethod.HMAC_SHA1);
+    assertThrows(XMLSignatureException.class, () -> isoSignerVerifier.validate(parse(changed).getDocumentElement(), document));
+    assertThrows(XMLSignatureException.class, () -> isoSignerVerifier.validate(CompactTree.parse(changed), document));
+  }
+
+
+  @Test
+  public void noResolverRejectsHmac() throws Exception {
+    Node document = parse(documentText).getDocumentElement();
+    Node header = parse(appHdrText).getDocumentElement();
+    withResolver().sign(header, document, SECRET_KEY, "hop-1", XMLSignatureMethod.HMAC_SHA256);
+
+    assertRejected(new IsoSignerVerifier(), xmlToString(header), document, "no secret key resolver");
+  }
+
+}
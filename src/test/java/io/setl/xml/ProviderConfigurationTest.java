@@ -0,0 +1,182 @@
+package io.setl.xml;
+
+import static io.setl.ExampleSigning.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.Provider;
+import java.security.Security;
+import java.util.Map;
+import java.util.Properties;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.crypto.dsig.XMLSignatureException;
+import javax.xml.crypto.dsig.dom.DOMSignContext;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+
+/**
+ * @author agent on 18/10/2026.
+ */
+public class ProviderConfigurationTest {
+
+  /** A provider with no services, which can be named by its class. */
+  public static class EmptyProvider extends Provider {
+
+    private static final long serialVersionUID = 1L;
+
+
+    public EmptyProvider() {
+      super("EmptyProvider", "1.0", "A provider with no services");
+    }
+
+  }
+
+
+  private static final String CONTEXT_MAC_PROVIDER = "org.jcp.xml.dsig.internal.dom.MacProvider";
+
+  private static final String CONTEXT_SIGNATURE_PROVIDER = "org.jcp.xml.dsig.internal.dom.SignatureProvider";
+
+
+  private static Properties properties(String... pairs) {
+    Properties properties = new Properties();
+    for (int i = 0; i < pairs.length; i += 2) {
+      properties.setProperty(pairs[i], pairs[i + 1]);
+    }
+    return properties;
+  }
+
+
+  @Test
+  public void classNameProvider() throws Exception {
+    ProviderConfiguration configuration = ProviderConfiguration.fromProperties(properties(ProviderConfiguration.PROPERTY_DIGEST, EmptyProvider.class.getName()));
+    assertTrue(configuration.getDigestProvider() instanceof EmptyProvider);
+  }
+
+
+  @Test
+  public void defaults() throws Exception {
+    for (ProviderConfiguration configuration : new ProviderConfiguration[]{
+        ProviderConfiguration.DEFAULT,
+        ProviderConfiguration.fromProperties(new Properties()),
+        ProviderConfiguration.fromProperties(properties(ProviderConfiguration.PROPERTY_DIGEST, " ", ProviderConfiguration.PROPERTY_SIGNATURE, ""))
+    }) {
+      assertNull(configuration.getXmlSignatureProvider());
+      assertNull(configuration.getDigestProvider());
+      assertTrue(configuration.getSignatureProviders().isEmpty());
+      assertNull(configuration.getSignatureProvider(XMLSignatureMethod.RSA_SHA256));
+      assertNull(configuration.getSignatureProvider(null));
+    }
+  }
+
+
+  @Test
+  public void installedProviders() throws Exception {
+    ProviderConfiguration configuration = ProviderConfiguration.fromProperties(properties(
+        ProviderConfiguration.PROPERTY_XML_SIGNATURE, "XMLDSig",
+        ProviderConfiguration.PROPERTY_DIGEST, " SUN ",
+        ProviderConfiguration.PROPERTY_SIGNATURE, "SunRsaSign",
+        ProviderConfiguration.PROPERTY_SIGNATURE_PREFIX + "HMAC_SHA256", "SunJCE"
+    ));
+    assertSame(Security.getProvider("XMLDSig"), configuration.getXmlSignatureProvider());
+    assertSame(Security.getProvider("SUN"), configuration.getDigestProvider());
+
+    // The provider for one method overrides the provider for all methods.
+    assertSame(Security.getProvider("SunJCE"), configuration.getSignatureProvider(XMLSignatureMethod.HMAC_SHA256));
+    for (XMLSignatureMethod method : XMLSignatureMethod.values()) {
+      if (method != XMLSignatureMethod.HMAC_SHA256) {
+        assertSame(Security.getProvider("SunRsaSign"), configuration.getSignatureProvider(method), method.name());
+      }
+    }
+  }
+
+
+  @Test
+  public void contextProperties() throws Exception {
+    Provider sunJce = Security.getProvider("SunJCE");
+    Provider sunRsaSign = Security.getProvider("SunRsaSign");
+    ProviderConfiguration configuration = new ProviderConfiguration(null, null, Map.of(
+        XMLSignatureMethod.HMAC_SHA256, sunJce,
+        XMLSignatureMethod.RSA_SHA256, sunRsaSign
+    ));
+    Element element = parse("<a/>").getDocumentElement();
+    SecretKey key = new SecretKeySpec(new byte[32], "HmacSHA256");
+
+    // An HMAC method sets the MAC provider property, and a public key method the signature provider property.
+    DOMSignContext context = new DOMSignContext(key, element);
+    configuration.configure(context, XMLSignatureMethod.HMAC_SHA256);
+    assertSame(sunJce, context.getProperty(CONTEXT_MAC_PROVIDER));
+    assertNull(context.getProperty(CONTEXT_SIGNATURE_PROVIDER));
+
+    context = new DOMSignContext(key, element);
+    configuration.configure(context, XMLSignatureMethod.RSA_SHA256);
+    assertSame(sunRsaSign, context.getProperty(CONTEXT_SIGNATURE_PROVIDER));
+    assertNull(context.getProperty(CONTEXT_MAC_PROVIDER));
+
+    // A method with no provider sets neither.
+    context = new DOMSignContext(key, element);
+    configuration.configure(context, XMLSignatureMethod.ECDSA_SHA256);
+    assertNull(context.getProperty(CONTEXT_SIGNATURE_PROVIDER));
+    assertNull(context.getProperty(CONTEXT_MAC_PROVIDER));
+  }
+
+
+  @Test
+  public void hmacProviderIsUsed() throws Exception {
+    SecretKey key = new SecretKeySpec(new byte[32], "HmacSHA256");
+    Element document = parse("<pacs:Document xmlns:pacs=\"urn:iso:std:iso:20022:tech:xsd:pacs.008.001.10\"/>").getDocumentElement();
+    String appHdr = "<head:AppHdr xmlns:head=\"" + Constants.NS_ISO_HEAD + "\"><head:BizMsgIdr>1</head:BizMsgIdr></head:AppHdr>";
+
+    IsoSignerVerifier good = new IsoSignerVerifier(ProviderConfiguration.fromProperties(properties(
+        ProviderConfiguration.PROPERTY_SIGNATURE_PREFIX + "HMAC_SHA256", "SunJCE"
+    )));
+    good.setSecretKeyResolver(Map.of("hop", key)::get);
+    Element header = parse(appHdr).getDocumentElement();
+    good.sign(header, document, key, "hop", XMLSignatureMethod.HMAC_SHA256);
+    assertTrue(good.validate(header, document));
+
+    // A provider without the MAC algorithm cannot sign, on either path.
+    IsoSignerVerifier bad = new IsoSignerVerifier(ProviderConfiguration.fromProperties(properties(
+        ProviderConfiguration.PROPERTY_SIGNATURE_PREFIX + "HMAC_SHA256", EmptyProvider.class.getName()
+    )));
+    XMLSignatureException e = assertThrows(XMLSignatureException.class,
+        () -> bad.sign(parse(appHdr).getDocumentElement(), document, key, "hop", XMLSignatureMethod.HMAC_SHA256)
+    );
+    assertTrue(e.getCause() instanceof NoSuchAlgorithmException);
+    assertThrows(NoSuchAlgorithmException.class, () -> bad.sign(CompactTree.parse(appHdr), document, key, "hop", XMLSignatureMethod.HMAC_SHA256));
+  }
+
+
+  @Test
+  public void unknownMethod() {
+    NoSuchAlgorithmException e = assertThrows(NoSuchAlgorithmException.class,
+        () -> ProviderConfiguration.fromProperties(properties(ProviderConfiguration.PROPERTY_SIGNATURE_PREFIX + "RSA_MD5", "SunRsaSign"))
+    );
+    assertTrue(e.getMessage().contains("signature.provider.RSA_MD5"), e.getMessage());
+  }
+
+
+  @Test
+  public void unknownProvider() {
+    NoSuchProviderException e = assertThrows(NoSuchProviderException.class,
+        () -> ProviderConfiguration.fromProperties(properties(ProviderConfiguration.PROPERTY_DIGEST, "NoSuchProvider"))
+    );
+    assertTrue(e.getCause() instanceof ClassNotFoundException);
+
+    // A class which is not a provider
+    e = assertThrows(NoSuchProviderException.class,
+        () -> ProviderConfiguration.fromProperties(properties(ProviderConfiguration.PROPERTY_SIGNATURE, String.class.getName()))
+    );
+    assertTrue(e.getCause() instanceof ClassCastException);
+    assertThrows(NoSuchProviderException.class,
+        () -> ProviderConfiguration.fromProperties(properties(ProviderConfiguration.PROPERTY_SIGNATURE_PREFIX + "RSA_SHA256", "NoSuchProvider"))
+    );
+  }
+
+}
@@ -0,0 +1,280 @@
+package io.setl.xml;
+
+import static io.setl.ExampleSigning.parse;
+import static javax.xml.crypto.dsig.CanonicalizationMethod.EXCLUSIVE;
+import static javax.xml.crypto.dsig.CanonicalizationMethod.EXCLUSIVE_WITH_COMMENTS;
+import static javax.xml.crypto.dsig.CanonicalizationMethod.INCLUSIVE;
+import static javax.xml.crypto.dsig.CanonicalizationMethod.INCLUSIVE_WITH_COMMENTS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.security.MessageDigest;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.List;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.crypto.Data;
+import javax.xml.crypto.XMLCryptoContext;
+import javax.xml.crypto.dsig.DigestMethod;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.SignatureMethod;
+import javax.xml.crypto.dsig.SignedInfo;
+import javax.xml.crypto.dsig.Transform;
+import javax.xml.crypto.dsig.TransformException;
+import javax.xml.crypto.dsig.XMLSignatureException;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMSignContext;
+import javax.xml.crypto.dsig.spec.C14NMethodParameterSpec;
+import javax.xml.crypto.dsig.spec.ExcC14NParameterSpec;
+import javax.xml.crypto.dsig.spec.TransformParameterSpec;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+/**
+ * Checks that digesting a reference through a pooled buffer gives the same digest as the JDK's XML Signature implementation, and measures what it allocates.
+ *
+ * @author agent on 18/10/2026.
+ */
+public class ReferenceDigesterTest {
+
+  /** A Document with comments, an unused namespace, a nested namespace declaration, and text and attributes that need escaping. */
+  private static final String DOCUMENT = "<p:Document xmlns:p=\"urn:p\" xmlns:unused=\"urn:unused\">\n"
+      + "  <!-- a comment -->\n"
+      + "  <p:Tx q:b=\"2\" a=\"&lt;1&gt;\" xmlns:q=\"urn:q\">Fish &amp; chips <![CDATA[<raw>]]></p:Tx>\n"
+      + "  <p:Empty/>\n"
+      + "</p:Document>";
+
+  /** A secret key, so the test signatures are cheap. */
+  private static final SecretKeySpec HMAC_KEY = new SecretKeySpec(new byte[32], "HmacSHA256");
+
+
+  /**
+   * Create a Document of about a hundred bytes per transaction.
+   *
+   * @param transactions the number of transactions
+   *
+   * @return the Document
+   */
+  private static Document largeDocument(int transactions) {
+    StringBuilder builder = new StringBuilder("<p:Document xmlns:p=\"urn:p\">");
+    for (int i = 0; i < transactions; i++) {
+      builder.append("<p:Tx><p:Id>").append(i).append("</p:Id><p:Amt Ccy=\"EUR\">100.00</p:Amt><p:Nm>Creditor name</p:Nm></p:Tx>\n");
+    }
+    return parse(builder.append("</p:Document>").toString());
+  }
+
+
+  /**
+   * Create a context in which the null URI refers to a Document.
+   *
+   * @param factory  the signature factory
+   * @param document the Document
+   *
+   * @return the context
+   */
+  private static DOMSignContext signContext(XMLSignatureFactory factory, Document document) {
+    DOMSignContext context = new DOMSignContext(HMAC_KEY, parse("<Signature/>").getDocumentElement());
+    context.setURIDereferencer(new IsoUriDereferencer(factory.getURIDereferencer(), null, document.getDocumentElement()));
+    return context;
+  }
+
+
+  /**
+   * Let the JDK's XML Signature implementation digest a Document reference.
+   *
+   * @param factory   the signature factory
+   * @param context   the signing context
+   * @param transform the reference's transform
+   * @param digest    the reference's digest method
+   *
+   * @return the reference, which has been digested and marshalled
+   */
+  private static Reference signedReference(XMLSignatureFactory factory, DOMSignContext context, Transform transform, String digest) throws Exception {
+    Reference reference = factory.newReference(null, factory.newDigestMethod(digest, null), List.of(transform), null, null);
+    SignedInfo signedInfo = factory.newSignedInfo(
+        factory.newCanonicalizationMethod(EXCLUSIVE, (C14NMethodParameterSpec) null),
+        factory.newSignatureMethod(SignatureMethod.HMAC_SHA256, null),
+        List.of(reference)
+    );
+    factory.newXMLSignature(signedInfo, null).sign(context);
+    return reference;
+  }
+
+
+  private static long allocatedBytes(com.sun.management.ThreadMXBean threads) {
+    return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+
+  @Test
+  public void digestMatchesJsr105ForEachCanonicalization() throws Exception {
+    XMLSignatureFactory factory = XMLSignatureFactory.getInstance("DOM");
+    Document document = parse(DOCUMENT);
+    Transform[] transforms = {
+        factory.newTransform(EXCLUSIVE, (TransformParameterSpec) null),
+        factory.newTransform(EXCLUSIVE_WITH_COMMENTS, (TransformParameterSpec) null),
+        factory.newTransform(EXCLUSIVE, new ExcC14NParameterSpec(List.of("unused"))),
+        factory.newTransform(INCLUSIVE, (TransformParameterSpec) null),
+        factory.newTransform(INCLUSIVE_WITH_COMMENTS, (TransformParameterSpec) null)
+    };
+    for (int i = 0; i < transforms.length; i++) {
+      DOMSignContext context = signContext(factory, document);
+      Reference reference = signedReference(factory, context, transforms[i], DigestMethod.SHA256);
+      byte[] digest = ReferenceDigester.digest(
+          reference.getTransforms().get(0), context.getURIDereferencer(), reference, context, DigestMethod.SHA256, null);
+      assertArrayEquals(reference.getDigestValue(), digest, "Transform " + i);
+
+      // Only plain exclusive canonicalization may replace the JSR-105 digest.
+      assertEquals(i == 0, ReferenceDigester.canDigest(reference), "Transform " + i);
+    }
+
+    // The transform used when signing must give the same canonical form as the transform in the signature.
+    DOMSignContext context = signContext(factory, document);
+    Reference reference = signedReference(factory, context, transforms[0], DigestMethod.SHA256);
+    Transform detached = ReferenceDigester.newExclusiveC14n(factory.getProvider(), document, context);
+    assertArrayEquals(reference.getDigestValue(), ReferenceDigester.digest(detached, context.getURIDereferencer(), null, context, DigestMethod.SHA256, null));
+  }
+
+
+  @Test
+  public void digestMatchesJsr105ForEachDigestMethod() throws Exception {
+    XMLSignatureFactory factory = XMLSignatureFactory.getInstance("DOM");
+    Document document = parse(DOCUMENT);
+    for (String method : new String[]{DigestMethod.SHA1, DigestMethod.SHA224, DigestMethod.SHA256, DigestMethod.SHA384, DigestMethod.SHA512}) {
+      DOMSignContext context = signContext(factory, document);
+      Reference reference = signedReference(factory, context, factory.newTransform(EXCLUSIVE, (TransformParameterSpec) null), method);
+      assertTrue(ReferenceDigester.canDigest(reference), method);
+      byte[] digest = ReferenceDigester.digest(reference.getTransforms().get(0), context.getURIDereferencer(), reference, context, method, null);
+      assertArrayEquals(reference.getDigestValue(), digest, method);
+    }
+
+    assertThrows(XMLSignatureException.class, () -> ReferenceDigester.newMessageDigest(DigestMethod.RIPEMD160, null));
+  }
+
+
+  @Test
+  public void bufferIsReturnedWhenCanonicalizationFails() throws Exception {
+    XMLSignatureFactory factory = XMLSignatureFactory.getInstance("DOM");
+    DOMSignContext context = signContext(factory, parse(DOCUMENT));
+    Transform real = ReferenceDigester.newExclusiveC14n(factory.getProvider(), parse(DOCUMENT), context);
+
+    // Fails part way through its output, after the buffer has been filled and drained several times.
+    class FailingTransform implements Transform {
+
+      final RuntimeException runtimeException;
+
+
+      FailingTransform(RuntimeException runtimeException) {
+        this.runtimeException = runtimeException;
+      }
+
+
+      @Override
+      public String getAlgorithm() {
+        return real.getAlgorithm();
+      }
+
+
+      @Override
+      public AlgorithmParameterSpec getParameterSpec() {
+        return null;
+      }
+
+
+      @Override
+      public boolean isFeatureSupported(String feature) {
+        return false;
+      }
+
+
+      @Override
+      public Data transform(Data data, XMLCryptoContext context) {
+        throw new UnsupportedOperationException();
+      }
+
+
+      @Override
+      public Data transform(Data data, XMLCryptoContext context, OutputStream os) throws TransformException {
+        try {
+          os.write(new byte[3 * ByteBufferPool.BUFFER_SIZE + 1]);
+        } catch (IOException e) {
+          throw new TransformException(e);
+        }
+        if (runtimeException != null) {
+          throw runtimeException;
+        }
+        throw new TransformException("Failed");
+      }
+
+    }
+
+    int idle = ByteBufferPool.SHARED.idleCount();
+    assertThrows(XMLSignatureException.class,
+        () -> ReferenceDigester.digest(new FailingTransform(null), context.getURIDereferencer(), null, context, DigestMethod.SHA256, null));
+    assertEquals(Math.max(1, idle), ByteBufferPool.SHARED.idleCount());
+
+    idle = ByteBufferPool.SHARED.idleCount();
+    IllegalStateException failure = new IllegalStateException();
+    assertEquals(failure, assertThrows(IllegalStateException.class,
+        () -> ReferenceDigester.digest(new FailingTransform(failure), context.getURIDereferencer(), null, context, DigestMethod.SHA256, null)));
+    assertEquals(idle, ByteBufferPool.SHARED.idleCount());
+  }
+
+
+  /**
+   * Measure the heap allocated by digesting a Document reference through a pooled buffer, and by canonicalizing into a byte array and digesting that. The
+   * pooled buffer saves the byte array, which is at least the size of the canonical form, but the JDK canonicalizer's own allocation for the set of nodes and
+   * their text remains, so the total is not close to zero. The figures are printed for Documents from 1 KB to a few MB.
+   */
+  @Test
+  public void allocation() throws Exception {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean, "Allocation cannot be measured on this JVM");
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled(), "Allocation cannot be measured on this JVM");
+
+    XMLSignatureFactory factory = XMLSignatureFactory.getInstance("DOM");
+    long saved = 0;
+    int length = 0;
+    for (int transactions : new int[]{10, 1_000, 10_000, 30_000}) {
+      Document document = largeDocument(transactions);
+      DOMSignContext context = signContext(factory, document);
+      Transform c14n = ReferenceDigester.newExclusiveC14n(factory.getProvider(), document, context);
+
+      // Take the least of several runs, as the JIT changes how much is allocated while it compiles the canonicalizer.
+      byte[] pooled = null;
+      byte[] buffered = null;
+      byte[] canonical = null;
+      long pooledBytes = Long.MAX_VALUE;
+      long bufferedBytes = Long.MAX_VALUE;
+      for (int run = 0; run < 3; run++) {
+        long start = allocatedBytes(threads);
+        pooled = ReferenceDigester.digest(c14n, context.getURIDereferencer(), null, context, DigestMethod.SHA256, null);
+        pooledBytes = Math.min(pooledBytes, allocatedBytes(threads) - start);
+
+        start = allocatedBytes(threads);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        c14n.transform(context.getURIDereferencer().dereference(null, context), context, output);
+        canonical = output.toByteArray();
+        buffered = MessageDigest.getInstance("SHA-256").digest(canonical);
+        bufferedBytes = Math.min(bufferedBytes, allocatedBytes(threads) - start);
+      }
+
+      assertArrayEquals(buffered, pooled);
+      System.out.printf("%,11d canonical bytes: pooled %,13d allocated (%5.1f per byte), buffered %,13d allocated (%5.1f per byte)%n",
+          canonical.length, pooledBytes, (double) pooledBytes / canonical.length, bufferedBytes, (double) bufferedBytes / canonical.length);
+      saved = bufferedBytes - pooledBytes;
+      length = canonical.length;
+    }
+
+    // For the largest Document, the pooled buffer must have saved at least one copy of the canonical form.
+    assertTrue(saved >= length, "Pooled digesting saved " + saved + " bytes of allocation for " + length + " canonical bytes");
+  }
+
+}
@@ -0,0 +1,142 @@
+package io.setl.xml;
+
+import static io.setl.ExampleSigning.loadKeyStore;
+import static io.setl.ExampleSigning.parse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+import javax.xml.crypto.dsig.DigestMethod;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.SignedInfo;
+import javax.xml.crypto.dsig.Transform;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMSignContext;
+import javax.xml.crypto.dsig.keyinfo.KeyInfoFactory;
+import javax.xml.crypto.dsig.spec.C14NMethodParameterSpec;
+import javax.xml.crypto.dsig.spec.TransformParameterSpec;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * @author agent on 18/10/2026.
+ */
+public class VerifyAndResignTest {
+
+  private static String appHdrText;
+
+  private static String documentText;
+
+  private static SigningKey signingKey;
+
+
+  @BeforeAll
+  public static void loadResources() throws Exception {
+    appHdrText = loadText("examples/sign1/apphdr.xml");
+    // The unused namespace declaration is in the inclusive canonical form of the Document, but not the exclusive one.
+    documentText = loadText("examples/sign1/document.xml").replaceFirst("<pacs:Document ", "<pacs:Document xmlns:unused=\"urn:unused\" ");
+    KeyStore keyStore = loadKeyStore("examples/keystore.jks");
+    signingKey = new SigningKey((PrivateKey) keyStore.getKey("example", "password".toCharArray()), (X509Certificate) keyStore.getCertificate("example"));
+  }
+
+
+  private static String loadText(String resource) throws IOException {
+    try (InputStream inputStream = VerifyAndResignTest.class.getClassLoader().getResourceAsStream(resource)) {
+      return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+
+  /**
+   * Sign a header and document with the usual three references, except that the Document is canonicalized with the given transform.
+   */
+  private static void signWithDocumentTransform(Document appHdr, Document document, String documentTransform) throws Exception {
+    XMLSignatureFactory factory = XMLSignatureFactory.getInstance("DOM");
+    KeyInfoFactory keyInfoFactory = factory.getKeyInfoFactory();
+    Node sgntr = appHdr.getElementsByTagNameNS(Constants.NS_ISO_HEAD, Constants.ISO_SIGNATURE_NODE).item(0);
+
+    DOMSignContext context = new DOMSignContext(signingKey.getPrivateKey(), sgntr);
+    context.setDefaultNamespacePrefix("sign");
+    context.setURIDereferencer(new IsoUriDereferencer(keyInfoFactory.getURIDereferencer(), appHdr.getDocumentElement(), document.getDocumentElement()));
+
+    DigestMethod sha256 = factory.newDigestMethod(DigestMethod.SHA256, null);
+    Transform exclusive = factory.newTransform(CanonicalizationMethod.EXCLUSIVE, (TransformParameterSpec) null);
+    List<Reference> references = List.of(
+        factory.newReference("#KeyInfo-1", sha256, List.of(exclusive), null, null),
+        factory.newReference("", sha256, List.of(factory.newTransform(Transform.ENVELOPED, (TransformParameterSpec) null), exclusive), null, null),
+        factory.newReference(null, sha256, List.of(factory.newTransform(documentTransform, (TransformParameterSpec) null)), null, null)
+    );
+    SignedInfo signedInfo = factory.newSignedInfo(
+        factory.newCanonicalizationMethod(CanonicalizationMethod.EXCLUSIVE, (C14NMethodParameterSpec) null),
+        factory.newSignatureMethod(XMLSignatureMethod.RSA_SHA256.getUri(), null),
+        references
+    );
+    factory.newXMLSignature(signedInfo, keyInfoFactory.newKeyInfo(List.of(keyInfoFactory.newX509Data(List.of(signingKey.getCertificate()))), "KeyInfo-1"))
+        .sign(context);
+  }
+
+
+  private static void updateRecipient(Node header) {
+    Element to = (Element) ((Element) header).getElementsByTagNameNS(Constants.NS_ISO_HEAD, "To").item(0);
+    to.getElementsByTagNameNS(Constants.NS_ISO_HEAD, "Nm").item(0).setTextContent("Next-hop");
+  }
+
+
+  @Test
+  public void exclusiveDocumentDigestIsReused() throws Exception {
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    Document appHdr = parse(appHdrText);
+    Document document = parse(documentText);
+    signWithDocumentTransform(appHdr, document, CanonicalizationMethod.EXCLUSIVE);
+
+    Node resigned = isoSignerVerifier.verifyAndResign(appHdr.getDocumentElement(), document.getDocumentElement(), VerifyAndResignTest::updateRecipient,
+        signingKey
+    );
+    assertNotNull(resigned);
+    assertTrue(isoSignerVerifier.validate(resigned, document.getDocumentElement()));
+  }
+
+
+  @Test
+  public void inclusiveDocumentDigestIsNotReused() throws Exception {
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    Document appHdr = parse(appHdrText);
+    Document document = parse(documentText);
+    signWithDocumentTransform(appHdr, document, CanonicalizationMethod.INCLUSIVE);
+    assertTrue(isoSignerVerifier.validate(appHdr.getDocumentElement(), document.getDocumentElement()));
+
+    // The new signature uses exclusive canonicalization, so the Document must be digested again.
+    Node resigned = isoSignerVerifier.verifyAndResign(appHdr.getDocumentElement(), document.getDocumentElement(), VerifyAndResignTest::updateRecipient,
+        signingKey
+    );
+    assertNotNull(resigned);
+    assertTrue(isoSignerVerifier.validate(resigned, document.getDocumentElement()));
+  }
+
+
+  @Test
+  public void invalidSignatureIsNotResigned() throws Exception {
+    IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+    Document appHdr = parse(appHdrText);
+    Document document = parse(documentText);
+    isoSignerVerifier.sign(appHdr.getDocumentElement(), document.getDocumentElement(), signingKey);
+    updateRecipient(appHdr.getDocumentElement());
+
+    assertNull(isoSignerVerifier.verifyAndResign(appHdr.getDocumentElement(), document.getDocumentElement(), VerifyAndResignTest::updateRecipient,
+        signingKey
+    ));
+  }
+
+}
@@ -0,0 +1,158 @@
+package io.setl.xml.audit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.setl.xml.metrics.Operation;
+import io.setl.xml.metrics.Outcome;
+
+/**
+ * @author agent on 18/10/2026.
+ */
+public class MappedAuditJournalTest {
+
+  private static AuditRecord auditRecord(int i) {
+    byte[] fingerprint = new byte[32];
+    fingerprint[0] = (byte) i;
+    return new AuditRecord(1_000_000L + i, Operation.VALIDATE, Outcome.VALID, "MSG-" + i, fingerprint, List.of(new byte[]{(byte) i, 2, 3}, new byte[64]));
+  }
+
+
+  private static List<AuditRecord> readAll(Path directory) throws Exception {
+    ArrayList<AuditRecord> records = new ArrayList<>();
+    new AuditJournalReader(directory).forEach(records::add);
+    return records;
+  }
+
+
+  @Test
+  public void appendedRecordsBecomeDurable(@TempDir Path directory) throws Exception {
+    try (MappedAuditJournal journal = new MappedAuditJournal(directory, 4, 10)) {
+      long position = -1;
+      for (int i = 0; i < 10; i++) {
+        long next = journal.append(auditRecord(i));
+        assertEquals(position + 1, next);
+        position = next;
+      }
+
+      // The committer stores the full segments and the current one.
+      assertTrue(journal.awaitDurable(position, 10_000));
+    }
+    assertEquals(10, readAll(directory).size());
+  }
+
+
+  @Test
+  public void durabilityWaitsForGroupCommit(@TempDir Path directory) throws Exception {
+    try (MappedAuditJournal journal = new MappedAuditJournal(directory, 4, 60_000)) {
+      long position = 0;
+      for (int i = 0; i < 10; i++) {
+        position = journal.append(auditRecord(i));
+      }
+
+      // Rotating to new segments does not store the full ones on the appending thread.
+      assertFalse(journal.awaitDurable(0, 50));
+
+      journal.flush();
+      assertTrue(journal.awaitDurable(position, 0));
+      assertFalse(journal.awaitDurable(position + 1, 0));
+      assertEquals(3, MappedAuditJournal.segments(directory).size());
+    }
+    assertEquals(10, readAll(directory).size());
+
+    // Positions continue after a restart, and records appended before the restart are durable.
+    MappedAuditJournal journal = new MappedAuditJournal(directory, 4, 60_000);
+    assertTrue(journal.awaitDurable(9, 0));
+    assertEquals(10, journal.append(auditRecord(10)));
+    journal.close();
+    assertTrue(journal.awaitDurable(10, 0));
+    assertEquals(-1, journal.append(auditRecord(11)));
+    assertEquals(11, readAll(directory).size());
+  }
+
+
+  @Test
+  public void longIdIsTruncated(@TempDir Path directory) throws Exception {
+    String id = "\u00e9".repeat(100);
+    try (MappedAuditJournal journal = new MappedAuditJournal(directory, 4, 1000)) {
+      journal.record(new AuditRecord(1, Operation.SIGN, Outcome.SIGNED, id, null, List.of()));
+    }
+    AuditRecord auditRecord = readAll(directory).get(0);
+    assertEquals("\u00e9".repeat(MappedAuditJournal.MAX_ID / 2), auditRecord.getBizMsgIdr());
+    assertNull(auditRecord.getCertificateFingerprint());
+  }
+
+
+  @Test
+  public void recordsAreReadBack(@TempDir Path directory) throws Exception {
+    try (MappedAuditJournal journal = new MappedAuditJournal(directory, 4, 1000)) {
+      for (int i = 0; i < 10; i++) {
+        journal.record(auditRecord(i));
+      }
+    }
+
+    List<AuditRecord> records = readAll(directory);
+    assertEquals(10, records.size());
+    for (int i = 0; i < 10; i++) {
+      AuditRecord auditRecord = records.get(i);
+      assertEquals("MSG-" + i, auditRecord.getBizMsgIdr());
+      assertEquals(1_000_000L + i, auditRecord.getTimestampMicros());
+      assertEquals((byte) i, auditRecord.getCertificateFingerprint()[0]);
+      assertEquals(2, auditRecord.getReferenceDigests().size());
+      assertArrayEquals(new byte[]{(byte) i, 2, 3}, auditRecord.getReferenceDigests().get(0));
+    }
+
+    List<AuditRecord> found = new AuditJournalReader(directory).find("MSG-7");
+    assertEquals(1, found.size());
+    assertEquals(1_000_007L, found.get(0).getTimestampMicros());
+  }
+
+
+  @Test
+  public void tornRecordIsNotRead(@TempDir Path directory) throws Exception {
+    try (MappedAuditJournal journal = new MappedAuditJournal(directory, 16, 1000)) {
+      for (int i = 0; i < 5; i++) {
+        journal.record(auditRecord(i));
+      }
+    }
+
+    // Simulate a crash which stored the start of the fourth record, including its magic number, but not its end.
+    Path segment = MappedAuditJournal.segments(directory).get(0);
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, channel.size());
+      int offset = 3 * MappedAuditJournal.RECORD_SIZE;
+      for (int i = MappedAuditJournal.OFFSET_DIGESTS; i < MappedAuditJournal.RECORD_SIZE; i++) {
+        buffer.put(offset + i, (byte) 0);
+      }
+      buffer.force();
+      assertNull(MappedAuditJournal.read(buffer, offset));
+      assertNull(MappedAuditJournal.readId(buffer, offset));
+    }
+
+    assertEquals(3, readAll(directory).size());
+    assertEquals(List.of(), new AuditJournalReader(directory).find("MSG-3"));
+
+    // Appending resumes in the torn record's slot
+    try (MappedAuditJournal journal = new MappedAuditJournal(directory, 16, 1000)) {
+      journal.record(auditRecord(99));
+    }
+    List<AuditRecord> records = readAll(directory);
+    assertEquals(5, records.size());
+    assertEquals("MSG-99", records.get(3).getBizMsgIdr());
+  }
+
+}
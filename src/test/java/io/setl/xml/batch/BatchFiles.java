@@ -0,0 +1,111 @@
+package io.setl.xml.batch;
+
+import static io.setl.ExampleSigning.loadKeyStore;
+import static io.setl.ExampleSigning.parse;
+import static io.setl.ExampleSigning.xmlToString;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+
+import org.w3c.dom.Element;
+
+import io.setl.xml.IsoSignerVerifier;
+import io.setl.xml.SigningKey;
+
+/**
+ * Builds batch files of signed messages for the batch tests.
+ *
+ * @author agent on 18/10/2026.
+ */
+class BatchFiles {
+
+  /** The AppHdr namespace declaration in the example message. */
+  static final String HEAD_DECLARATION = "xmlns:head=\"urn:iso:std:iso:20022:tech:xsd:head.001.001.03\"";
+
+  /** The Document namespace declaration in the example message. */
+  static final String PACS_DECLARATION = "xmlns:pacs=\"urn:iso:std:iso:20022:tech:xsd:pacs.008.001.10\"";
+
+  /** The example AppHdr. */
+  private final String appHdrText;
+
+  /** The example Document. */
+  private final String documentText;
+
+  /** The signer-verifier. */
+  private final IsoSignerVerifier isoSignerVerifier = new IsoSignerVerifier();
+
+  /** The key to sign with. */
+  private final SigningKey signingKey;
+
+
+  BatchFiles() throws Exception {
+    appHdrText = loadText("examples/sign1/apphdr.xml");
+    documentText = loadText("examples/sign1/document.xml");
+    KeyStore keyStore = loadKeyStore("examples/keystore.jks");
+    signingKey = new SigningKey((PrivateKey) keyStore.getKey("example", "password".toCharArray()), (X509Certificate) keyStore.getCertificate("example"));
+  }
+
+
+  private static String loadText(String resource) throws IOException {
+    try (InputStream inputStream = BatchFiles.class.getClassLoader().getResourceAsStream(resource)) {
+      return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+
+  private static String withoutDeclaration(String xml) {
+    return xml.replaceFirst("^<\\?xml[^>]*\\?>", "");
+  }
+
+
+  IsoSignerVerifier getIsoSignerVerifier() {
+    return isoSignerVerifier;
+  }
+
+
+  /**
+   * Create a signed message. Its BizMsgIdr is "MSG-" followed by its number.
+   *
+   * @param number   the message's number
+   * @param tampered if true, the Document is changed after signing
+   *
+   * @return the AppHdr followed by the Document, without XML declarations
+   */
+  String message(int number, boolean tampered) throws Exception {
+    Element header = parse(appHdrText.replace("018264daa45f70dc-ad7c516d25f3c02b", "MSG-" + number)).getDocumentElement();
+    Element document = parse(documentText).getDocumentElement();
+    isoSignerVerifier.sign(header, document, signingKey);
+    String documentXml = withoutDeclaration(xmlToString(document));
+    if (tampered) {
+      documentXml = documentXml.replace("100.00000", "900.00000");
+    }
+    return withoutDeclaration(xmlToString(header)) + documentXml;
+  }
+
+
+  /**
+   * Create a batch file in a simple envelope.
+   *
+   * @param count the number of messages
+   *
+   * @return the batch file
+   */
+  InputStream batch(int count) throws Exception {
+    StringBuilder builder = new StringBuilder("<Batch>");
+    for (int i = 0; i < count; i++) {
+      builder.append("<Msg>").append(message(i, false)).append("</Msg>");
+    }
+    return stream(builder.append("</Batch>").toString());
+  }
+
+
+  InputStream stream(String text) {
+    return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
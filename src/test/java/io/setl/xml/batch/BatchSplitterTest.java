@@ -0,0 +1,121 @@
+package io.setl.xml.batch;
+
+import static io.setl.xml.batch.BatchFiles.HEAD_DECLARATION;
+import static io.setl.xml.batch.BatchFiles.PACS_DECLARATION;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import io.setl.xml.AppHdrVersion;
+import io.setl.xml.XPathUtil;
+
+/**
+ * @author agent on 18/10/2026.
+ */
+public class BatchSplitterTest {
+
+  private static BatchFiles files;
+
+
+  @BeforeAll
+  public static void createFiles() throws Exception {
+    files = new BatchFiles();
+  }
+
+
+  private static String bizMsgIdr(BatchMessage message) throws Exception {
+    return XPathUtil.findNode(AppHdrVersion.of(message.getHeader()).path("BizMsgIdr"), message.getHeader()).getTextContent();
+  }
+
+
+  @Test
+  public void splitAndValidate() throws Exception {
+    try (BatchSplitter splitter = new BatchSplitter(files.batch(3))) {
+      for (int i = 0; i < 3; i++) {
+        BatchMessage message = splitter.next();
+        assertNotNull(message);
+        assertEquals(i, message.getIndex());
+        assertEquals("MSG-" + i, bizMsgIdr(message));
+        assertEquals("Document", message.getDocument().getLocalName());
+        assertTrue(message.getSize() > 0);
+
+        // Each message has its own DOM.
+        assertNull(message.getHeader().getParentNode().getParentNode());
+        assertTrue(files.getIsoSignerVerifier().validate(message.getHeader(), message.getDocument()));
+      }
+      assertNull(splitter.next());
+    }
+  }
+
+
+  @Test
+  public void namespacesDeclaredOnPrefixedEnvelope() throws Exception {
+    // The envelope declares the message namespaces, and also a default namespace and a prefix the messages do not use.
+    String message = files.message(7, false).replace(" " + HEAD_DECLARATION, "").replace(" " + PACS_DECLARATION, "");
+    String batch = "<env:Batch xmlns:env=\"urn:envelope\" xmlns=\"urn:default\" " + HEAD_DECLARATION + ">"
+        + "<env:Group " + PACS_DECLARATION + "><env:Msg>" + message + "</env:Msg></env:Group>"
+        + "<env:Trailer/></env:Batch>";
+
+    try (BatchSplitter splitter = new BatchSplitter(files.stream(batch))) {
+      BatchMessage extracted = splitter.next();
+      assertEquals("MSG-7", bizMsgIdr(extracted));
+      assertEquals("urn:iso:std:iso:20022:tech:xsd:head.001.001.03", extracted.getHeader().getNamespaceURI());
+      assertEquals("urn:iso:std:iso:20022:tech:xsd:pacs.008.001.10", extracted.getDocument().getNamespaceURI());
+
+      // Inherited declarations are copied onto the extracted roots, so the signature still validates out of the batch.
+      assertEquals("urn:envelope", extracted.getHeader().getAttribute("xmlns:env"));
+      assertTrue(files.getIsoSignerVerifier().validate(extracted.getHeader(), extracted.getDocument()));
+      assertNull(splitter.next());
+    }
+  }
+
+
+  @Test
+  public void tamperedMessageFailsAfterSplitting() throws Exception {
+    try (BatchSplitter splitter = new BatchSplitter(files.stream("<Batch>" + files.message(1, true) + "</Batch>"))) {
+      BatchMessage message = splitter.next();
+      assertFalse(files.getIsoSignerVerifier().validate(message.getHeader(), message.getDocument()));
+    }
+  }
+
+
+  @Test
+  public void appHdrWithoutDocument() throws Exception {
+    String message = files.message(1, false);
+    String header = message.substring(0, message.indexOf("<pacs:Document"));
+
+    // Followed by another message.
+    try (BatchSplitter splitter = new BatchSplitter(files.stream("<Batch>" + header + message + "</Batch>"))) {
+      XMLStreamException e = assertThrows(XMLStreamException.class, splitter::next);
+      assertTrue(e.getMessage().contains("AppHdr without a Document"), e.getMessage());
+    }
+
+    // At the end of the batch.
+    try (BatchSplitter splitter = new BatchSplitter(files.stream("<Batch>" + message + header + "</Batch>"))) {
+      assertNotNull(splitter.next());
+      XMLStreamException e = assertThrows(XMLStreamException.class, splitter::next);
+      assertTrue(e.getMessage().contains("AppHdr without a Document"), e.getMessage());
+    }
+  }
+
+
+  @Test
+  public void documentWithoutAppHdr() throws Exception {
+    String message = files.message(1, false);
+    String document = message.substring(message.indexOf("<pacs:Document"));
+    try (BatchSplitter splitter = new BatchSplitter(files.stream("<Batch>" + message + document + "</Batch>"))) {
+      assertNotNull(splitter.next());
+      XMLStreamException e = assertThrows(XMLStreamException.class, splitter::next);
+      assertTrue(e.getMessage().contains("Document without a preceding AppHdr"), e.getMessage());
+    }
+  }
+
+}
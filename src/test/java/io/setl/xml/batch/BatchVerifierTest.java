@@ -0,0 +1,197 @@
+package io.setl.xml.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author agent on 18/10/2026.
+ */
+public class BatchVerifierTest {
+
+  private static BatchFiles files;
+
+
+  @BeforeAll
+  public static void createFiles() throws Exception {
+    files = new BatchFiles();
+  }
+
+
+  /**
+   * Start verifying a batch on another thread.
+   *
+   * @param verifier the verifier
+   * @param batch    the batch
+   * @param consumer the result consumer
+   * @param thrown   receives whatever the verify call throws
+   *
+   * @return the started thread
+   */
+  private static Thread startVerify(BatchVerifier verifier, InputStream batch, Consumer<BatchResult> consumer, AtomicReference<Throwable> thrown) {
+    Thread thread = new Thread(() -> {
+      try {
+        verifier.verify(batch, consumer);
+      } catch (Throwable t) {
+        thrown.set(t);
+      }
+    });
+    thread.start();
+    return thread;
+  }
+
+
+  /** Wait until the thread is blocked, as the reading thread is when the in-flight limit is reached. */
+  private static void awaitBlocked(Thread thread) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (thread.getState() != Thread.State.WAITING) {
+      assertTrue(System.nanoTime() < deadline, "Reading thread did not block");
+      Thread.sleep(5);
+    }
+  }
+
+
+  @Test
+  public void resultsInIndexOrderWithOneWorker() throws Exception {
+    List<BatchResult> results = new ArrayList<>();
+    try (BatchVerifier verifier = new BatchVerifier(files.getIsoSignerVerifier(), 1, 4)) {
+      assertEquals(6, verifier.verify(files.batch(6), results::add));
+    }
+    assertEquals(6, results.size());
+    for (int i = 0; i < 6; i++) {
+      BatchResult result = results.get(i);
+      assertEquals(i, result.getIndex());
+      assertEquals("MSG-" + i, result.getBizMsgIdr());
+      assertTrue(result.isValid());
+      assertNull(result.getError());
+    }
+  }
+
+
+  @Test
+  public void everyMessageGetsOneResult() throws Exception {
+    StringBuilder batch = new StringBuilder("<Batch>");
+    for (int i = 0; i < 12; i++) {
+      batch.append(files.message(i, i == 5));
+    }
+    batch.append("</Batch>");
+
+    Map<Long, BatchResult> results = new ConcurrentHashMap<>();
+    try (BatchVerifier verifier = new BatchVerifier(files.getIsoSignerVerifier(), 3, 5)) {
+      assertEquals(12, verifier.verify(files.stream(batch.toString()), r -> assertNull(results.put(r.getIndex(), r))));
+    }
+
+    // Results may arrive in any order, but every index is present once.
+    assertEquals(12, results.size());
+    for (long i = 0; i < 12; i++) {
+      BatchResult result = results.get(i);
+      assertEquals("MSG-" + i, result.getBizMsgIdr());
+      assertEquals(i != 5, result.isValid(), "Message " + i);
+    }
+  }
+
+
+  @Test
+  public void closeDuringVerify() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Map<Long, BatchResult> results = new ConcurrentHashMap<>();
+    Consumer<BatchResult> consumer = r -> {
+      assertNull(results.put(r.getIndex(), r));
+      if (r.getIndex() == 0) {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+
+    AtomicReference<Throwable> thrown = new AtomicReference<>();
+    BatchVerifier verifier = new BatchVerifier(files.getIsoSignerVerifier(), 1, 3);
+    Thread reader = startVerify(verifier, files.batch(10), consumer, thrown);
+
+    // Message 0 is running and messages 1 and 2 are queued, so the reader waits for an in-flight permit.
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    awaitBlocked(reader);
+    verifier.close();
+
+    reader.join(TimeUnit.SECONDS.toMillis(10));
+    assertFalse(reader.isAlive(), "verify did not return after close");
+    assertTrue(thrown.get() instanceof RejectedExecutionException, String.valueOf(thrown.get()));
+
+    // The running message completed, the queued messages and the one read after close were discarded, and nothing more was read.
+    assertEquals(4, results.size());
+    assertTrue(results.get(0L).isValid());
+    for (long i = 1; i < 4; i++) {
+      BatchResult result = results.get(i);
+      assertFalse(result.isValid());
+      assertTrue(result.getError() instanceof CancellationException, String.valueOf(result.getError()));
+    }
+
+    // A closed verifier accepts no more batches, but still gives the message it read a result.
+    List<BatchResult> afterClose = new ArrayList<>();
+    assertThrows(RejectedExecutionException.class, () -> verifier.verify(files.batch(1), afterClose::add));
+    assertEquals(1, afterClose.size());
+    assertTrue(afterClose.get(0).getError() instanceof CancellationException);
+  }
+
+
+  @Test
+  public void interruptedVerifyWaitsForSubmittedMessages() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Map<Long, BatchResult> results = new ConcurrentHashMap<>();
+    Consumer<BatchResult> consumer = r -> {
+      if (r.getIndex() == 0) {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      assertNull(results.put(r.getIndex(), r));
+    };
+
+    AtomicReference<Throwable> thrown = new AtomicReference<>();
+    try (BatchVerifier verifier = new BatchVerifier(files.getIsoSignerVerifier(), 1, 3)) {
+      Thread reader = startVerify(verifier, files.batch(10), consumer, thrown);
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      awaitBlocked(reader);
+      reader.interrupt();
+
+      // The reader stops reading, but does not return while its messages are still being verified.
+      reader.join(200);
+      assertTrue(reader.isAlive());
+      release.countDown();
+      reader.join(TimeUnit.SECONDS.toMillis(10));
+      assertFalse(reader.isAlive());
+    }
+
+    assertTrue(thrown.get() instanceof InterruptedException, String.valueOf(thrown.get()));
+    assertEquals(3, results.size());
+    for (long i = 0; i < 3; i++) {
+      assertTrue(results.get(i).isValid());
+    }
+  }
+
+}
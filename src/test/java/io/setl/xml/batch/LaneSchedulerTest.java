@@ -0,0 +1,120 @@
+package io.setl.xml.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author agent on 18/10/2026.
+ */
+public class LaneSchedulerTest {
+
+  private static final long SMALL = 100;
+
+  private static final long LARGE = 1_000_000;
+
+
+  private static LaneScheduler newScheduler(boolean stealing) {
+    return new LaneScheduler(List.of(new Lane("small", SMALL, 1, 1), new Lane("large", Long.MAX_VALUE, 1, 1)), stealing);
+  }
+
+
+  @Test
+  public void largeBurstDoesNotDelaySmallTask() throws Exception {
+    try (LaneScheduler scheduler = newScheduler(false)) {
+      CountDownLatch release = new CountDownLatch(1);
+      CountDownLatch largeDone = new CountDownLatch(3);
+      Runnable largeTask = () -> {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        largeDone.countDown();
+      };
+
+      // The large lane's budget is two, so the third large task is parked rather than blocking the submitter.
+      assertTrue(scheduler.submit(LARGE, largeTask));
+      assertTrue(scheduler.submit(LARGE, largeTask));
+      assertFalse(scheduler.submit(LARGE, largeTask));
+
+      CountDownLatch smallDone = new CountDownLatch(1);
+      assertTrue(scheduler.submit(SMALL, smallDone::countDown));
+      assertTrue(smallDone.await(5, TimeUnit.SECONDS), "Small task ran while large tasks were blocked");
+      assertEquals(3, largeDone.getCount());
+
+      // Once the large tasks can complete, the parked one is admitted and runs.
+      release.countDown();
+      assertTrue(largeDone.await(5, TimeUnit.SECONDS));
+    }
+  }
+
+
+  @Test
+  public void failingTasksDoNotStopTheWorker() throws Exception {
+    try (LaneScheduler scheduler = new LaneScheduler(List.of(new Lane("all", Long.MAX_VALUE, 1, 1)), false)) {
+      CountDownLatch failed = new CountDownLatch(3);
+      scheduler.submit(SMALL, () -> {
+        failed.countDown();
+        throw new Error("Test error");
+      });
+      scheduler.submit(SMALL, () -> {
+        failed.countDown();
+        throw new IllegalStateException("Test exception");
+      });
+      scheduler.submit(SMALL, () -> {
+        failed.countDown();
+        Thread.currentThread().interrupt();
+      });
+
+      // The lane has a single worker and a budget of two, so these only all run if the worker survived and every failed task released its budget.
+      CountDownLatch done = new CountDownLatch(5);
+      for (int i = 0; i < 5; i++) {
+        scheduler.submit(SMALL, done::countDown);
+      }
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      assertTrue(failed.await(0, TimeUnit.SECONDS));
+    }
+  }
+
+
+  @Test
+  public void parkedTasksAreNotStolen() throws Exception {
+    try (LaneScheduler scheduler = newScheduler(true)) {
+      CountDownLatch release = new CountDownLatch(1);
+      AtomicInteger started = new AtomicInteger();
+      CountDownLatch done = new CountDownLatch(4);
+      Runnable smallTask = () -> {
+        started.incrementAndGet();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        done.countDown();
+      };
+
+      // The small lane's budget is two. The large lane's worker steals from the small lane's queue, but not from its parked tasks.
+      for (int i = 0; i < 4; i++) {
+        scheduler.submit(SMALL, smallTask);
+      }
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (started.get() < 2 && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      Thread.sleep(100);
+      assertEquals(2, started.get());
+
+      release.countDown();
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+  }
+
+}
@@ -0,0 +1,192 @@
+package io.setl.xml.keys;
+
+import static io.setl.ExampleSigning.loadKeyStore;
+import static io.setl.ExampleSigning.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.crypto.dsig.XMLSignatureException;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+
+import io.setl.xml.Constants;
+import io.setl.xml.SigningKey;
+import io.setl.xml.XMLSignatureMethod;
+
+/**
+ * @author agent on 18/10/2026.
+ */
+public class KeyManagerTest {
+
+  private static X509Certificate certificate;
+
+  private static PrivateKey privateKey;
+
+
+  private static Document appHdr(String namespace, String from) {
+    return parse("<head:AppHdr xmlns:head=\"" + namespace + "\"><head:Fr>" + from + "</head:Fr>"
+        + "<head:To><head:OrgId><head:Nm>RLN</head:Nm></head:OrgId></head:To><head:BizMsgIdr>1</head:BizMsgIdr></head:AppHdr>");
+  }
+
+
+  private static Document appHdrFrom(String sender) {
+    return appHdr(Constants.NS_ISO_HEAD, "<head:OrgId><head:Id><head:OrgId><head:AnyBIC>" + sender + "</head:AnyBIC></head:OrgId></head:Id></head:OrgId>");
+  }
+
+
+  @BeforeAll
+  public static void loadKeys() throws Exception {
+    KeyStore keyStore = loadKeyStore("examples/keystore.jks");
+    privateKey = (PrivateKey) keyStore.getKey("example", "password".toCharArray());
+    certificate = (X509Certificate) keyStore.getCertificate("example");
+  }
+
+
+  private static String pem(String type, byte[] encoded) {
+    return "-----BEGIN " + type + "-----\n" + Base64.getMimeEncoder(64, new byte[]{'\n'}).encodeToString(encoded) + "\n-----END " + type + "-----\n";
+  }
+
+
+  private static void write(Path directory, String sender) throws Exception {
+    // Write the certificate first, so a watcher never sees a key without its certificate.
+    Files.writeString(directory.resolve(sender + ".crt"), pem("CERTIFICATE", certificate.getEncoded()), StandardCharsets.US_ASCII);
+    Files.writeString(directory.resolve(sender + ".key"), pem("PRIVATE KEY", privateKey.getEncoded()), StandardCharsets.US_ASCII);
+  }
+
+
+  @Test
+  public void bicOrBeiIsUsedForVersion1() throws Exception {
+    String from = "<head:OrgId><head:Nm>Name</head:Nm><head:Id><head:OrgId><head:BICOrBEI>AAAAGB2L</head:BICOrBEI></head:OrgId></head:Id></head:OrgId>";
+    assertEquals("AAAAGB2L", KeyManager.senderOf(appHdr(Constants.NS_ISO_HEAD_01, from).getDocumentElement()));
+  }
+
+
+  @Test
+  public void anyBicIsUsedForLaterVersions() throws Exception {
+    String from = "<head:OrgId><head:Nm>Name</head:Nm><head:Id><head:OrgId><head:AnyBIC>AAAAGB2L</head:AnyBIC></head:OrgId></head:Id></head:OrgId>";
+    for (String namespace : new String[]{Constants.NS_ISO_HEAD_02, Constants.NS_ISO_HEAD, Constants.NS_ISO_HEAD_04}) {
+      assertEquals("AAAAGB2L", KeyManager.senderOf(appHdr(namespace, from).getDocumentElement()), namespace);
+    }
+  }
+
+
+  @Test
+  public void otherIdentifiersAreUsedForEveryVersion() throws Exception {
+    String othr = "<head:OrgId><head:Nm>Name</head:Nm><head:Id><head:OrgId><head:Othr><head:Id>X-1</head:Id></head:Othr></head:OrgId></head:Id></head:OrgId>";
+    String bicfi = "<head:FIId><head:FinInstnId><head:BICFI>BBBBGB2L</head:BICFI></head:FinInstnId></head:FIId>";
+    String name = "<head:OrgId><head:Nm>Name</head:Nm></head:OrgId>";
+    for (String namespace : new String[]{Constants.NS_ISO_HEAD_01, Constants.NS_ISO_HEAD_02, Constants.NS_ISO_HEAD, Constants.NS_ISO_HEAD_04}) {
+      assertEquals("X-1", KeyManager.senderOf(appHdr(namespace, othr).getDocumentElement()), namespace);
+      assertEquals("BBBBGB2L", KeyManager.senderOf(appHdr(namespace, bicfi).getDocumentElement()), namespace);
+      assertEquals("Name", KeyManager.senderOf(appHdr(namespace, name).getDocumentElement()), namespace);
+    }
+  }
+
+
+  @Test
+  public void noSender() throws Exception {
+    assertNull(KeyManager.senderOf(appHdr(Constants.NS_ISO_HEAD, "<head:OrgId/>").getDocumentElement()));
+  }
+
+
+
+  @Test
+  public void selectKey(@TempDir Path directory) throws Exception {
+    write(directory, "AAAAGB2L");
+    KeyManager keyManager = new KeyManager(List.of(new PemDirectorySource(directory)));
+
+    // Sender identifiers are matched case-insensitively.
+    SigningKey key = keyManager.selectKey(appHdrFrom("aaaagb2l").getDocumentElement());
+    assertSame(keyManager.getKey("AAAAGB2L"), key);
+    assertEquals(XMLSignatureMethod.RSA_SHA256, key.getSignatureMethod());
+
+    XMLSignatureException e = assertThrows(XMLSignatureException.class, () -> keyManager.selectKey(appHdrFrom("BBBBGB2L").getDocumentElement()));
+    assertTrue(e.getMessage().contains("BBBBGB2L"), e.getMessage());
+    assertThrows(XMLSignatureException.class, () -> keyManager.selectKey(appHdr(Constants.NS_ISO_HEAD, "<head:OrgId/>").getDocumentElement()));
+  }
+
+
+  @Test
+  public void signatureMethodCanBeChosenPerSender(@TempDir Path directory) throws Exception {
+    write(directory, "pss");
+    write(directory, "plain");
+    write(directory, "wrong");
+    KeyManager keyManager = new KeyManager(
+        List.of(new PemDirectorySource(directory)),
+        Map.of("PSS", XMLSignatureMethod.SHA256_RSA_MGF1, "wrong", XMLSignatureMethod.ECDSA_SHA256, "absent", XMLSignatureMethod.RSA_SHA512)
+    );
+
+    assertEquals(XMLSignatureMethod.SHA256_RSA_MGF1, keyManager.getKey("pss").getSignatureMethod());
+    assertEquals(XMLSignatureMethod.RSA_SHA256, keyManager.getKey("plain").getSignatureMethod());
+
+    // An RSA key cannot be used with ECDSA, so the sender is skipped.
+    assertNull(keyManager.getKey("wrong"));
+    assertEquals(Set.of("pss", "plain"), keyManager.getSenders());
+  }
+
+
+  @Test
+  public void reload(@TempDir Path directory) throws Exception {
+    write(directory, "one");
+    KeyManager keyManager = new KeyManager(List.of(new PemDirectorySource(directory)));
+    assertEquals(Set.of("one"), keyManager.getSenders());
+
+    write(directory, "two");
+    Files.delete(directory.resolve("one.key"));
+    assertEquals(Set.of("one"), keyManager.getSenders());
+    keyManager.reload();
+    assertEquals(Set.of("two"), keyManager.getSenders());
+  }
+
+
+  @Test
+  public void failedReloadKeepsCurrentKeys(@TempDir Path directory) throws Exception {
+    Path file = directory.resolve("keys.jks");
+    try (var inputStream = KeyManagerTest.class.getClassLoader().getResourceAsStream("keys.jks")) {
+      Files.copy(inputStream, file);
+    }
+    KeyManager keyManager = new KeyManager(List.of(new KeyStoreSource(file, "JKS", "password".toCharArray())));
+    Set<String> senders = keyManager.getSenders();
+    assertEquals(Set.of("ec", "rsa512"), senders);
+
+    Files.writeString(file, "not a key store");
+    assertThrows(IOException.class, keyManager::reload);
+    assertEquals(senders, keyManager.getSenders());
+  }
+
+
+  @Test
+  public void startWatching(@TempDir Path directory) throws Exception {
+    write(directory, "one");
+    try (KeyManager keyManager = new KeyManager(List.of(new PemDirectorySource(directory)))) {
+      keyManager.startWatching();
+      write(directory, "two");
+
+      long deadline = System.currentTimeMillis() + 30_000;
+      while (keyManager.getKey("two") == null && System.currentTimeMillis() < deadline) {
+        Thread.sleep(50);
+      }
+      assertNotNull(keyManager.getKey("two"), "New key was not loaded");
+      assertNotNull(keyManager.getKey("one"));
+    }
+  }
+
+}
@@ -0,0 +1,68 @@
+package io.setl.xml.keys;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.setl.xml.SigningKey;
+import io.setl.xml.XMLSignatureMethod;
+
+/**
+ * @author agent on 18/10/2026.
+ */
+public class KeyStoreSourceTest {
+
+  private static Path copyKeys(Path directory) throws IOException {
+    Path file = directory.resolve("keys.jks");
+    try (InputStream inputStream = KeyStoreSourceTest.class.getClassLoader().getResourceAsStream("keys.jks")) {
+      Files.copy(inputStream, file);
+    }
+    return file;
+  }
+
+
+  @Test
+  public void load(@TempDir Path directory) throws Exception {
+    KeyStoreSource source = new KeyStoreSource(copyKeys(directory), "JKS", "password".toCharArray());
+    assertEquals(directory.toAbsolutePath(), source.watchedDirectory());
+
+    Map<String, SigningKey> keys = source.load();
+    assertEquals(Set.of("ec", "rsa512"), keys.keySet());
+    assertEquals(XMLSignatureMethod.ECDSA_SHA256, keys.get("ec").getSignatureMethod());
+    assertEquals(XMLSignatureMethod.RSA_SHA256, keys.get("rsa512").getSignatureMethod());
+  }
+
+
+  @Test
+  public void certificateEntriesAreIgnored(@TempDir Path directory) throws Exception {
+    Path file = copyKeys(directory);
+    KeyStore keyStore = KeyStore.getInstance("JKS");
+    try (InputStream inputStream = Files.newInputStream(file)) {
+      keyStore.load(inputStream, "password".toCharArray());
+    }
+    keyStore.setCertificateEntry("trusted", keyStore.getCertificate("ec"));
+    try (var outputStream = Files.newOutputStream(file)) {
+      keyStore.store(outputStream, "password".toCharArray());
+    }
+
+    assertEquals(Set.of("ec", "rsa512"), new KeyStoreSource(file, "JKS", "password".toCharArray()).load().keySet());
+  }
+
+
+  @Test
+  public void wrongPassword(@TempDir Path directory) throws Exception {
+    KeyStoreSource source = new KeyStoreSource(copyKeys(directory), "JKS", "wrong".toCharArray());
+    assertThrows(IOException.class, source::load);
+  }
+
+}
@@ -0,0 +1,105 @@
+package io.setl.xml.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author agent on 18/10/2026.
+ */
+public class LatencyHistogramTest {
+
+  @Test
+  public void bucketBoundaries() {
+    // Values below 128 have a bucket each.
+    for (int value = 0; value < 128; value++) {
+      assertEquals(value, LatencyHistogram.indexOf(value));
+      assertEquals(value, LatencyHistogram.highestValueAt(value));
+    }
+
+    // From 128 to 255, each bucket holds two values.
+    assertEquals(128, LatencyHistogram.indexOf(128));
+    assertEquals(128, LatencyHistogram.indexOf(129));
+    assertEquals(129, LatencyHistogram.indexOf(130));
+    assertEquals(129, LatencyHistogram.highestValueAt(128));
+    assertEquals(191, LatencyHistogram.indexOf(255));
+    assertEquals(255, LatencyHistogram.highestValueAt(191));
+
+    // From 256 to 511, each bucket holds four values.
+    assertEquals(192, LatencyHistogram.indexOf(256));
+    assertEquals(192, LatencyHistogram.indexOf(259));
+    assertEquals(193, LatencyHistogram.indexOf(260));
+    assertEquals(259, LatencyHistogram.highestValueAt(192));
+  }
+
+
+  @Test
+  public void everyBucketCoversTheValuesBetweenItsNeighbours() {
+    int last = LatencyHistogram.indexOf(LatencyHistogram.MAX_VALUE);
+    assertEquals(LatencyHistogram.MAX_VALUE, LatencyHistogram.highestValueAt(last));
+    for (int index = 1; index <= last; index++) {
+      long lowest = LatencyHistogram.highestValueAt(index - 1) + 1;
+      long highest = LatencyHistogram.highestValueAt(index);
+      assertTrue(lowest <= highest, "Bucket " + index);
+      assertEquals(index, LatencyHistogram.indexOf(lowest), "Lowest value in bucket " + index);
+      assertEquals(index, LatencyHistogram.indexOf(highest), "Highest value in bucket " + index);
+
+      // Every value is accurate to within 1 part in 64.
+      assertTrue(highest - lowest <= Math.max(0, highest / 64), "Bucket " + index + " is too wide");
+    }
+  }
+
+
+  @Test
+  public void percentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getValueAtPercentile(50));
+    assertEquals(0.0, histogram.getMean());
+
+    for (int value = 1; value <= 100; value++) {
+      histogram.record(value);
+    }
+    assertEquals(100, histogram.getCount());
+    assertEquals(100, histogram.getMax());
+    assertEquals(50.5, histogram.getMean());
+    assertEquals(1, histogram.getValueAtPercentile(0));
+    assertEquals(50, histogram.getValueAtPercentile(50));
+    assertEquals(99, histogram.getValueAtPercentile(99));
+    assertEquals(100, histogram.getValueAtPercentile(100));
+    assertEquals(100, histogram.getValueAtPercentile(150));
+  }
+
+
+  @Test
+  public void percentilesOfLargeValuesAreWithinTheirBucket() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 99; i++) {
+      histogram.record(1_000_000);
+    }
+    histogram.record(5_000_000);
+
+    long p50 = histogram.getValueAtPercentile(50);
+    assertTrue(p50 >= 1_000_000 && p50 <= 1_000_000 + 1_000_000 / 64, Long.toString(p50));
+    assertEquals(p50, histogram.getValueAtPercentile(99));
+
+    // The highest value is never reported as more than the largest value recorded.
+    assertEquals(5_000_000, histogram.getValueAtPercentile(100));
+  }
+
+
+  @Test
+  public void overflow() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(Long.MAX_VALUE);
+    histogram.record(LatencyHistogram.MAX_VALUE + 1);
+    histogram.record(-5);
+
+    assertEquals(3, histogram.getCount());
+    assertEquals(LatencyHistogram.MAX_VALUE, histogram.getMax());
+    assertEquals(0, histogram.getValueAtPercentile(0));
+    assertEquals(LatencyHistogram.MAX_VALUE, histogram.getValueAtPercentile(100));
+    assertEquals(2.0 * LatencyHistogram.MAX_VALUE / 3, histogram.getMean(), 1.0);
+  }
+
+}
@@ -0,0 +1,88 @@
+package io.setl.xml.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import io.setl.xml.XMLSignatureMethod;
+
+/**
+ * @author agent on 18/10/2026.
+ */
+public class SigningMetricsTest {
+
+  private static ObjectName objectName(String name, Operation operation, String method, Outcome outcome) throws Exception {
+    return new ObjectName(String.format("io.setl.xml:type=SigningMetrics,name=%s,operation=%s,method=%s,outcome=%s",
+        ObjectName.quote(name), operation, method, outcome));
+  }
+
+
+  @Test
+  public void recordAndCount() {
+    SigningMetrics metrics = new SigningMetrics("test", null);
+    assertNull(metrics.getStats(Operation.SIGN, XMLSignatureMethod.RSA_SHA256, Outcome.SIGNED));
+
+    metrics.record(Operation.SIGN, XMLSignatureMethod.RSA_SHA256, Outcome.SIGNED, 1000);
+    metrics.record(Operation.SIGN, XMLSignatureMethod.RSA_SHA256, Outcome.SIGNED, 3000);
+    metrics.record(Operation.SIGN, XMLSignatureMethod.ECDSA_SHA256, Outcome.SIGNED, 2000);
+    metrics.record(Operation.VALIDATE, null, Outcome.VALID, 5000);
+
+    LatencyStats stats = metrics.getStats(Operation.SIGN, XMLSignatureMethod.RSA_SHA256, Outcome.SIGNED);
+    assertEquals(2, stats.getCount());
+    assertEquals(3.0, stats.getMaxMicros());
+    assertEquals(2.0, stats.getMeanMicros());
+    assertEquals(3, metrics.getCount(Operation.SIGN, Outcome.SIGNED));
+    assertEquals(1, metrics.getCount(Operation.VALIDATE, Outcome.VALID));
+    assertEquals(1, metrics.getStats(Operation.VALIDATE, null, Outcome.VALID).getCount());
+  }
+
+
+  @Test
+  public void publishAndClose() throws Exception {
+    MBeanServer server = MBeanServerFactory.newMBeanServer();
+    ObjectName rsa = objectName("test", Operation.SIGN, "RSA_SHA256", Outcome.SIGNED);
+    ObjectName unknown = objectName("test", Operation.VALIDATE, "UNKNOWN", Outcome.VALID);
+
+    SigningMetrics metrics = new SigningMetrics("test", server);
+    metrics.record(Operation.SIGN, XMLSignatureMethod.RSA_SHA256, Outcome.SIGNED, 2000);
+    metrics.record(Operation.VALIDATE, null, Outcome.VALID, 1000);
+    assertTrue(server.isRegistered(rsa));
+    assertTrue(server.isRegistered(unknown));
+    assertEquals(1L, server.getAttribute(rsa, "Count"));
+    assertEquals(2.0, server.getAttribute(rsa, "MaxMicros"));
+
+    metrics.close();
+    assertEquals(0, server.queryNames(new ObjectName("io.setl.xml:*"), null).size());
+
+    // Recording continues after closing, but nothing more is published.
+    metrics.record(Operation.SIGN, XMLSignatureMethod.ECDSA_SHA256, Outcome.SIGNED, 2000);
+    assertEquals(2, metrics.getCount(Operation.SIGN, Outcome.SIGNED));
+    assertEquals(0, server.queryNames(new ObjectName("io.setl.xml:*"), null).size());
+  }
+
+
+  @Test
+  public void duplicateNameIsRejected() throws Exception {
+    MBeanServer server = MBeanServerFactory.newMBeanServer();
+    SigningMetrics first = new SigningMetrics("test", server);
+    first.record(Operation.SIGN, XMLSignatureMethod.RSA_SHA256, Outcome.SIGNED, 2000);
+
+    assertThrows(IllegalArgumentException.class, () -> new SigningMetrics("test", server));
+
+    // A different name, or the same name once the first registry is closed, is accepted.
+    new SigningMetrics("other", server).close();
+    first.close();
+    try (SigningMetrics second = new SigningMetrics("test", server)) {
+      second.record(Operation.SIGN, XMLSignatureMethod.RSA_SHA256, Outcome.SIGNED, 2000);
+      assertTrue(server.isRegistered(objectName("test", Operation.SIGN, "RSA_SHA256", Outcome.SIGNED)));
+    }
+  }
+
+}